@@ -0,0 +1,13 @@
+package ecommersDemo.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Habilita las tareas programadas (@Scheduled), como el volcado periódico
+ * de contadores en memoria a la base de datos.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
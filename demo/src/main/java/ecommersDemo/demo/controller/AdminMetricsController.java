@@ -2,6 +2,8 @@ package ecommersDemo.demo.controller;
 
 import ecommersDemo.demo.dto.response.ApiResponse;
 import ecommersDemo.demo.service.MetricsService;
+import ecommersDemo.demo.service.RollupVentas;
+import ecommersDemo.demo.service.TopVendidos;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -17,9 +19,11 @@ import java.util.Map;
 public class AdminMetricsController {
 
     private final MetricsService metricsService;
+    private final RollupVentas rollupVentas;
 
-    public AdminMetricsController(MetricsService metricsService) {
+    public AdminMetricsController(MetricsService metricsService, RollupVentas rollupVentas) {
         this.metricsService = metricsService;
+        this.rollupVentas = rollupVentas;
     }
 
     /**
@@ -50,23 +54,28 @@ public class AdminMetricsController {
 
     /**
      * GET /api/admin/metricas/productos-mas-vendidos
-     * Obtiene los productos más vendidos (por cantidad y por ingresos).
+     * Obtiene los productos más vendidos (por cantidad y por ingresos) de los últimos días.
+     * El límite se acota a {@link TopVendidos#LIMITE_MAXIMO}.
      */
     @GetMapping("/productos-mas-vendidos")
     public ResponseEntity<ApiResponse<Map<String, Object>>> obtenerProductosMasVendidos(
-            @RequestParam(required = false, defaultValue = "10") int limite) {
+            @RequestParam(required = false, defaultValue = "10") int limite,
+            @RequestParam(required = false, defaultValue = "30") int dias) {
 
-        Map<String, Object> productos = metricsService.obtenerProductosMasVendidos(limite);
+        Map<String, Object> productos = metricsService.obtenerProductosMasVendidos(limite, dias);
         return ResponseEntity.ok(ApiResponse.success(productos));
     }
 
     /**
      * GET /api/admin/metricas/categorias
-     * Obtiene métricas por categoría (ventas, cantidad de productos, etc.).
+     * Obtiene métricas por categoría (ingresos, unidades, pedidos y ticket promedio)
+     * con comparativa contra el período anterior.
      */
     @GetMapping("/categorias")
-    public ResponseEntity<ApiResponse<Map<String, Object>>> obtenerMetricasCategorias() {
-        Map<String, Object> categorias = metricsService.obtenerMetricasCategorias();
+    public ResponseEntity<ApiResponse<Map<String, Object>>> obtenerMetricasCategorias(
+            @RequestParam(required = false, defaultValue = "mes") String periodo) {
+
+        Map<String, Object> categorias = metricsService.obtenerMetricasCategorias(periodo);
         return ResponseEntity.ok(ApiResponse.success(categorias));
     }
 
@@ -92,5 +101,14 @@ public class AdminMetricsController {
         Map<String, Object> resumen = metricsService.obtenerResumenCompleto();
         return ResponseEntity.ok(ApiResponse.success(resumen));
     }
-}
 
+    /**
+     * POST /api/admin/metricas/rollup/reconstruir
+     * Reconstruye el rollup diario de ventas desde los pedidos (backfill o reparación).
+     */
+    @PostMapping("/rollup/reconstruir")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> reconstruirRollup() {
+        Map<String, Object> resultado = rollupVentas.reconstruir();
+        return ResponseEntity.ok(ApiResponse.success("Rollup de ventas reconstruido", resultado));
+    }
+}
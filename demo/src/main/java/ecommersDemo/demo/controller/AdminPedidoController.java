@@ -3,7 +3,9 @@ package ecommersDemo.demo.controller;
 import ecommersDemo.demo.dto.PedidoDTO;
 import ecommersDemo.demo.dto.request.CambiarEstadoPedidoRequest;
 import ecommersDemo.demo.dto.response.ApiResponse;
+import ecommersDemo.demo.dto.response.PaginaCursor;
 import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.service.EstadisticasPedidos;
 import ecommersDemo.demo.service.PedidoService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -26,9 +28,11 @@ import java.util.Map;
 public class AdminPedidoController {
 
     private final PedidoService pedidoService;
+    private final EstadisticasPedidos estadisticasPedidos;
 
-    public AdminPedidoController(PedidoService pedidoService) {
+    public AdminPedidoController(PedidoService pedidoService, EstadisticasPedidos estadisticasPedidos) {
         this.pedidoService = pedidoService;
+        this.estadisticasPedidos = estadisticasPedidos;
     }
 
     // ==================== LISTAR PEDIDOS ====================
@@ -53,6 +57,22 @@ public class AdminPedidoController {
         return ResponseEntity.ok(ApiResponse.success(pedidos));
     }
 
+    /**
+     * GET /api/admin/pedidos/cursor
+     * Obtiene pedidos paginados por cursor, del más reciente al más antiguo.
+     * El total solo se calcula si se pide con incluirTotal=true.
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<PaginaCursor<PedidoDTO>>> obtenerPedidosPorCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int tamanio,
+            @RequestParam(required = false) EstadoPedido estado,
+            @RequestParam(defaultValue = "false") boolean incluirTotal) {
+
+        PaginaCursor<PedidoDTO> pedidos = pedidoService.obtenerPedidosPorCursor(estado, cursor, tamanio, incluirTotal);
+        return ResponseEntity.ok(ApiResponse.success(pedidos));
+    }
+
     /**
      * GET /api/admin/pedidos/pendientes
      * Obtiene los pedidos pendientes de procesar.
@@ -116,20 +136,22 @@ public class AdminPedidoController {
 
     /**
      * GET /api/admin/pedidos/estadisticas
-     * Obtiene estadísticas de pedidos.
+     * Obtiene la cantidad de pedidos en cada estado.
      */
     @GetMapping("/estadisticas")
     public ResponseEntity<ApiResponse<Map<String, Object>>> obtenerEstadisticas() {
+        Map<EstadoPedido, Long> conteos = estadisticasPedidos.contarPorEstado();
         Map<String, Object> stats = new HashMap<>();
-        
-        stats.put("pendientes", pedidoService.contarPedidosPorEstado(EstadoPedido.PENDIENTE));
-        stats.put("confirmados", pedidoService.contarPedidosPorEstado(EstadoPedido.CONFIRMADO));
-        stats.put("pagados", pedidoService.contarPedidosPorEstado(EstadoPedido.PAGADO));
-        stats.put("enPreparacion", pedidoService.contarPedidosPorEstado(EstadoPedido.EN_PREPARACION));
-        stats.put("enviados", pedidoService.contarPedidosPorEstado(EstadoPedido.ENVIADO));
-        stats.put("entregados", pedidoService.contarPedidosPorEstado(EstadoPedido.ENTREGADO));
-        stats.put("cancelados", pedidoService.contarPedidosPorEstado(EstadoPedido.CANCELADO));
-        
+
+        stats.put("pendientes", conteos.get(EstadoPedido.PENDIENTE));
+        stats.put("confirmados", conteos.get(EstadoPedido.CONFIRMADO));
+        stats.put("pagados", conteos.get(EstadoPedido.PAGADO));
+        stats.put("enPreparacion", conteos.get(EstadoPedido.EN_PREPARACION));
+        stats.put("enviados", conteos.get(EstadoPedido.ENVIADO));
+        stats.put("entregados", conteos.get(EstadoPedido.ENTREGADO));
+        stats.put("cancelados", conteos.get(EstadoPedido.CANCELADO));
+        stats.put("devueltos", conteos.get(EstadoPedido.DEVUELTO));
+
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
 
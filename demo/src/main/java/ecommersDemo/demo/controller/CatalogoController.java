@@ -1,9 +1,12 @@
 package ecommersDemo.demo.controller;
 
+import ecommersDemo.demo.dto.CatalogoFiltradoDTO;
 import ecommersDemo.demo.dto.CategoriaDTO;
 import ecommersDemo.demo.dto.ProductoDTO;
 import ecommersDemo.demo.dto.TalleDTO;
+import ecommersDemo.demo.dto.request.FiltroCatalogoRequest;
 import ecommersDemo.demo.dto.response.ApiResponse;
+import ecommersDemo.demo.dto.response.PaginaCursor;
 import ecommersDemo.demo.service.CategoriaService;
 import ecommersDemo.demo.service.ProductoService;
 import ecommersDemo.demo.service.TalleService;
@@ -63,6 +66,38 @@ public class CatalogoController {
         return ResponseEntity.ok(ApiResponse.success(productos));
     }
 
+    /**
+     * GET /api/productos/cursor
+     * Obtiene productos activos paginados por cursor, sin total (scroll infinito).
+     * Acepta los mismos filtros que el listado paginado; sort tiene el formato "propiedad,asc|desc".
+     */
+    @GetMapping("/productos/cursor")
+    public ResponseEntity<ApiResponse<PaginaCursor<ProductoDTO>>> obtenerProductosPorCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "12") int tamanio,
+            @RequestParam(defaultValue = "fechaCreacion,desc") String sort,
+            @RequestParam(required = false) Long categoriaId,
+            @RequestParam(required = false) String busqueda) {
+
+        PaginaCursor<ProductoDTO> productos =
+                productoService.obtenerProductosPorCursor(categoriaId, busqueda, sort, cursor, tamanio);
+        return ResponseEntity.ok(ApiResponse.success(productos));
+    }
+
+    /**
+     * GET /api/productos/filtrar
+     * Búsqueda facetada: combina categoría, talle, color, marca, rango de precio,
+     * oferta, stock y texto. Devuelve los productos y la cantidad por valor de cada faceta.
+     */
+    @GetMapping("/productos/filtrar")
+    public ResponseEntity<ApiResponse<CatalogoFiltradoDTO>> filtrarProductos(
+            @PageableDefault(size = 12) Pageable pageable,
+            FiltroCatalogoRequest filtro) {
+        
+        CatalogoFiltradoDTO resultado = productoService.filtrarCatalogo(filtro, pageable);
+        return ResponseEntity.ok(ApiResponse.success(resultado));
+    }
+
     /**
      * GET /api/productos/{id}
      * Obtiene un producto específico con sus variantes.
@@ -3,6 +3,7 @@ package ecommersDemo.demo.controller;
 import ecommersDemo.demo.dto.PedidoDTO;
 import ecommersDemo.demo.dto.request.CrearPedidoRequest;
 import ecommersDemo.demo.dto.response.ApiResponse;
+import ecommersDemo.demo.dto.response.PaginaCursor;
 import ecommersDemo.demo.service.PedidoService;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
@@ -62,6 +63,23 @@ public class PedidoController {
         return ResponseEntity.ok(ApiResponse.success(pedidos));
     }
 
+    /**
+     * GET /api/pedidos/cursor
+     * Obtiene los pedidos del usuario paginados por cursor, del más reciente al más antiguo.
+     * El total solo se calcula si se pide con incluirTotal=true.
+     */
+    @GetMapping("/cursor")
+    public ResponseEntity<ApiResponse<PaginaCursor<PedidoDTO>>> obtenerPedidosPorCursor(
+            @RequestHeader("X-User-Id") Long usuarioId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int tamanio,
+            @RequestParam(defaultValue = "false") boolean incluirTotal) {
+
+        PaginaCursor<PedidoDTO> pedidos =
+                pedidoService.obtenerPedidosUsuarioPorCursor(usuarioId, cursor, tamanio, incluirTotal);
+        return ResponseEntity.ok(ApiResponse.success(pedidos));
+    }
+
     /**
      * GET /api/pedidos/lista
      * Obtiene todos los pedidos del usuario como lista (sin paginación).
@@ -0,0 +1,100 @@
+package ecommersDemo.demo.dto;
+
+import org.springframework.data.domain.Page;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DTO para la respuesta de la búsqueda facetada: productos paginados y conteos por faceta.
+ * El conteo de cada faceta ignora el filtro de esa misma faceta, para poder ampliar la selección.
+ */
+public class CatalogoFiltradoDTO {
+
+    private Page<ProductoDTO> productos;
+    private List<FacetaValorDTO> categorias = new ArrayList<>();
+    private List<FacetaValorDTO> talles = new ArrayList<>();
+    private List<FacetaValorDTO> colores = new ArrayList<>();
+    private List<FacetaValorDTO> marcas = new ArrayList<>();
+    private Integer enOferta;
+    private Integer conStock;
+    private BigDecimal precioMinimo;
+    private BigDecimal precioMaximo;
+
+    public CatalogoFiltradoDTO() {
+    }
+
+    // Getters y Setters
+    public Page<ProductoDTO> getProductos() {
+        return productos;
+    }
+
+    public void setProductos(Page<ProductoDTO> productos) {
+        this.productos = productos;
+    }
+
+    public List<FacetaValorDTO> getCategorias() {
+        return categorias;
+    }
+
+    public void setCategorias(List<FacetaValorDTO> categorias) {
+        this.categorias = categorias;
+    }
+
+    public List<FacetaValorDTO> getTalles() {
+        return talles;
+    }
+
+    public void setTalles(List<FacetaValorDTO> talles) {
+        this.talles = talles;
+    }
+
+    public List<FacetaValorDTO> getColores() {
+        return colores;
+    }
+
+    public void setColores(List<FacetaValorDTO> colores) {
+        this.colores = colores;
+    }
+
+    public List<FacetaValorDTO> getMarcas() {
+        return marcas;
+    }
+
+    public void setMarcas(List<FacetaValorDTO> marcas) {
+        this.marcas = marcas;
+    }
+
+    public Integer getEnOferta() {
+        return enOferta;
+    }
+
+    public void setEnOferta(Integer enOferta) {
+        this.enOferta = enOferta;
+    }
+
+    public Integer getConStock() {
+        return conStock;
+    }
+
+    public void setConStock(Integer conStock) {
+        this.conStock = conStock;
+    }
+
+    public BigDecimal getPrecioMinimo() {
+        return precioMinimo;
+    }
+
+    public void setPrecioMinimo(BigDecimal precioMinimo) {
+        this.precioMinimo = precioMinimo;
+    }
+
+    public BigDecimal getPrecioMaximo() {
+        return precioMaximo;
+    }
+
+    public void setPrecioMaximo(BigDecimal precioMaximo) {
+        this.precioMaximo = precioMaximo;
+    }
+}
@@ -0,0 +1,55 @@
+package ecommersDemo.demo.dto;
+
+/**
+ * DTO para un valor de faceta del catálogo con su cantidad de productos.
+ */
+public class FacetaValorDTO {
+
+    private String valor;
+    private String nombre;
+    private Integer cantidad;
+    private Boolean seleccionado;
+
+    public FacetaValorDTO() {
+    }
+
+    public FacetaValorDTO(String valor, String nombre, Integer cantidad, Boolean seleccionado) {
+        this.valor = valor;
+        this.nombre = nombre;
+        this.cantidad = cantidad;
+        this.seleccionado = seleccionado;
+    }
+
+    // Getters y Setters
+    public String getValor() {
+        return valor;
+    }
+
+    public void setValor(String valor) {
+        this.valor = valor;
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+
+    public Integer getCantidad() {
+        return cantidad;
+    }
+
+    public void setCantidad(Integer cantidad) {
+        this.cantidad = cantidad;
+    }
+
+    public Boolean getSeleccionado() {
+        return seleccionado;
+    }
+
+    public void setSeleccionado(Boolean seleccionado) {
+        this.seleccionado = seleccionado;
+    }
+}
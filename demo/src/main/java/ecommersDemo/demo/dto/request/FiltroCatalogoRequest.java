@@ -0,0 +1,97 @@
+package ecommersDemo.demo.dto.request;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * DTO con los filtros de la búsqueda facetada del catálogo.
+ * Dentro de una misma faceta los valores se combinan con OR; entre facetas, con AND.
+ */
+public class FiltroCatalogoRequest {
+
+    private List<Long> categoriaId;
+    private List<Long> talleId;
+    private List<String> color;
+    private List<String> marca;
+    private BigDecimal precioMin;
+    private BigDecimal precioMax;
+    private Boolean enOferta;
+    private Boolean conStock;
+    private String busqueda;
+
+    public FiltroCatalogoRequest() {
+    }
+
+    // Getters y Setters
+    public List<Long> getCategoriaId() {
+        return categoriaId;
+    }
+
+    public void setCategoriaId(List<Long> categoriaId) {
+        this.categoriaId = categoriaId;
+    }
+
+    public List<Long> getTalleId() {
+        return talleId;
+    }
+
+    public void setTalleId(List<Long> talleId) {
+        this.talleId = talleId;
+    }
+
+    public List<String> getColor() {
+        return color;
+    }
+
+    public void setColor(List<String> color) {
+        this.color = color;
+    }
+
+    public List<String> getMarca() {
+        return marca;
+    }
+
+    public void setMarca(List<String> marca) {
+        this.marca = marca;
+    }
+
+    public BigDecimal getPrecioMin() {
+        return precioMin;
+    }
+
+    public void setPrecioMin(BigDecimal precioMin) {
+        this.precioMin = precioMin;
+    }
+
+    public BigDecimal getPrecioMax() {
+        return precioMax;
+    }
+
+    public void setPrecioMax(BigDecimal precioMax) {
+        this.precioMax = precioMax;
+    }
+
+    public Boolean getEnOferta() {
+        return enOferta;
+    }
+
+    public void setEnOferta(Boolean enOferta) {
+        this.enOferta = enOferta;
+    }
+
+    public Boolean getConStock() {
+        return conStock;
+    }
+
+    public void setConStock(Boolean conStock) {
+        this.conStock = conStock;
+    }
+
+    public String getBusqueda() {
+        return busqueda;
+    }
+
+    public void setBusqueda(String busqueda) {
+        this.busqueda = busqueda;
+    }
+}
@@ -0,0 +1,41 @@
+package ecommersDemo.demo.dto.response;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import java.util.List;
+
+/**
+ * Página de un listado paginado por cursor (keyset).
+ * Para pedir la página siguiente se envía siguienteCursor; el total solo se informa si se pidió.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PaginaCursor<T> {
+
+    private List<T> contenido;
+    private String siguienteCursor;
+    private boolean hayMas;
+    private Long total;
+
+    public PaginaCursor(List<T> contenido, String siguienteCursor, Long total) {
+        this.contenido = contenido;
+        this.siguienteCursor = siguienteCursor;
+        this.hayMas = siguienteCursor != null;
+        this.total = total;
+    }
+
+    // Getters
+    public List<T> getContenido() {
+        return contenido;
+    }
+
+    public String getSiguienteCursor() {
+        return siguienteCursor;
+    }
+
+    public boolean isHayMas() {
+        return hayMas;
+    }
+
+    public Long getTotal() {
+        return total;
+    }
+}
@@ -0,0 +1,38 @@
+package ecommersDemo.demo.event;
+
+import ecommersDemo.demo.repository.projection.CarritoActividad;
+import ecommersDemo.demo.repository.projection.ItemCarritoResumen;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Foto compacta de un carrito abandonado (usuarioId null si es anónimo), para los procesos
+ * de marketing. Lleva solo variantes, cantidades y valor: quien necesite más datos los busca por ID.
+ */
+public record CarritoAbandonadoEvent(
+        Long carritoId,
+        Long usuarioId,
+        LocalDateTime ultimaActividad,
+        List<Linea> lineas,
+        BigDecimal total) {
+
+    public CarritoAbandonadoEvent {
+        lineas = List.copyOf(lineas);
+    }
+
+    public static CarritoAbandonadoEvent de(CarritoActividad carrito, List<ItemCarritoResumen> items) {
+        List<Linea> lineas = items.stream()
+                .map(item -> new Linea(item.varianteId(), item.cantidad()))
+                .toList();
+        BigDecimal total = items.stream()
+                .map(item -> item.precioUnitario().multiply(BigDecimal.valueOf(item.cantidad())))
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return new CarritoAbandonadoEvent(
+                carrito.carritoId(), carrito.usuarioId(), carrito.fechaActualizacion(), lineas, total);
+    }
+
+    public record Linea(Long varianteId, int cantidad) {
+    }
+}
@@ -0,0 +1,18 @@
+package ecommersDemo.demo.event;
+
+import java.util.Set;
+
+/**
+ * Evento publicado cuando cambian datos de productos que se muestran en el catálogo.
+ * Se procesa después del commit para refrescar el snapshot en memoria.
+ */
+public record CatalogoModificadoEvent(Set<Long> productoIds) {
+
+    public CatalogoModificadoEvent {
+        productoIds = Set.copyOf(productoIds);
+    }
+
+    public static CatalogoModificadoEvent deProducto(Long productoId) {
+        return new CatalogoModificadoEvent(Set.of(productoId));
+    }
+}
@@ -0,0 +1,8 @@
+package ecommersDemo.demo.event;
+
+/**
+ * Evento publicado cuando se modifica un cupón (alta, edición, baja o activación).
+ * Se procesa después del commit para invalidar las reglas de validación cacheadas.
+ */
+public record CuponModificadoEvent(String codigo) {
+}
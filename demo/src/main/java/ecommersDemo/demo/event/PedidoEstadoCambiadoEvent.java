@@ -0,0 +1,54 @@
+package ecommersDemo.demo.event;
+
+import ecommersDemo.demo.model.DetallePedido;
+import ecommersDemo.demo.model.Pedido;
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import ecommersDemo.demo.model.Producto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Evento publicado cuando se crea un pedido (estadoAnterior null) o cambia su estado.
+ * Lleva una copia de los datos que necesitan los rollups, para no releer el pedido después del commit.
+ */
+public record PedidoEstadoCambiadoEvent(
+        Long pedidoId,
+        Long usuarioId,
+        LocalDate fecha,
+        MetodoPago metodoPago,
+        BigDecimal total,
+        EstadoPedido estadoAnterior,
+        EstadoPedido estadoNuevo,
+        List<Linea> lineas) {
+
+    public PedidoEstadoCambiadoEvent {
+        lineas = List.copyOf(lineas);
+    }
+
+    public static PedidoEstadoCambiadoEvent de(Pedido pedido, EstadoPedido estadoAnterior) {
+        List<Linea> lineas = pedido.getDetalles().stream()
+                .map(Linea::de)
+                .toList();
+        return new PedidoEstadoCambiadoEvent(
+                pedido.getId(),
+                pedido.getUsuario().getId(),
+                pedido.getFechaPedido().toLocalDate(),
+                pedido.getMetodoPago(),
+                pedido.getTotal(),
+                estadoAnterior,
+                pedido.getEstado(),
+                lineas);
+    }
+
+    public record Linea(Long productoId, Long categoriaId, int cantidad, BigDecimal subtotal) {
+
+        static Linea de(DetallePedido detalle) {
+            Producto producto = detalle.getProductoVariante().getProducto();
+            Long categoriaId = producto.getCategoria() != null ? producto.getCategoria().getId() : null;
+            return new Linea(producto.getId(), categoriaId, detalle.getCantidad(), detalle.getSubtotal());
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ecommersDemo.demo.event;
+
+/**
+ * Evento publicado cuando los rollups de ventas cambian en la base (volcado o reconstrucción),
+ * para que las lecturas cacheadas que dependen de ellos se descarten.
+ */
+public record RollupVentasVolcadoEvent() {
+}
@@ -1,6 +1,7 @@
 package ecommersDemo.demo.exception;
 
 import ecommersDemo.demo.dto.response.ApiResponse;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -45,6 +46,15 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.CONFLICT);
     }
 
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ApiResponse<Object>> handleOptimisticLockingFailureException(
+            OptimisticLockingFailureException ex, WebRequest request) {
+        
+        ApiResponse<Object> response = ApiResponse.error(
+                "El recurso fue modificado por otra operación. Intente nuevamente.");
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
+
     @ExceptionHandler(CarritoVacioException.class)
     public ResponseEntity<ApiResponse<Object>> handleCarritoVacioException(
             CarritoVacioException ex, WebRequest request) {
@@ -104,6 +104,14 @@ public class Carrito {
         items.clear();
     }
 
+    /**
+     * Marca el carrito como modificado cuando cambian sus ítems, que no tocan la fila del carrito:
+     * así @PreUpdate renueva la fecha de actualización y la expiración.
+     */
+    public void registrarActividad() {
+        this.fechaActualizacion = LocalDateTime.now();
+    }
+
     public ItemCarrito buscarItem(ProductoVariante variante) {
         return items.stream()
                 .filter(item -> item.getProductoVariante().getId().equals(variante.getId()))
@@ -111,6 +119,20 @@ public class Carrito {
                 .orElse(null);
     }
 
+    public ItemCarrito buscarItemPorVariante(Long varianteId) {
+        return items.stream()
+                .filter(item -> item.getProductoVariante().getId().equals(varianteId))
+                .findFirst()
+                .orElse(null);
+    }
+
+    public ItemCarrito buscarItemPorId(Long itemId) {
+        return items.stream()
+                .filter(item -> itemId.equals(item.getId()))
+                .findFirst()
+                .orElse(null);
+    }
+
     // Getters y Setters
     public Long getId() {
         return id;
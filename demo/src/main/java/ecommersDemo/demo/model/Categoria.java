@@ -1,12 +1,14 @@
 package ecommersDemo.demo.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(name = "categorias")
+@BatchSize(size = 50)
 public class Categoria {
 
     @Id
@@ -1,6 +1,7 @@
 package ecommersDemo.demo.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -46,6 +47,12 @@ public class Cupon {
     @Column(nullable = false)
     private Boolean activo = true;
 
+    // Bloqueo optimista: fila muy concurrida durante promociones
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
     @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private LocalDateTime fechaCreacion;
 
@@ -150,6 +157,10 @@ public class Cupon {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public String getCodigo() {
         return codigo;
     }
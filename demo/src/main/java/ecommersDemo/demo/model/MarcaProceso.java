@@ -0,0 +1,51 @@
+package ecommersDemo.demo.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Marca de agua de un proceso incremental: la última fila procesada, por fecha e ID.
+ * El proceso retoma desde la fila siguiente a (fecha, ultimoId).
+ */
+@Entity
+@Table(name = "marcas_proceso")
+public class MarcaProceso {
+
+    @Id
+    @Column(length = 50)
+    private String nombre;
+
+    @Column(nullable = false)
+    private LocalDateTime fecha;
+
+    @Column(name = "ultimo_id", nullable = false)
+    private Long ultimoId;
+
+    // Constructor vacío requerido por JPA
+    public MarcaProceso() {
+    }
+
+    public MarcaProceso(String nombre, LocalDateTime fecha, Long ultimoId) {
+        this.nombre = nombre;
+        this.fecha = fecha;
+        this.ultimoId = ultimoId;
+    }
+
+    public void avanzar(LocalDateTime fecha, Long ultimoId) {
+        this.fecha = fecha;
+        this.ultimoId = ultimoId;
+    }
+
+    // Getters y Setters
+    public String getNombre() {
+        return nombre;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+
+    public Long getUltimoId() {
+        return ultimoId;
+    }
+}
@@ -1,13 +1,19 @@
 package ecommersDemo.demo.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "pedidos")
+@Table(name = "pedidos",
+       indexes = {
+               @Index(name = "idx_pedidos_fecha", columnList = "fecha_pedido, id"),
+               @Index(name = "idx_pedidos_usuario_fecha", columnList = "usuario_id, fecha_pedido, id"),
+               @Index(name = "idx_pedidos_estado_fecha", columnList = "estado, fecha_pedido, id")
+       })
 public class Pedido {
 
     @Id
@@ -73,6 +79,7 @@ public class Pedido {
     private LocalDateTime fechaEntrega;
 
     @OneToMany(mappedBy = "pedido", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     private List<DetallePedido> detalles = new ArrayList<>();
 
     public enum EstadoPedido {
@@ -119,9 +126,10 @@ public class Pedido {
 
     // Métodos de utilidad
     private void generarNumeroPedido() {
-        // Formato: PED-YYYYMMDD-XXXXX (ej: PED-20251210-00001)
+        // Formato: PED-YYYYMMDD-XXXXXXXX (ej: PED-20251210-00000001)
+        // 8 dígitos aleatorios para que los checkouts concurrentes del mismo día no choquen
         String fecha = java.time.LocalDate.now().toString().replace("-", "");
-        String random = String.format("%05d", (int) (Math.random() * 100000));
+        String random = String.format("%08d", java.util.concurrent.ThreadLocalRandom.current().nextInt(100_000_000));
         this.numeroPedido = "PED-" + fecha + "-" + random;
     }
 
@@ -1,13 +1,16 @@
 package ecommersDemo.demo.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "productos")
+@Table(name = "productos",
+       indexes = @Index(name = "idx_productos_activo_stock", columnList = "activo, tiene_stock"))
 public class Producto {
 
     @Id
@@ -44,6 +47,15 @@ public class Producto {
     @Column(nullable = false)
     private Boolean destacado = false;
 
+    // Stock agregado de las variantes activas; se mantiene en cada cambio de stock
+    @Column(name = "stock_total", nullable = false)
+    @ColumnDefault("0")
+    private Integer stockTotal = 0;
+
+    @Column(name = "tiene_stock", nullable = false)
+    @ColumnDefault("false")
+    private Boolean tieneStock = false;
+
     @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private LocalDateTime fechaCreacion;
 
@@ -54,10 +66,13 @@ public class Producto {
     @JoinColumn(name = "categoria_id", nullable = false)
     private Categoria categoria;
 
+    // Las colecciones se cargan en lotes para evitar N+1 al armar listados de DTOs
     @OneToMany(mappedBy = "producto", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     private List<ProductoVariante> variantes = new ArrayList<>();
 
     @OneToMany(mappedBy = "producto", cascade = CascadeType.ALL, orphanRemoval = true)
+    @BatchSize(size = 50)
     @OrderBy("orden ASC")
     private List<ProductoImagen> imagenes = new ArrayList<>();
 
@@ -92,13 +107,19 @@ public class Producto {
     }
 
     public int getStockTotal() {
-        return variantes.stream()
-                .mapToInt(ProductoVariante::getStock)
-                .sum();
+        return stockTotal != null ? stockTotal : 0;
     }
 
     public boolean tieneStock() {
-        return getStockTotal() > 0;
+        return Boolean.TRUE.equals(tieneStock);
+    }
+
+    /**
+     * Ajusta el stock agregado cuando cambia el stock de una variante activa.
+     */
+    public void ajustarStockTotal(int delta) {
+        this.stockTotal = Math.max(0, getStockTotal() + delta);
+        this.tieneStock = this.stockTotal > 0;
     }
 
     // Helper para agregar variante
@@ -1,6 +1,7 @@
 package ecommersDemo.demo.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
@@ -45,6 +46,12 @@ public class ProductoVariante {
     @Column(nullable = false)
     private Boolean activo = true;
 
+    // Bloqueo optimista: fila muy concurrida durante promociones
+    @Version
+    @Column(nullable = false)
+    @ColumnDefault("0")
+    private Long version;
+
     @Column(name = "fecha_creacion", nullable = false, updatable = false)
     private LocalDateTime fechaCreacion;
 
@@ -95,6 +102,7 @@ public class ProductoVariante {
     public void decrementarStock(int cantidad) {
         if (stock != null && stock >= cantidad) {
             this.stock -= cantidad;
+            actualizarStockProducto(-cantidad);
         } else {
             throw new IllegalStateException("Stock insuficiente");
         }
@@ -102,6 +110,19 @@ public class ProductoVariante {
 
     public void incrementarStock(int cantidad) {
         this.stock = (this.stock != null ? this.stock : 0) + cantidad;
+        actualizarStockProducto(cantidad);
+    }
+
+    // Stock con el que la variante aporta al agregado del producto (0 si está inactiva)
+    public int getStockAportado() {
+        return Boolean.TRUE.equals(activo) && stock != null ? stock : 0;
+    }
+
+    // Mantiene el stock agregado del producto (solo cuentan las variantes activas)
+    private void actualizarStockProducto(int delta) {
+        if (producto != null && Boolean.TRUE.equals(activo)) {
+            producto.ajustarStockTotal(delta);
+        }
     }
 
     public BigDecimal getPrecioTotal() {
@@ -133,6 +154,10 @@ public class ProductoVariante {
         this.id = id;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
     public Producto getProducto() {
         return producto;
     }
@@ -1,11 +1,13 @@
 package ecommersDemo.demo.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
 @Table(name = "talles")
+@BatchSize(size = 50)
 public class Talle {
 
     @Id
@@ -0,0 +1,80 @@
+package ecommersDemo.demo.model;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Rollup diario de pedidos por día (fecha del pedido), estado y método de pago.
+ * Se mantiene incrementalmente con los cambios de estado y se puede reconstruir desde pedidos.
+ */
+@Entity
+@Table(name = "ventas_diarias",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"fecha", "estado", "metodo_pago"}))
+public class VentaDiaria {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private EstadoPedido estado;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "metodo_pago", length = 50)
+    private MetodoPago metodoPago;
+
+    @Column(nullable = false)
+    private Long pedidos = 0L;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal total = BigDecimal.ZERO;
+
+    // Constructor vacío requerido por JPA
+    public VentaDiaria() {
+    }
+
+    public VentaDiaria(LocalDate fecha, EstadoPedido estado, MetodoPago metodoPago, Long pedidos, BigDecimal total) {
+        this.fecha = fecha;
+        this.estado = estado;
+        this.metodoPago = metodoPago;
+        this.pedidos = pedidos;
+        this.total = total;
+    }
+
+    public void sumar(long pedidos, BigDecimal total) {
+        this.pedidos += pedidos;
+        this.total = this.total.add(total);
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public EstadoPedido getEstado() {
+        return estado;
+    }
+
+    public MetodoPago getMetodoPago() {
+        return metodoPago;
+    }
+
+    public Long getPedidos() {
+        return pedidos;
+    }
+
+    public BigDecimal getTotal() {
+        return total;
+    }
+}
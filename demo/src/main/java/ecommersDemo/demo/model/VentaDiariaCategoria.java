@@ -0,0 +1,89 @@
+package ecommersDemo.demo.model;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Rollup diario por día (fecha del pedido), estado y categoría: pedidos que incluyen la categoría,
+ * unidades e ingresos de sus líneas.
+ * Se mantiene incrementalmente con los cambios de estado y se puede reconstruir desde los detalles.
+ */
+@Entity
+@Table(name = "ventas_diarias_categoria",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"fecha", "estado", "categoria_id"}))
+public class VentaDiariaCategoria {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private EstadoPedido estado;
+
+    @Column(name = "categoria_id")
+    private Long categoriaId;
+
+    @Column(nullable = false)
+    private Long pedidos = 0L;
+
+    @Column(nullable = false)
+    private Long unidades = 0L;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal monto = BigDecimal.ZERO;
+
+    // Constructor vacío requerido por JPA
+    public VentaDiariaCategoria() {
+    }
+
+    public VentaDiariaCategoria(LocalDate fecha, EstadoPedido estado, Long categoriaId,
+                                Long pedidos, Long unidades, BigDecimal monto) {
+        this.fecha = fecha;
+        this.estado = estado;
+        this.categoriaId = categoriaId;
+        this.pedidos = pedidos;
+        this.unidades = unidades;
+        this.monto = monto;
+    }
+
+    public void sumar(long pedidos, long unidades, BigDecimal monto) {
+        this.pedidos += pedidos;
+        this.unidades += unidades;
+        this.monto = this.monto.add(monto);
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public EstadoPedido getEstado() {
+        return estado;
+    }
+
+    public Long getCategoriaId() {
+        return categoriaId;
+    }
+
+    public Long getPedidos() {
+        return pedidos;
+    }
+
+    public Long getUnidades() {
+        return unidades;
+    }
+
+    public BigDecimal getMonto() {
+        return monto;
+    }
+}
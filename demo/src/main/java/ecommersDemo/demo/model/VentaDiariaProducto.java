@@ -0,0 +1,88 @@
+package ecommersDemo.demo.model;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Rollup diario de unidades e ingresos por día (fecha del pedido), estado, categoría y producto.
+ * Se mantiene incrementalmente con los cambios de estado y se puede reconstruir desde los detalles.
+ */
+@Entity
+@Table(name = "ventas_diarias_producto",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"fecha", "estado", "categoria_id", "producto_id"}),
+        indexes = @Index(name = "idx_ventas_diarias_producto_producto", columnList = "producto_id"))
+public class VentaDiariaProducto {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate fecha;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 30)
+    private EstadoPedido estado;
+
+    @Column(name = "categoria_id")
+    private Long categoriaId;
+
+    @Column(name = "producto_id", nullable = false)
+    private Long productoId;
+
+    @Column(nullable = false)
+    private Long unidades = 0L;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal monto = BigDecimal.ZERO;
+
+    // Constructor vacío requerido por JPA
+    public VentaDiariaProducto() {
+    }
+
+    public VentaDiariaProducto(LocalDate fecha, EstadoPedido estado, Long categoriaId, Long productoId,
+                               Long unidades, BigDecimal monto) {
+        this.fecha = fecha;
+        this.estado = estado;
+        this.categoriaId = categoriaId;
+        this.productoId = productoId;
+        this.unidades = unidades;
+        this.monto = monto;
+    }
+
+    public void sumar(long unidades, BigDecimal monto) {
+        this.unidades += unidades;
+        this.monto = this.monto.add(monto);
+    }
+
+    // Getters
+    public Long getId() {
+        return id;
+    }
+
+    public LocalDate getFecha() {
+        return fecha;
+    }
+
+    public EstadoPedido getEstado() {
+        return estado;
+    }
+
+    public Long getCategoriaId() {
+        return categoriaId;
+    }
+
+    public Long getProductoId() {
+        return productoId;
+    }
+
+    public Long getUnidades() {
+        return unidades;
+    }
+
+    public BigDecimal getMonto() {
+        return monto;
+    }
+}
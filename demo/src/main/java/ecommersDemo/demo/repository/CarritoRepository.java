@@ -2,6 +2,8 @@ package ecommersDemo.demo.repository;
 
 import ecommersDemo.demo.model.Carrito;
 import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.repository.projection.CarritoActividad;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -9,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,6 +33,59 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
      */
     Optional<Carrito> findBySessionId(String sessionId);
 
+    /**
+     * Busca un carrito con sus ítems, variantes, productos y talles en una sola consulta
+     * (todo lo que necesita CarritoDTO).
+     */
+    @Query("SELECT c FROM Carrito c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.productoVariante v " +
+           "LEFT JOIN FETCH v.producto LEFT JOIN FETCH v.talle WHERE c.id = :carritoId")
+    Optional<Carrito> findAgregadoPorId(@Param("carritoId") Long carritoId);
+
+    /**
+     * Carrito del usuario con ítems, variantes, productos y talles.
+     */
+    @Query("SELECT c FROM Carrito c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.productoVariante v " +
+           "LEFT JOIN FETCH v.producto LEFT JOIN FETCH v.talle WHERE c.usuario.id = :usuarioId")
+    Optional<Carrito> findAgregadoPorUsuario(@Param("usuarioId") Long usuarioId);
+
+    /**
+     * Carrito de la sesión con ítems, variantes, productos y talles.
+     */
+    @Query("SELECT c FROM Carrito c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.productoVariante v " +
+           "LEFT JOIN FETCH v.producto LEFT JOIN FETCH v.talle WHERE c.sessionId = :sessionId")
+    Optional<Carrito> findAgregadoPorSession(@Param("sessionId") String sessionId);
+
+    /**
+     * Carrito dueño del ítem, con ítems, variantes, productos y talles.
+     */
+    @Query("SELECT c FROM Carrito c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.productoVariante v " +
+           "LEFT JOIN FETCH v.producto LEFT JOIN FETCH v.talle " +
+           "WHERE c.id = (SELECT ic.carrito.id FROM ItemCarrito ic WHERE ic.id = :itemId)")
+    Optional<Carrito> findAgregadoPorItem(@Param("itemId") Long itemId);
+
+    /**
+     * Carritos de la sesión y del usuario, con ítems, variantes, productos y talles,
+     * para fusionarlos al iniciar sesión.
+     */
+    @Query("SELECT c FROM Carrito c LEFT JOIN FETCH c.items i LEFT JOIN FETCH i.productoVariante v " +
+           "LEFT JOIN FETCH v.producto LEFT JOIN FETCH v.talle WHERE c.id IN (" +
+           "SELECT s.id FROM Carrito s WHERE s.sessionId = :sessionId " +
+           "UNION SELECT u.id FROM Carrito u WHERE u.usuario.id = :usuarioId)")
+    List<Carrito> findAgregadosParaFusion(@Param("sessionId") String sessionId,
+                                          @Param("usuarioId") Long usuarioId);
+
+    /**
+     * Elimina un carrito por ID (sus ítems se eliminan antes).
+     */
+    @Modifying
+    @Query("DELETE FROM Carrito c WHERE c.id = :carritoId")
+    int eliminarPorId(@Param("carritoId") Long carritoId);
+
+    /**
+     * Verifica si existe un carrito persistido para la sesión.
+     */
+    boolean existsBySessionId(String sessionId);
+
     /**
      * Verifica si un usuario tiene un carrito.
      */
@@ -41,6 +97,18 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     @Query("SELECT c FROM Carrito c WHERE c.fechaExpiracion < :fechaActual")
     List<Carrito> findCarritosExpirados(@Param("fechaActual") LocalDateTime fechaActual);
 
+    /**
+     * IDs de carritos anónimos vencidos, los más viejos primero.
+     */
+    @Query("SELECT c.id FROM Carrito c WHERE c.usuario IS NULL AND c.fechaExpiracion < :fechaActual " +
+           "ORDER BY c.fechaExpiracion")
+    List<Long> findIdsAnonimosExpirados(@Param("fechaActual") LocalDateTime fechaActual, Limit limite);
+
+    /**
+     * Cuenta los carritos anónimos vencidos.
+     */
+    long countByUsuarioIsNullAndFechaExpiracionBefore(LocalDateTime fechaActual);
+
     /**
      * Busca carritos anónimos (sin usuario).
      */
@@ -53,6 +121,21 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     @Query("SELECT c FROM Carrito c WHERE c.fechaActualizacion < :fechaLimite")
     List<Carrito> findCarritosAbandonados(@Param("fechaLimite") LocalDateTime fechaLimite);
 
+    /**
+     * Carritos cuya última actividad es posterior a (desde, ultimoId) y no pasa de {@code hasta},
+     * en orden (fechaActualizacion, id). Recorre idx_carritos_actualizacion por rango,
+     * para avanzar una marca de agua sin releer la tabla.
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.CarritoActividad(c.id, u.id, c.fechaActualizacion) " +
+           "FROM Carrito c LEFT JOIN c.usuario u " +
+           "WHERE c.fechaActualizacion >= :desde AND c.fechaActualizacion <= :hasta " +
+           "AND (c.fechaActualizacion > :desde OR c.id > :ultimoId) " +
+           "ORDER BY c.fechaActualizacion, c.id")
+    List<CarritoActividad> findInactivosDesde(@Param("desde") LocalDateTime desde,
+                                              @Param("ultimoId") Long ultimoId,
+                                              @Param("hasta") LocalDateTime hasta,
+                                              Limit limite);
+
     /**
      * Elimina carritos expirados.
      */
@@ -60,6 +143,14 @@ public interface CarritoRepository extends JpaRepository<Carrito, Long> {
     @Query("DELETE FROM Carrito c WHERE c.fechaExpiracion < :fechaActual")
     int eliminarCarritosExpirados(@Param("fechaActual") LocalDateTime fechaActual);
 
+    /**
+     * Elimina los carritos indicados que sigan vencidos (sus ítems se eliminan antes).
+     */
+    @Modifying
+    @Query("DELETE FROM Carrito c WHERE c.id IN :carritoIds AND c.fechaExpiracion < :fechaActual")
+    int eliminarExpiradosPorIds(@Param("carritoIds") Collection<Long> carritoIds,
+                                @Param("fechaActual") LocalDateTime fechaActual);
+
     /**
      * Busca carritos no vacíos.
      */
@@ -2,6 +2,9 @@ package ecommersDemo.demo.repository;
 
 import ecommersDemo.demo.model.Cupon;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -23,6 +26,14 @@ public interface CuponRepository extends JpaRepository<Cupon, Long> {
      * Verifica si existe un cupón con el código dado.
      */
     boolean existsByCodigo(String codigo);
+
+    /**
+     * Suma usos a un cupón sin leerlo (volcado de los contadores en memoria).
+     */
+    @Modifying
+    @Query("UPDATE Cupon c SET c.usosActuales = c.usosActuales + :cantidad, c.version = c.version + 1 " +
+           "WHERE c.id = :cuponId")
+    int sumarUsos(@Param("cuponId") Long cuponId, @Param("cantidad") Integer cantidad);
 }
 
 
@@ -2,6 +2,8 @@ package ecommersDemo.demo.repository;
 
 import ecommersDemo.demo.model.DetallePedido;
 import ecommersDemo.demo.model.Pedido;
+import ecommersDemo.demo.model.VentaDiariaCategoria;
+import ecommersDemo.demo.model.VentaDiariaProducto;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -36,12 +38,26 @@ public interface DetallePedidoRepository extends JpaRepository<DetallePedido, Lo
     Long contarVentasPorVariante(@Param("varianteId") Long varianteId);
 
     /**
-     * Productos más vendidos (por cantidad).
+     * Rollup: unidades e ingresos agrupados por día, estado, categoría y producto
+     * (para reconstruir ventas_diarias_producto).
      */
-    @Query("SELECT dp.nombreProducto, SUM(dp.cantidad) as totalVendido FROM DetallePedido dp " +
-           "JOIN dp.pedido p WHERE p.estado NOT IN ('CANCELADO', 'DEVUELTO') " +
-           "GROUP BY dp.nombreProducto ORDER BY totalVendido DESC")
-    List<Object[]> findProductosMasVendidos();
+    @Query("SELECT new ecommersDemo.demo.model.VentaDiariaProducto(" +
+           "CAST(p.fechaPedido AS LocalDate), p.estado, c.id, pr.id, SUM(dp.cantidad), SUM(dp.subtotal)) " +
+           "FROM DetallePedido dp JOIN dp.pedido p JOIN dp.productoVariante v JOIN v.producto pr " +
+           "LEFT JOIN pr.categoria c " +
+           "GROUP BY CAST(p.fechaPedido AS LocalDate), p.estado, c.id, pr.id")
+    List<VentaDiariaProducto> agruparParaRollup();
+
+    /**
+     * Rollup: pedidos, unidades e ingresos agrupados por día, estado y categoría
+     * (para reconstruir ventas_diarias_categoria).
+     */
+    @Query("SELECT new ecommersDemo.demo.model.VentaDiariaCategoria(" +
+           "CAST(p.fechaPedido AS LocalDate), p.estado, c.id, COUNT(DISTINCT p.id), SUM(dp.cantidad), SUM(dp.subtotal)) " +
+           "FROM DetallePedido dp JOIN dp.pedido p JOIN dp.productoVariante v JOIN v.producto pr " +
+           "LEFT JOIN pr.categoria c " +
+           "GROUP BY CAST(p.fechaPedido AS LocalDate), p.estado, c.id")
+    List<VentaDiariaCategoria> agruparCategoriasParaRollup();
 
     /**
      * Busca detalles por nombre de producto (historial).
@@ -3,17 +3,20 @@ package ecommersDemo.demo.repository;
 import ecommersDemo.demo.model.Carrito;
 import ecommersDemo.demo.model.ItemCarrito;
 import ecommersDemo.demo.model.ProductoVariante;
+import ecommersDemo.demo.repository.projection.ItemCarritoResumen;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ItemCarritoRepository extends JpaRepository<ItemCarrito, Long> {
+public interface ItemCarritoRepository extends JpaRepository<ItemCarrito, Long>, ItemCarritoRepositoryCustom {
 
     /**
      * Busca items por carrito.
@@ -59,6 +62,23 @@ public interface ItemCarritoRepository extends JpaRepository<ItemCarrito, Long>
     @Query("DELETE FROM ItemCarrito ic WHERE ic.carrito.id = :carritoId AND ic.productoVariante.id = :varianteId")
     int eliminarItemDelCarrito(@Param("carritoId") Long carritoId, @Param("varianteId") Long varianteId);
 
+    /**
+     * Elimina los items de los carritos indicados que sigan vencidos.
+     */
+    @Modifying
+    @Query("DELETE FROM ItemCarrito ic WHERE ic.carrito.id IN (" +
+           "SELECT c.id FROM Carrito c WHERE c.id IN :carritoIds AND c.fechaExpiracion < :fechaActual)")
+    int eliminarItemsDeCarritosExpirados(@Param("carritoIds") Collection<Long> carritoIds,
+                                         @Param("fechaActual") LocalDateTime fechaActual);
+
+    /**
+     * Elimina del carrito los items de las variantes dadas.
+     */
+    @Modifying
+    @Query("DELETE FROM ItemCarrito ic WHERE ic.carrito.id = :carritoId AND ic.productoVariante.id IN :varianteIds")
+    int eliminarVariantesDelCarrito(@Param("carritoId") Long carritoId,
+                                    @Param("varianteIds") Collection<Long> varianteIds);
+
     /**
      * Actualiza la cantidad de un item.
      */
@@ -66,6 +86,14 @@ public interface ItemCarritoRepository extends JpaRepository<ItemCarrito, Long>
     @Query("UPDATE ItemCarrito ic SET ic.cantidad = :cantidad WHERE ic.id = :itemId")
     int actualizarCantidad(@Param("itemId") Long itemId, @Param("cantidad") Integer cantidad);
 
+    /**
+     * Resumen (variante, cantidad, precio) de los items de varios carritos.
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.ItemCarritoResumen(" +
+           "ic.carrito.id, ic.productoVariante.id, ic.cantidad, ic.precioUnitario) " +
+           "FROM ItemCarrito ic WHERE ic.carrito.id IN :carritoIds")
+    List<ItemCarritoResumen> findResumenPorCarritos(@Param("carritoIds") Collection<Long> carritoIds);
+
     /**
      * Busca items que contienen una variante específica (para validar stock).
      */
@@ -0,0 +1,18 @@
+package ecommersDemo.demo.repository;
+
+import ecommersDemo.demo.repository.projection.LineaCarrito;
+
+import java.util.List;
+
+/**
+ * Operaciones de ItemCarritoRepository que no se expresan con JPQL.
+ */
+public interface ItemCarritoRepositoryCustom {
+
+    /**
+     * Inserta o actualiza (upsert) las líneas en el carrito, en un único lote JDBC.
+     * Las cantidades y precios se fijan a los valores dados. Vacía el contexto de persistencia,
+     * como un @Modifying(clearAutomatically = true): el carrito hay que volver a leerlo.
+     */
+    void guardarLineas(Long carritoId, List<LineaCarrito> lineas);
+}
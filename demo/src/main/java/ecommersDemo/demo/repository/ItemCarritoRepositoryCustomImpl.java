@@ -0,0 +1,51 @@
+package ecommersDemo.demo.repository;
+
+import ecommersDemo.demo.repository.projection.LineaCarrito;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+/**
+ * Upsert de líneas de carrito con un MERGE por lotes. Corre sobre la conexión
+ * de la transacción JPA en curso.
+ */
+class ItemCarritoRepositoryCustomImpl implements ItemCarritoRepositoryCustom {
+
+    private static final String MERGE_LINEA =
+            "MERGE INTO items_carrito ic " +
+            "USING (VALUES (CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS INTEGER), CAST(? AS NUMERIC(10, 2)))) " +
+            "AS l (carrito_id, producto_variante_id, cantidad, precio_unitario) " +
+            "ON ic.carrito_id = l.carrito_id AND ic.producto_variante_id = l.producto_variante_id " +
+            "WHEN MATCHED THEN UPDATE SET cantidad = l.cantidad, precio_unitario = l.precio_unitario, " +
+            "fecha_actualizacion = CURRENT_TIMESTAMP " +
+            "WHEN NOT MATCHED THEN INSERT (carrito_id, producto_variante_id, cantidad, precio_unitario, " +
+            "fecha_agregado, fecha_actualizacion) " +
+            "VALUES (l.carrito_id, l.producto_variante_id, l.cantidad, l.precio_unitario, " +
+            "CURRENT_TIMESTAMP, CURRENT_TIMESTAMP)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    ItemCarritoRepositoryCustomImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void guardarLineas(Long carritoId, List<LineaCarrito> lineas) {
+        // Los cambios pendientes van antes del MERGE; después las entidades cargadas quedan viejas
+        entityManager.flush();
+        if (!lineas.isEmpty()) {
+            jdbcTemplate.batchUpdate(MERGE_LINEA, lineas, lineas.size(), (ps, linea) -> {
+                ps.setLong(1, carritoId);
+                ps.setLong(2, linea.varianteId());
+                ps.setInt(3, linea.cantidad());
+                ps.setBigDecimal(4, linea.precioUnitario());
+            });
+        }
+        entityManager.clear();
+    }
+}
@@ -0,0 +1,9 @@
+package ecommersDemo.demo.repository;
+
+import ecommersDemo.demo.model.MarcaProceso;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface MarcaProcesoRepository extends JpaRepository<MarcaProceso, String> {
+}
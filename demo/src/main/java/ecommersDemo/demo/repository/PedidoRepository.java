@@ -3,8 +3,14 @@ package ecommersDemo.demo.repository;
 import ecommersDemo.demo.model.Pedido;
 import ecommersDemo.demo.model.Pedido.EstadoPedido;
 import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.model.VentaDiaria;
+import ecommersDemo.demo.repository.projection.CompradorDia;
+import ecommersDemo.demo.repository.projection.EstadoDePedido;
+import ecommersDemo.demo.repository.projection.PedidosPorEstado;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -38,6 +44,24 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
      */
     Page<Pedido> findByUsuarioId(Long usuarioId, Pageable pageable);
 
+    /**
+     * Keyset: primera página de los pedidos de un usuario, del más reciente al más antiguo.
+     */
+    @EntityGraph(attributePaths = "usuario")
+    List<Pedido> findByUsuarioIdOrderByFechaPedidoDescIdDesc(Long usuarioId, Limit limit);
+
+    /**
+     * Keyset: pedidos de un usuario posteriores (en orden descendente) a la última fila entregada.
+     */
+    @EntityGraph(attributePaths = "usuario")
+    @Query("SELECT p FROM Pedido p WHERE p.usuario.id = :usuarioId " +
+           "AND (p.fechaPedido < :fecha OR (p.fechaPedido = :fecha AND p.id < :id)) " +
+           "ORDER BY p.fechaPedido DESC, p.id DESC")
+    List<Pedido> findSiguientesDeUsuario(@Param("usuarioId") Long usuarioId,
+                                         @Param("fecha") LocalDateTime fecha,
+                                         @Param("id") Long id,
+                                         Limit limit);
+
     /**
      * Busca pedidos por usuario ordenados por fecha descendente.
      */
@@ -53,6 +77,39 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
      */
     Page<Pedido> findByEstado(EstadoPedido estado, Pageable pageable);
 
+    /**
+     * Keyset: primera página de todos los pedidos, del más reciente al más antiguo.
+     */
+    @EntityGraph(attributePaths = "usuario")
+    List<Pedido> findAllByOrderByFechaPedidoDescIdDesc(Limit limit);
+
+    /**
+     * Keyset: pedidos posteriores (en orden descendente) a la última fila entregada.
+     */
+    @EntityGraph(attributePaths = "usuario")
+    @Query("SELECT p FROM Pedido p " +
+           "WHERE p.fechaPedido < :fecha OR (p.fechaPedido = :fecha AND p.id < :id) " +
+           "ORDER BY p.fechaPedido DESC, p.id DESC")
+    List<Pedido> findSiguientes(@Param("fecha") LocalDateTime fecha, @Param("id") Long id, Limit limit);
+
+    /**
+     * Keyset: primera página de los pedidos en un estado.
+     */
+    @EntityGraph(attributePaths = "usuario")
+    List<Pedido> findByEstadoOrderByFechaPedidoDescIdDesc(EstadoPedido estado, Limit limit);
+
+    /**
+     * Keyset: pedidos en un estado posteriores (en orden descendente) a la última fila entregada.
+     */
+    @EntityGraph(attributePaths = "usuario")
+    @Query("SELECT p FROM Pedido p WHERE p.estado = :estado " +
+           "AND (p.fechaPedido < :fecha OR (p.fechaPedido = :fecha AND p.id < :id)) " +
+           "ORDER BY p.fechaPedido DESC, p.id DESC")
+    List<Pedido> findSiguientesPorEstado(@Param("estado") EstadoPedido estado,
+                                         @Param("fecha") LocalDateTime fecha,
+                                         @Param("id") Long id,
+                                         Limit limit);
+
     /**
      * Busca pedidos por usuario y estado.
      */
@@ -76,6 +133,18 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
      */
     long countByEstado(EstadoPedido estado);
 
+    /**
+     * Cuenta los pedidos de un usuario.
+     */
+    long countByUsuarioId(Long usuarioId);
+
+    /**
+     * Cuenta pedidos de todos los estados en una sola consulta.
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.PedidosPorEstado(p.estado, COUNT(p)) " +
+           "FROM Pedido p GROUP BY p.estado")
+    List<PedidosPorEstado> contarPorEstado();
+
     /**
      * Calcula el total de ventas en un período.
      */
@@ -84,6 +153,36 @@ public interface PedidoRepository extends JpaRepository<Pedido, Long> {
     BigDecimal calcularTotalVentas(@Param("fechaInicio") LocalDateTime fechaInicio, 
                                     @Param("fechaFin") LocalDateTime fechaFin);
 
+    /**
+     * Estado de los pedidos modificados desde una fecha (reconstrucción del rollup y reconciliación de contadores).
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.EstadoDePedido(p.id, p.estado) " +
+           "FROM Pedido p WHERE p.fechaActualizacion >= :desde")
+    List<EstadoDePedido> findEstadosModificadosDesde(@Param("desde") LocalDateTime desde);
+
+    /**
+     * Estado de los pedidos de un usuario modificados desde una fecha (para el conteo de pedidos por usuario).
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.EstadoDePedido(p.id, p.estado) " +
+           "FROM Pedido p WHERE p.usuario.id = :usuarioId AND p.fechaActualizacion >= :desde")
+    List<EstadoDePedido> findEstadosDeUsuarioModificadosDesde(@Param("usuarioId") Long usuarioId,
+                                                              @Param("desde") LocalDateTime desde);
+
+    /**
+     * Rollup: pedidos agrupados por día, estado y método de pago (para reconstruir ventas_diarias).
+     */
+    @Query("SELECT new ecommersDemo.demo.model.VentaDiaria(" +
+           "CAST(p.fechaPedido AS LocalDate), p.estado, p.metodoPago, COUNT(p), SUM(p.total)) " +
+           "FROM Pedido p GROUP BY CAST(p.fechaPedido AS LocalDate), p.estado, p.metodoPago")
+    List<VentaDiaria> agruparParaRollup();
+
+    /**
+     * Métricas: pares día/usuario con pedidos (carga inicial de los sketches de compradores).
+     */
+    @Query("SELECT DISTINCT new ecommersDemo.demo.repository.projection.CompradorDia(" +
+           "CAST(p.fechaPedido AS LocalDate), p.usuario.id) FROM Pedido p")
+    List<CompradorDia> findCompradoresPorDia();
+
     /**
      * Busca los últimos N pedidos.
      */
@@ -4,18 +4,39 @@ import ecommersDemo.demo.model.Categoria;
 import ecommersDemo.demo.model.Producto;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * Las consultas usadas para armar ProductoDTO traen la categoría en el mismo SELECT
+ * (entity graph); imágenes, variantes y talles se cargan en lotes (@BatchSize),
+ * así la cantidad de sentencias no crece con el tamaño de la página.
+ */
 @Repository
 public interface ProductoRepository extends JpaRepository<Producto, Long> {
 
+    /**
+     * Todos los productos (admin) con su categoría.
+     */
+    @Override
+    @EntityGraph(attributePaths = "categoria")
+    List<Producto> findAll();
+
+    /**
+     * Busca productos por ID con su categoría (refresco del catálogo en memoria).
+     */
+    @EntityGraph(attributePaths = "categoria")
+    List<Producto> findByIdIn(Collection<Long> ids);
+
     /**
      * Busca un producto por su SKU.
      */
@@ -29,11 +50,13 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     /**
      * Busca productos activos.
      */
+    @EntityGraph(attributePaths = "categoria")
     List<Producto> findByActivoTrue();
 
     /**
      * Busca productos activos con paginación.
      */
+    @EntityGraph(attributePaths = "categoria")
     Page<Producto> findByActivoTrue(Pageable pageable);
 
     /**
@@ -49,16 +72,19 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     /**
      * Busca productos activos por categoría con paginación.
      */
+    @EntityGraph(attributePaths = "categoria")
     Page<Producto> findByCategoriaIdAndActivoTrue(Long categoriaId, Pageable pageable);
 
     /**
      * Busca productos destacados activos.
      */
+    @EntityGraph(attributePaths = "categoria")
     List<Producto> findByDestacadoTrueAndActivoTrue();
 
     /**
      * Busca productos con ofertas activas.
      */
+    @EntityGraph(attributePaths = "categoria")
     @Query("SELECT p FROM Producto p WHERE p.activo = true AND p.precioOferta IS NOT NULL AND p.precioOferta < p.precio")
     List<Producto> findProductosEnOferta();
 
@@ -67,14 +93,6 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
      */
     List<Producto> findByNombreContainingIgnoreCaseAndActivoTrue(String nombre);
 
-    /**
-     * Búsqueda de productos por nombre o descripción.
-     */
-    @Query("SELECT p FROM Producto p WHERE p.activo = true AND " +
-           "(LOWER(p.nombre) LIKE LOWER(CONCAT('%', :termino, '%')) OR " +
-           "LOWER(p.descripcion) LIKE LOWER(CONCAT('%', :termino, '%')))")
-    Page<Producto> buscarProductos(@Param("termino") String termino, Pageable pageable);
-
     /**
      * Busca productos por rango de precio.
      */
@@ -97,19 +115,30 @@ public interface ProductoRepository extends JpaRepository<Producto, Long> {
     /**
      * Busca productos con stock disponible.
      */
-    @Query("SELECT DISTINCT p FROM Producto p " +
-           "JOIN p.variantes v WHERE p.activo = true AND v.activo = true AND v.stock > 0")
+    @Query("SELECT p FROM Producto p WHERE p.activo = true AND p.tieneStock = true")
     List<Producto> findProductosConStock();
 
     /**
      * Productos más recientes.
      */
+    @EntityGraph(attributePaths = "categoria")
     List<Producto> findTop10ByActivoTrueOrderByFechaCreacionDesc();
 
     /**
      * Busca productos relacionados por categoría (excluyendo el producto actual).
      */
+    @EntityGraph(attributePaths = "categoria")
     @Query("SELECT p FROM Producto p WHERE p.activo = true AND p.categoria.id = :categoriaId AND p.id != :productoId ORDER BY p.fechaCreacion DESC")
     List<Producto> findProductosRelacionados(@Param("categoriaId") Long categoriaId, @Param("productoId") Long productoId, Pageable pageable);
+
+    /**
+     * Ajusta el stock agregado de un producto sin leerlo (reservas y devoluciones de stock).
+     */
+    @Modifying
+    @Query("UPDATE Producto p SET " +
+           "p.stockTotal = CASE WHEN p.stockTotal + :delta > 0 THEN p.stockTotal + :delta ELSE 0 END, " +
+           "p.tieneStock = CASE WHEN p.stockTotal + :delta > 0 THEN true ELSE false END " +
+           "WHERE p.id = :productoId")
+    int ajustarStockTotal(@Param("productoId") Long productoId, @Param("delta") Integer delta);
 }
 
@@ -3,12 +3,14 @@ package ecommersDemo.demo.repository;
 import ecommersDemo.demo.model.Producto;
 import ecommersDemo.demo.model.ProductoVariante;
 import ecommersDemo.demo.model.Talle;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,6 +22,18 @@ public interface ProductoVarianteRepository extends JpaRepository<ProductoVarian
      */
     Optional<ProductoVariante> findBySku(String sku);
 
+    /**
+     * Busca una variante por ID trayendo producto y talle en la misma consulta.
+     */
+    @EntityGraph(attributePaths = {"producto", "talle"})
+    Optional<ProductoVariante> findConProductoYTalleById(Long id);
+
+    /**
+     * Busca variantes por ID trayendo su producto (para el precio) en la misma consulta.
+     */
+    @EntityGraph(attributePaths = {"producto"})
+    List<ProductoVariante> findConProductoByIdIn(Collection<Long> ids);
+
     /**
      * Verifica si existe una variante con el SKU dado.
      */
@@ -33,16 +47,19 @@ public interface ProductoVarianteRepository extends JpaRepository<ProductoVarian
     /**
      * Busca variantes activas por producto.
      */
+    @EntityGraph(attributePaths = {"producto", "talle"})
     List<ProductoVariante> findByProductoAndActivoTrue(Producto producto);
 
     /**
      * Busca variantes por producto ID.
      */
+    @EntityGraph(attributePaths = {"producto", "talle"})
     List<ProductoVariante> findByProductoId(Long productoId);
 
     /**
      * Busca variantes activas con stock por producto.
      */
+    @EntityGraph(attributePaths = {"producto", "talle"})
     @Query("SELECT pv FROM ProductoVariante pv WHERE pv.producto.id = :productoId " +
            "AND pv.activo = true AND pv.stock > 0")
     List<ProductoVariante> findVariantesDisponibles(@Param("productoId") Long productoId);
@@ -65,12 +82,14 @@ public interface ProductoVarianteRepository extends JpaRepository<ProductoVarian
     /**
      * Busca variantes con stock bajo.
      */
+    @EntityGraph(attributePaths = {"producto", "talle"})
     @Query("SELECT pv FROM ProductoVariante pv WHERE pv.activo = true AND pv.stock <= pv.stockMinimo AND pv.stock > 0")
     List<ProductoVariante> findVariantesConStockBajo();
 
     /**
      * Busca variantes sin stock.
      */
+    @EntityGraph(attributePaths = {"producto", "talle"})
     @Query("SELECT pv FROM ProductoVariante pv WHERE pv.activo = true AND pv.stock = 0")
     List<ProductoVariante> findVariantesSinStock();
 
@@ -85,14 +104,30 @@ public interface ProductoVarianteRepository extends JpaRepository<ProductoVarian
      * Actualiza el stock de una variante.
      */
     @Modifying
-    @Query("UPDATE ProductoVariante pv SET pv.stock = :nuevoStock WHERE pv.id = :varianteId")
+    @Query("UPDATE ProductoVariante pv SET pv.stock = :nuevoStock, pv.version = pv.version + 1 WHERE pv.id = :varianteId")
     int actualizarStock(@Param("varianteId") Long varianteId, @Param("nuevoStock") Integer nuevoStock);
 
     /**
-     * Decrementa el stock de una variante.
+     * Decrementa el stock de una variante activa solo si alcanza.
+     * Devuelve 0 si no hay stock suficiente.
      */
     @Modifying
-    @Query("UPDATE ProductoVariante pv SET pv.stock = pv.stock - :cantidad WHERE pv.id = :varianteId AND pv.stock >= :cantidad")
+    @Query("UPDATE ProductoVariante pv SET pv.stock = pv.stock - :cantidad, pv.version = pv.version + 1 " +
+           "WHERE pv.id = :varianteId AND pv.activo = true AND pv.stock >= :cantidad")
     int decrementarStock(@Param("varianteId") Long varianteId, @Param("cantidad") Integer cantidad);
+
+    /**
+     * Incrementa el stock de una variante (devolución de stock).
+     */
+    @Modifying
+    @Query("UPDATE ProductoVariante pv SET pv.stock = pv.stock + :cantidad, pv.version = pv.version + 1 " +
+           "WHERE pv.id = :varianteId")
+    int incrementarStock(@Param("varianteId") Long varianteId, @Param("cantidad") Integer cantidad);
+
+    /**
+     * Stock actual de una variante, leído directamente de la base.
+     */
+    @Query("SELECT pv.stock FROM ProductoVariante pv WHERE pv.id = :varianteId")
+    Optional<Integer> obtenerStock(@Param("varianteId") Long varianteId);
 }
 
@@ -28,6 +28,11 @@ public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
      */
     List<Usuario> findByRol(Rol rol);
 
+    /**
+     * Cuenta usuarios por rol.
+     */
+    long countByRol(Rol rol);
+
     /**
      * Busca usuarios activos.
      */
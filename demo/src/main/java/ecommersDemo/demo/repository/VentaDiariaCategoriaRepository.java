@@ -0,0 +1,32 @@
+package ecommersDemo.demo.repository;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.VentaDiariaCategoria;
+import ecommersDemo.demo.repository.projection.VentasCategoria;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VentaDiariaCategoriaRepository extends JpaRepository<VentaDiariaCategoria, Long> {
+
+    /**
+     * Busca la fila del rollup para un día, estado y categoría.
+     */
+    Optional<VentaDiariaCategoria> findByFechaAndEstadoAndCategoriaId(LocalDate fecha, EstadoPedido estado, Long categoriaId);
+
+    /**
+     * Pedidos, unidades e ingresos por categoría en un rango de días, sin cancelados ni devueltos.
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.VentasCategoria(" +
+           "v.categoriaId, c.nombre, SUM(v.pedidos), SUM(v.unidades), SUM(v.monto)) " +
+           "FROM VentaDiariaCategoria v LEFT JOIN Categoria c ON c.id = v.categoriaId " +
+           "WHERE v.fecha BETWEEN :desde AND :hasta AND v.estado NOT IN ('CANCELADO', 'DEVUELTO') " +
+           "GROUP BY v.categoriaId, c.nombre")
+    List<VentasCategoria> sumarPorCategoria(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+}
@@ -0,0 +1,40 @@
+package ecommersDemo.demo.repository;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.VentaDiariaProducto;
+import ecommersDemo.demo.repository.projection.VentasProducto;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VentaDiariaProductoRepository extends JpaRepository<VentaDiariaProducto, Long> {
+
+    /**
+     * Busca la fila del rollup para un día, estado, categoría y producto.
+     */
+    Optional<VentaDiariaProducto> findByFechaAndEstadoAndCategoriaIdAndProductoId(
+            LocalDate fecha, EstadoPedido estado, Long categoriaId, Long productoId);
+
+    /**
+     * Filas del rollup desde una fecha, excluyendo estados (carga inicial del top de vendidos).
+     */
+    List<VentaDiariaProducto> findByFechaGreaterThanEqualAndEstadoNotIn(LocalDate fecha, Collection<EstadoPedido> estados);
+
+    /**
+     * Unidades e ingresos vendidos de algunos productos desde una fecha (sin cancelados ni devueltos).
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.VentasProducto(" +
+           "v.productoId, SUM(v.unidades), SUM(v.monto)) " +
+           "FROM VentaDiariaProducto v " +
+           "WHERE v.productoId IN :productoIds AND v.fecha >= :desde AND v.estado NOT IN ('CANCELADO', 'DEVUELTO') " +
+           "GROUP BY v.productoId")
+    List<VentasProducto> sumarPorProductos(@Param("productoIds") Collection<Long> productoIds,
+                                           @Param("desde") LocalDate desde);
+}
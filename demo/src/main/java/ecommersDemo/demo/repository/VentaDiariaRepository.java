@@ -0,0 +1,39 @@
+package ecommersDemo.demo.repository;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import ecommersDemo.demo.model.VentaDiaria;
+import ecommersDemo.demo.repository.projection.VentasDia;
+import ecommersDemo.demo.repository.projection.VentasEstado;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface VentaDiariaRepository extends JpaRepository<VentaDiaria, Long> {
+
+    /**
+     * Busca la fila del rollup para un día, estado y método de pago.
+     */
+    Optional<VentaDiaria> findByFechaAndEstadoAndMetodoPago(LocalDate fecha, EstadoPedido estado, MetodoPago metodoPago);
+
+    /**
+     * Pedidos y monto por estado en un rango de días.
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.VentasEstado(v.estado, SUM(v.pedidos), SUM(v.total)) " +
+           "FROM VentaDiaria v WHERE v.fecha BETWEEN :desde AND :hasta GROUP BY v.estado")
+    List<VentasEstado> sumarPorEstado(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+
+    /**
+     * Pedidos no cancelados y ventas por día en un rango de días.
+     */
+    @Query("SELECT new ecommersDemo.demo.repository.projection.VentasDia(v.fecha, SUM(v.pedidos), SUM(v.total)) " +
+           "FROM VentaDiaria v WHERE v.fecha BETWEEN :desde AND :hasta AND v.estado <> 'CANCELADO' " +
+           "GROUP BY v.fecha ORDER BY v.fecha")
+    List<VentasDia> sumarPorDia(@Param("desde") LocalDate desde, @Param("hasta") LocalDate hasta);
+}
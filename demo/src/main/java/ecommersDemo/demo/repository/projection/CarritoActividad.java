@@ -0,0 +1,9 @@
+package ecommersDemo.demo.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Última actividad de un carrito (usuarioId null si es anónimo).
+ */
+public record CarritoActividad(Long carritoId, Long usuarioId, LocalDateTime fechaActualizacion) {
+}
@@ -0,0 +1,9 @@
+package ecommersDemo.demo.repository.projection;
+
+import java.time.LocalDate;
+
+/**
+ * Un usuario que hizo al menos un pedido en un día.
+ */
+public record CompradorDia(LocalDate fecha, Long usuarioId) {
+}
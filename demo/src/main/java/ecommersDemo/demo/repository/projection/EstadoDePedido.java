@@ -0,0 +1,9 @@
+package ecommersDemo.demo.repository.projection;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+
+/**
+ * Estado de un pedido.
+ */
+public record EstadoDePedido(Long pedidoId, EstadoPedido estado) {
+}
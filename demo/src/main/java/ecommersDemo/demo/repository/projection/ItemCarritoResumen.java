@@ -0,0 +1,9 @@
+package ecommersDemo.demo.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Ítem de un carrito reducido a variante, cantidad y precio unitario.
+ */
+public record ItemCarritoResumen(Long carritoId, Long varianteId, Integer cantidad, BigDecimal precioUnitario) {
+}
@@ -0,0 +1,9 @@
+package ecommersDemo.demo.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Línea de un carrito: variante, cantidad y precio unitario, tal como se guarda en items_carrito.
+ */
+public record LineaCarrito(Long varianteId, int cantidad, BigDecimal precioUnitario) {
+}
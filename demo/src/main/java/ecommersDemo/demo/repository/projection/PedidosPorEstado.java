@@ -0,0 +1,9 @@
+package ecommersDemo.demo.repository.projection;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+
+/**
+ * Cantidad de pedidos en un estado.
+ */
+public record PedidosPorEstado(EstadoPedido estado, long cantidad) {
+}
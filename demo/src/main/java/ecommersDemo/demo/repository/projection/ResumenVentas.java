@@ -0,0 +1,17 @@
+package ecommersDemo.demo.repository.projection;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Cantidad de pedidos y monto total de un período, calculados en la base.
+ */
+public record ResumenVentas(long pedidos, BigDecimal total) {
+
+    public BigDecimal ticketPromedio() {
+        if (pedidos == 0) {
+            return BigDecimal.ZERO;
+        }
+        return total.divide(BigDecimal.valueOf(pedidos), 2, RoundingMode.HALF_UP);
+    }
+}
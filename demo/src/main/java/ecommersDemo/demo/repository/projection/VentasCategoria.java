@@ -0,0 +1,17 @@
+package ecommersDemo.demo.repository.projection;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Pedidos, unidades e ingresos de una categoría en un período, sumados desde el rollup diario.
+ */
+public record VentasCategoria(Long categoriaId, String nombre, long pedidos, long unidades, BigDecimal ingresos) {
+
+    public BigDecimal ticketPromedio() {
+        if (pedidos == 0) {
+            return BigDecimal.ZERO;
+        }
+        return ingresos.divide(BigDecimal.valueOf(pedidos), 2, RoundingMode.HALF_UP);
+    }
+}
@@ -0,0 +1,10 @@
+package ecommersDemo.demo.repository.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Pedidos y ventas de un día, agrupados en la base.
+ */
+public record VentasDia(LocalDate fecha, long pedidos, BigDecimal total) {
+}
@@ -0,0 +1,11 @@
+package ecommersDemo.demo.repository.projection;
+
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+
+import java.math.BigDecimal;
+
+/**
+ * Pedidos y monto de un estado, sumados desde el rollup diario.
+ */
+public record VentasEstado(EstadoPedido estado, long pedidos, BigDecimal total) {
+}
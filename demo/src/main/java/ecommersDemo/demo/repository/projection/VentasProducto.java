@@ -0,0 +1,9 @@
+package ecommersDemo.demo.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Unidades e ingresos de un producto en un período, sumados desde el rollup diario.
+ */
+public record VentasProducto(Long productoId, long unidades, BigDecimal monto) {
+}
@@ -0,0 +1,73 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
+import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.repository.PedidoRepository;
+import ecommersDemo.demo.repository.UsuarioRepository;
+import ecommersDemo.demo.repository.projection.CompradorDia;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Analítica de clientes: compradores únicos por período con sketches HyperLogLog por día.
+ * Cada día con pedidos ocupa 4 KB; un rango cualquiera se responde combinando los días que abarca,
+ * sin leer pedidos. Se alimenta con los pedidos creados.
+ */
+@Component
+public class AnaliticaClientes {
+
+    private final PedidoRepository pedidoRepository;
+    private final UsuarioRepository usuarioRepository;
+
+    private final Map<LocalDate, HyperLogLog> compradoresPorDia = new ConcurrentHashMap<>();
+
+    public AnaliticaClientes(PedidoRepository pedidoRepository, UsuarioRepository usuarioRepository) {
+        this.pedidoRepository = pedidoRepository;
+        this.usuarioRepository = usuarioRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        for (CompradorDia comprador : pedidoRepository.findCompradoresPorDia()) {
+            registrar(comprador.fecha(), comprador.usuarioId());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPedidoEstadoCambiado(PedidoEstadoCambiadoEvent evento) {
+        if (evento.estadoAnterior() == null) {
+            registrar(evento.fecha(), evento.usuarioId());
+        }
+    }
+
+    /**
+     * Estimación de los usuarios distintos que hicieron pedidos entre dos días (inclusive).
+     */
+    public long contarCompradoresUnicos(LocalDate desde, LocalDate hasta) {
+        byte[] acumulado = HyperLogLog.nuevoAcumulado();
+        compradoresPorDia.forEach((fecha, sketch) -> {
+            if (!fecha.isBefore(desde) && !fecha.isAfter(hasta)) {
+                sketch.combinarEn(acumulado);
+            }
+        });
+        return HyperLogLog.estimar(acumulado);
+    }
+
+    /**
+     * Cantidad de clientes registrados (consulta COUNT, sin cargar usuarios).
+     */
+    public long contarClientesRegistrados() {
+        return usuarioRepository.countByRol(Usuario.Rol.CLIENTE);
+    }
+
+    private void registrar(LocalDate fecha, Long usuarioId) {
+        compradoresPorDia.computeIfAbsent(fecha, f -> new HyperLogLog()).agregar(usuarioId);
+    }
+}
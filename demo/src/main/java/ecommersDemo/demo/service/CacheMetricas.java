@@ -0,0 +1,141 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
+import ecommersDemo.demo.event.RollupVentasVolcadoEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Cache de resultados de MetricsService por método y argumentos, con TTL.
+ * Las consultas concurrentes de una misma clave comparten un único cálculo (single-flight),
+ * así varios dashboards refrescando a la vez no multiplican las consultas.
+ * Se invalida cuando cambia un pedido y cuando se vuelcan los rollups de ventas.
+ */
+@Component
+public class CacheMetricas {
+
+    private static final String METRICA_ACCESOS = "ecommers.metricas.cache.accesos";
+    private static final String METRICA_CALCULO = "ecommers.metricas.cache.calculo";
+
+    private final Duration ttl;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Clave, Entrada> entradas = new ConcurrentHashMap<>();
+
+    public CacheMetricas(@Value("${ecommers.metricas.cache-ttl:60s}") Duration ttl,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry) {
+        this.ttl = ttl;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Devuelve el resultado cacheado para el método y sus argumentos, o lo calcula una sola vez
+     * (en una transacción de solo lectura) si no está o venció.
+     */
+    public <T> T obtener(String metodo, Supplier<T> calculo, Object... argumentos) {
+        Clave clave = new Clave(metodo, List.of(argumentos));
+        long ahora = System.nanoTime();
+        boolean[] calculaEsteHilo = {false};
+
+        Entrada entrada = entradas.compute(clave, (k, actual) -> {
+            if (actual != null && !actual.vencida(ahora)) {
+                return actual;
+            }
+            calculaEsteHilo[0] = true;
+            return new Entrada();
+        });
+
+        if (!calculaEsteHilo[0]) {
+            contador(metodo, "hit").increment();
+            return esperar(entrada);
+        }
+
+        contador(metodo, "miss").increment();
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        try {
+            T resultado = transactionTemplate.execute(status -> calculo.get());
+            entrada.completar(resultado, System.nanoTime() + ttl.toNanos());
+            return resultado;
+        } catch (RuntimeException e) {
+            entradas.remove(clave, entrada);
+            entrada.futuro.completeExceptionally(e);
+            throw e;
+        } finally {
+            muestra.stop(Timer.builder(METRICA_CALCULO).tag("metodo", metodo).register(meterRegistry));
+        }
+    }
+
+    public void invalidarTodo() {
+        entradas.clear();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPedidoEstadoCambiado(PedidoEstadoCambiadoEvent evento) {
+        invalidarTodo();
+    }
+
+    @EventListener
+    public void onRollupVolcado(RollupVentasVolcadoEvent evento) {
+        invalidarTodo();
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    @SuppressWarnings("unchecked")
+    private static <T> T esperar(Entrada entrada) {
+        try {
+            return (T) entrada.futuro.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+
+    private Counter contador(String metodo, String resultado) {
+        return Counter.builder(METRICA_ACCESOS)
+                .tag("metodo", metodo)
+                .tag("resultado", resultado)
+                .register(meterRegistry);
+    }
+
+    private record Clave(String metodo, List<Object> argumentos) {
+    }
+
+    private static final class Entrada {
+
+        private final CompletableFuture<Object> futuro = new CompletableFuture<>();
+        private volatile long venceEn;
+
+        void completar(Object resultado, long venceEn) {
+            this.venceEn = venceEn;
+            futuro.complete(resultado);
+        }
+
+        boolean vencida(long ahora) {
+            // Mientras se calcula no vence: los demás hilos esperan el mismo resultado
+            return futuro.isDone() && ahora - venceEn >= 0;
+        }
+    }
+}
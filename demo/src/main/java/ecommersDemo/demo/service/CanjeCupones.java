@@ -0,0 +1,283 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.CuponModificadoEvent;
+import ecommersDemo.demo.exception.ResourceNotFoundException;
+import ecommersDemo.demo.model.Cupon;
+import ecommersDemo.demo.repository.CuponRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Motor de canje de cupones: lleva los usos de cada cupón en memoria y los vuelca
+ * a la base por lotes, así un cupón popular no serializa los checkouts sobre su fila.
+ * Cada uso se reserva de forma atómica contra usosMaximos y se confirma o libera
+ * cuando termina la transacción del pedido.
+ * Un {@link CuponModificadoEvent} aplica al contador el límite, la activación y los usos de la fila;
+ * como todavía no hay un ABM de cupones que lo publique, una recarga periódica toma además
+ * los cambios hechos directamente en la base.
+ * Supone una única instancia de la aplicación: los contadores no se comparten entre nodos.
+ */
+@Component
+public class CanjeCupones {
+
+    private static final Logger log = LoggerFactory.getLogger(CanjeCupones.class);
+
+    private final CuponRepository cuponRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Escrituras propias: también corren después del commit de otra transacción, que ya no admite cambios
+    private final TransactionTemplate transaccionPropia;
+
+    private final Map<String, ContadorCupon> contadores = new ConcurrentHashMap<>();
+
+    public CanjeCupones(CuponRepository cuponRepository, PlatformTransactionManager transactionManager) {
+        this.cuponRepository = cuponRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transaccionPropia = new TransactionTemplate(transactionManager);
+        this.transaccionPropia.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // ==================== CANJE ====================
+
+    /**
+     * Reserva un uso del cupón. Devuelve false si ya no quedan usos.
+     * Dentro de una transacción el uso se confirma con el commit y se libera con el rollback;
+     * fuera de una transacción se confirma en el acto.
+     */
+    public boolean reservar(String codigo) {
+        ContadorCupon contador = contador(codigo);
+        if (!contador.reservar()) {
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        contador.confirmar();
+                    } else {
+                        contador.liberar();
+                    }
+                }
+            });
+        } else {
+            contador.confirmar();
+        }
+        return true;
+    }
+
+    /**
+     * Indica si el cupón ya no admite usos, contando también los pendientes de volcar
+     * y las reservas en curso (la columna usosActuales puede estar atrasada).
+     */
+    public boolean agotado(String codigo) {
+        return contador(codigo).agotado();
+    }
+
+    /**
+     * Usos del cupón según el motor: persistidos, pendientes de volcar y reservados.
+     */
+    public int usosComprometidos(String codigo) {
+        return contador(codigo).comprometidos.get();
+    }
+
+    // ==================== VOLCADO ====================
+
+    /**
+     * Vuelca a la base, en una sola transacción, los usos confirmados desde el último volcado.
+     */
+    @Scheduled(fixedDelayString = "${ecommers.cupones.volcado-ms:2000}")
+    public synchronized void volcarUsos() {
+        Map<ContadorCupon, Integer> lote = new HashMap<>();
+        for (ContadorCupon contador : contadores.values()) {
+            int pendientes = contador.pendientesDeVolcar();
+            if (pendientes > 0) {
+                lote.put(contador, pendientes);
+            }
+        }
+        if (lote.isEmpty()) {
+            return;
+        }
+
+        try {
+            transaccionPropia.executeWithoutResult(status ->
+                    lote.forEach((contador, cantidad) -> cuponRepository.sumarUsos(contador.cuponId, cantidad)));
+            lote.forEach(ContadorCupon::marcarVolcados);
+            log.debug("Usos de cupones volcados: {} cupones", lote.size());
+        } catch (RuntimeException e) {
+            // Los usos siguen pendientes y se reintentan en el próximo volcado
+            log.error("No se pudieron volcar los usos de cupones", e);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        volcarUsos();
+    }
+
+    // ==================== CAMBIOS DEL CUPÓN ====================
+
+    /**
+     * Aplica al contador el cupón modificado: primero vuelca los usos pendientes, así la fila
+     * tiene todo lo confirmado, y después toma de ella el límite, la activación y los usos
+     * (por si se corrigieron a mano). Si el cupón se borró, descarta el contador.
+     * El contador se actualiza en el lugar: las reservas en curso se siguen confirmando
+     * o liberando sobre él y cuentan contra el límite nuevo.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onCuponModificado(CuponModificadoEvent evento) {
+        ContadorCupon contador = contadores.get(evento.codigo());
+        if (contador == null) {
+            return;
+        }
+
+        volcarUsos();
+        Optional<Cupon> cupon = transaccionPropia.execute(status -> cuponRepository.findByCodigo(evento.codigo()));
+        if (cupon.isEmpty()) {
+            contadores.remove(evento.codigo(), contador);
+            return;
+        }
+        contador.actualizar(cupon.get());
+        log.debug("Contador del cupón {} actualizado", evento.codigo());
+    }
+
+    /**
+     * Aplica a todos los contadores en memoria la fila actual de su cupón, igual que
+     * {@link #onCuponModificado}, en una sola consulta. Descarta los de cupones borrados.
+     */
+    @Scheduled(fixedDelayString = "${ecommers.cupones.recarga-ms:60000}",
+            initialDelayString = "${ecommers.cupones.recarga-ms:60000}")
+    public synchronized void recargarContadores() {
+        // Los contadores creados durante la recarga ya se cargaron con la fila actual
+        Map<String, ContadorCupon> actuales = new HashMap<>(contadores);
+        if (actuales.isEmpty()) {
+            return;
+        }
+
+        volcarUsos();
+        List<Long> ids = actuales.values().stream().map(contador -> contador.cuponId).toList();
+        Map<Long, Cupon> cupones = transaccionPropia.execute(status -> cuponRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Cupon::getId, Function.identity())));
+        actuales.forEach((codigo, contador) -> {
+            Cupon cupon = cupones.get(contador.cuponId);
+            if (cupon == null) {
+                contadores.remove(codigo, contador);
+            } else {
+                contador.actualizar(cupon);
+            }
+        });
+        log.debug("Contadores de cupones recargados: {}", actuales.size());
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    private ContadorCupon contador(String codigo) {
+        return contadores.computeIfAbsent(codigo, this::cargar);
+    }
+
+    private ContadorCupon cargar(String codigo) {
+        // Participa de la transacción en curso si la hay: no pide otra conexión al pool
+        Cupon cupon = transactionTemplate.execute(status -> cuponRepository.findByCodigo(codigo)
+                .orElseThrow(() -> new ResourceNotFoundException("Cupón", "código", codigo)));
+        return new ContadorCupon(cupon);
+    }
+
+    /**
+     * Contadores de un cupón.
+     * {@code comprometidos} es el único punto de sincronización (un CAS en memoria);
+     * los usos confirmados se acumulan en un LongAdder, que reparte la contención en celdas.
+     * La reserva no se reparte en franjas: para no superar usosMaximos, comparar y sumar tiene que
+     * ser una sola operación sobre un único valor. Con franjas, cada una vería solo su parte del
+     * total y habría que sumarlas bajo un lock o repartir el cupo entre ellas. Un CAS fallido se
+     * reintenta en nanosegundos, frente a un checkout que tarda milisegundos.
+     */
+    private static final class ContadorCupon {
+
+        private final Long cuponId;
+        private volatile Integer usosMaximos;
+        private volatile boolean activo;
+        private final AtomicInteger comprometidos;
+        private final LongAdder confirmados = new LongAdder();
+        // Solo los modifican el volcado y la actualización (sincronizados)
+        private long volcados;
+        private int persistidos;
+
+        ContadorCupon(Cupon cupon) {
+            this.cuponId = cupon.getId();
+            this.usosMaximos = cupon.getUsosMaximos();
+            this.activo = Boolean.TRUE.equals(cupon.getActivo());
+            this.persistidos = usosDe(cupon);
+            this.comprometidos = new AtomicInteger(persistidos);
+        }
+
+        boolean reservar() {
+            int actual;
+            do {
+                actual = comprometidos.get();
+                Integer maximo = usosMaximos;
+                if (!activo || (maximo != null && actual >= maximo)) {
+                    return false;
+                }
+            } while (!comprometidos.compareAndSet(actual, actual + 1));
+            return true;
+        }
+
+        void confirmar() {
+            confirmados.increment();
+        }
+
+        void liberar() {
+            comprometidos.decrementAndGet();
+        }
+
+        boolean agotado() {
+            Integer maximo = usosMaximos;
+            return maximo != null && comprometidos.get() >= maximo;
+        }
+
+        int pendientesDeVolcar() {
+            return (int) (confirmados.sum() - volcados);
+        }
+
+        void marcarVolcados(int cantidad) {
+            volcados += cantidad;
+            persistidos += cantidad;
+        }
+
+        /**
+         * Toma el límite y la activación del cupón. Si sus usos no coinciden con los volcados
+         * (una corrección manual de la fila), traslada la diferencia a los comprometidos.
+         */
+        void actualizar(Cupon cupon) {
+            usosMaximos = cupon.getUsosMaximos();
+            activo = Boolean.TRUE.equals(cupon.getActivo());
+            int usos = usosDe(cupon);
+            comprometidos.addAndGet(usos - persistidos);
+            persistidos = usos;
+        }
+
+        private static int usosDe(Cupon cupon) {
+            return cupon.getUsosActuales() != null ? cupon.getUsosActuales() : 0;
+        }
+    }
+}
@@ -14,11 +14,23 @@ import ecommersDemo.demo.repository.CarritoRepository;
 import ecommersDemo.demo.repository.ItemCarritoRepository;
 import ecommersDemo.demo.repository.ProductoVarianteRepository;
 import ecommersDemo.demo.repository.UsuarioRepository;
+import ecommersDemo.demo.repository.projection.LineaCarrito;
+import ecommersDemo.demo.service.CarritosAnonimos.CarritoAnonimo;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Carritos de compra. Los de usuarios autenticados viven en la base; los anónimos
+ * (X-Session-Id), en memoria en {@link CarritosAnonimos} hasta que se transfieren a un usuario
+ * o el almacén los vuelca. Una sesión cuyo carrito ya se volcó sigue usando el de la base.
+ */
 @Service
 @Transactional(readOnly = true)
 public class CarritoService {
@@ -27,15 +39,18 @@ public class CarritoService {
     private final ItemCarritoRepository itemCarritoRepository;
     private final ProductoVarianteRepository varianteRepository;
     private final UsuarioRepository usuarioRepository;
+    private final CarritosAnonimos carritosAnonimos;
 
     public CarritoService(CarritoRepository carritoRepository,
                          ItemCarritoRepository itemCarritoRepository,
                          ProductoVarianteRepository varianteRepository,
-                         UsuarioRepository usuarioRepository) {
+                         UsuarioRepository usuarioRepository,
+                         CarritosAnonimos carritosAnonimos) {
         this.carritoRepository = carritoRepository;
         this.itemCarritoRepository = itemCarritoRepository;
         this.varianteRepository = varianteRepository;
         this.usuarioRepository = usuarioRepository;
+        this.carritosAnonimos = carritosAnonimos;
     }
 
     // ==================== OBTENER CARRITO ====================
@@ -44,7 +59,7 @@ public class CarritoService {
      * Obtiene el carrito de un usuario autenticado.
      */
     public CarritoDTO obtenerCarritoPorUsuario(Long usuarioId) {
-        Carrito carrito = carritoRepository.findByUsuarioId(usuarioId)
+        Carrito carrito = carritoRepository.findAgregadoPorUsuario(usuarioId)
                 .orElseGet(() -> crearCarritoParaUsuario(usuarioId));
         return new CarritoDTO(carrito);
     }
@@ -53,7 +68,11 @@ public class CarritoService {
      * Obtiene el carrito por session ID (usuarios anónimos).
      */
     public CarritoDTO obtenerCarritoPorSession(String sessionId) {
-        Carrito carrito = carritoRepository.findBySessionId(sessionId)
+        CarritoAnonimo enMemoria = carritoEnMemoria(sessionId);
+        if (enMemoria != null) {
+            return enMemoria.aDTO();
+        }
+        Carrito carrito = carritoRepository.findAgregadoPorSession(sessionId)
                 .orElseGet(() -> crearCarritoAnonimo(sessionId));
         return new CarritoDTO(carrito);
     }
@@ -62,7 +81,8 @@ public class CarritoService {
      * Obtiene el carrito por ID.
      */
     public CarritoDTO obtenerCarritoPorId(Long carritoId) {
-        Carrito carrito = obtenerEntidadCarrito(carritoId);
+        Carrito carrito = carritoRepository.findAgregadoPorId(carritoId)
+                .orElseThrow(() -> new ResourceNotFoundException("Carrito", "id", carritoId));
         return new CarritoDTO(carrito);
     }
 
@@ -73,7 +93,7 @@ public class CarritoService {
      */
     @Transactional
     public CarritoDTO agregarItemPorUsuario(Long usuarioId, AgregarItemCarritoRequest request) {
-        Carrito carrito = carritoRepository.findByUsuarioId(usuarioId)
+        Carrito carrito = carritoRepository.findAgregadoPorUsuario(usuarioId)
                 .orElseGet(() -> crearCarritoParaUsuario(usuarioId));
         return agregarItemAlCarrito(carrito, request);
     }
@@ -83,47 +103,31 @@ public class CarritoService {
      */
     @Transactional
     public CarritoDTO agregarItemPorSession(String sessionId, AgregarItemCarritoRequest request) {
-        Carrito carrito = carritoRepository.findBySessionId(sessionId)
+        CarritoAnonimo enMemoria = carritoEnMemoria(sessionId);
+        if (enMemoria != null) {
+            CarritoDTO actualizado = agregarItemEnMemoria(enMemoria, request);
+            if (actualizado != null) {
+                return actualizado;
+            }
+            // Se desalojó vacío o ya se volcó: el cambio va al carrito de la base
+        }
+        Carrito carrito = carritoRepository.findAgregadoPorSession(sessionId)
                 .orElseGet(() -> crearCarritoAnonimo(sessionId));
         return agregarItemAlCarrito(carrito, request);
     }
 
     /**
      * Lógica común para agregar item al carrito.
+     * El carrito llega cargado con sus ítems (findAgregado*): el DTO se arma de ese agregado, sin recargarlo.
      */
     private CarritoDTO agregarItemAlCarrito(Carrito carrito, AgregarItemCarritoRequest request) {
-        // Validaciones
-        if (request.getProductoVarianteId() == null) {
-            throw new BadRequestException("El ID de la variante del producto es obligatorio");
-        }
-        if (request.getCantidad() == null || request.getCantidad() < 1) {
-            throw new BadRequestException("La cantidad debe ser al menos 1");
-        }
-
-        // Obtener variante
-        ProductoVariante variante = varianteRepository.findById(request.getProductoVarianteId())
-                .orElseThrow(() -> new ResourceNotFoundException("Variante", "id", request.getProductoVarianteId()));
-
-        // Verificar que está activa
-        if (!variante.getActivo()) {
-            throw new BadRequestException("Esta variante del producto no está disponible");
-        }
-
-        // Verificar stock
-        if (!variante.tieneStockSuficiente(request.getCantidad())) {
-            throw new StockInsuficienteException(
-                    variante.getId(), 
-                    request.getCantidad(), 
-                    variante.getStock());
-        }
+        ProductoVariante variante = obtenerVarianteParaAgregar(request);
 
         // Buscar si ya existe el item en el carrito
-        Optional<ItemCarrito> itemExistente = itemCarritoRepository
-                .findByCarritoIdAndProductoVarianteId(carrito.getId(), variante.getId());
+        ItemCarrito item = carrito.buscarItem(variante);
 
-        if (itemExistente.isPresent()) {
+        if (item != null) {
             // Actualizar cantidad
-            ItemCarrito item = itemExistente.get();
             int nuevaCantidad = item.getCantidad() + request.getCantidad();
             
             // Verificar stock para la nueva cantidad
@@ -136,19 +140,67 @@ public class CarritoService {
             
             item.setCantidad(nuevaCantidad);
             item.setPrecioUnitario(variante.getPrecioTotal());
-            itemCarritoRepository.save(item);
         } else {
             // Crear nuevo item
             ItemCarrito nuevoItem = new ItemCarrito(carrito, variante, request.getCantidad());
             carrito.agregarItem(nuevoItem);
             itemCarritoRepository.save(nuevoItem);
         }
+        carrito.registrarActividad();
 
-        // Recargar carrito
-        carrito = carritoRepository.findById(carrito.getId()).orElse(carrito);
         return new CarritoDTO(carrito);
     }
 
+    /**
+     * Agrega un item al carrito anónimo en memoria: solo lee la variante.
+     * Devuelve null si el carrito ya no está en memoria.
+     */
+    private CarritoDTO agregarItemEnMemoria(CarritoAnonimo carrito, AgregarItemCarritoRequest request) {
+        ProductoVariante variante = obtenerVarianteParaAgregar(request);
+
+        return modificarEnMemoria(carrito, actual -> {
+            int nuevaCantidad = actual.cantidad(variante.getId()) + request.getCantidad();
+            if (!variante.tieneStockSuficiente(nuevaCantidad)) {
+                throw new StockInsuficienteException(
+                        variante.getId(),
+                        nuevaCantidad,
+                        variante.getStock());
+            }
+            actual.poner(variante, nuevaCantidad);
+        });
+    }
+
+    /**
+     * Valida el pedido de agregado y devuelve la variante, activa y con stock para la cantidad pedida.
+     */
+    private ProductoVariante obtenerVarianteParaAgregar(AgregarItemCarritoRequest request) {
+        // Validaciones
+        if (request.getProductoVarianteId() == null) {
+            throw new BadRequestException("El ID de la variante del producto es obligatorio");
+        }
+        if (request.getCantidad() == null || request.getCantidad() < 1) {
+            throw new BadRequestException("La cantidad debe ser al menos 1");
+        }
+
+        // Obtener variante
+        ProductoVariante variante = varianteRepository.findConProductoYTalleById(request.getProductoVarianteId())
+                .orElseThrow(() -> new ResourceNotFoundException("Variante", "id", request.getProductoVarianteId()));
+
+        // Verificar que está activa
+        if (!variante.getActivo()) {
+            throw new BadRequestException("Esta variante del producto no está disponible");
+        }
+
+        // Verificar stock
+        if (!variante.tieneStockSuficiente(request.getCantidad())) {
+            throw new StockInsuficienteException(
+                    variante.getId(), 
+                    request.getCantidad(), 
+                    variante.getStock());
+        }
+        return variante;
+    }
+
     // ==================== ACTUALIZAR CANTIDAD ====================
 
     /**
@@ -159,15 +211,18 @@ public class CarritoService {
         if (request.getCantidad() == null || request.getCantidad() < 0) {
             throw new BadRequestException("La cantidad debe ser un número positivo o cero");
         }
+        if (CarritosAnonimos.esIdEnMemoria(itemId)) {
+            return actualizarCantidadEnMemoria(itemId, request.getCantidad());
+        }
 
-        ItemCarrito item = itemCarritoRepository.findById(itemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Item del carrito", "id", itemId));
+        Carrito carrito = carritoDelItemPersistido(itemId);
+        ItemCarrito item = carrito.buscarItemPorId(itemId);
 
         // Si la cantidad es 0, eliminar el item
         if (request.getCantidad() == 0) {
-            Long carritoId = item.getCarrito().getId();
-            itemCarritoRepository.delete(item);
-            return obtenerCarritoPorId(carritoId);
+            carrito.removerItem(item);
+            carrito.registrarActividad();
+            return new CarritoDTO(carrito);
         }
 
         // Verificar stock
@@ -181,9 +236,26 @@ public class CarritoService {
 
         item.setCantidad(request.getCantidad());
         item.setPrecioUnitario(variante.getPrecioTotal());
-        itemCarritoRepository.save(item);
+        carrito.registrarActividad();
 
-        return obtenerCarritoPorId(item.getCarrito().getId());
+        return new CarritoDTO(carrito);
+    }
+
+    private CarritoDTO actualizarCantidadEnMemoria(Long itemId, int cantidad) {
+        CarritoDTO actualizado = modificarEnMemoria(carritoDelItem(itemId), carrito -> {
+            Long varianteId = varianteDelItem(carrito, itemId);
+            if (cantidad == 0) {
+                carrito.quitar(varianteId);
+            } else {
+                ProductoVariante variante = varianteRepository.findConProductoYTalleById(varianteId)
+                        .orElseThrow(() -> new ResourceNotFoundException("Variante", "id", varianteId));
+                if (!variante.tieneStockSuficiente(cantidad)) {
+                    throw new StockInsuficienteException(variante.getId(), cantidad, variante.getStock());
+                }
+                carrito.poner(variante, cantidad);
+            }
+        });
+        return enMemoriaODesconocido(actualizado, itemId);
     }
 
     // ==================== ELIMINAR ITEM ====================
@@ -193,13 +265,17 @@ public class CarritoService {
      */
     @Transactional
     public CarritoDTO eliminarItem(Long itemId) {
-        ItemCarrito item = itemCarritoRepository.findById(itemId)
-                .orElseThrow(() -> new ResourceNotFoundException("Item del carrito", "id", itemId));
+        if (CarritosAnonimos.esIdEnMemoria(itemId)) {
+            CarritoDTO actualizado = modificarEnMemoria(carritoDelItem(itemId),
+                    carrito -> carrito.quitar(varianteDelItem(carrito, itemId)));
+            return enMemoriaODesconocido(actualizado, itemId);
+        }
 
-        Long carritoId = item.getCarrito().getId();
-        itemCarritoRepository.delete(item);
-        
-        return obtenerCarritoPorId(carritoId);
+        Carrito carrito = carritoDelItemPersistido(itemId);
+        carrito.removerItem(carrito.buscarItemPorId(itemId));
+        carrito.registrarActividad();
+
+        return new CarritoDTO(carrito);
     }
 
     // ==================== VACIAR CARRITO ====================
@@ -214,6 +290,7 @@ public class CarritoService {
         
         itemCarritoRepository.eliminarItemsDelCarrito(carrito.getId());
         carrito.getItems().clear();
+        carrito.registrarActividad();
         
         return new CarritoDTO(carrito);
     }
@@ -223,11 +300,19 @@ public class CarritoService {
      */
     @Transactional
     public CarritoDTO vaciarCarritoPorSession(String sessionId) {
+        CarritoAnonimo enMemoria = carritosAnonimos.buscar(sessionId);
+        if (enMemoria != null) {
+            CarritoDTO vaciado = modificarEnMemoria(enMemoria, CarritoAnonimo::vaciar);
+            if (vaciado != null) {
+                return vaciado;
+            }
+        }
         Carrito carrito = carritoRepository.findBySessionId(sessionId)
                 .orElseThrow(() -> new ResourceNotFoundException("Carrito", "sessionId", sessionId));
         
         itemCarritoRepository.eliminarItemsDelCarrito(carrito.getId());
         carrito.getItems().clear();
+        carrito.registrarActividad();
         
         return new CarritoDTO(carrito);
     }
@@ -236,65 +321,168 @@ public class CarritoService {
 
     /**
      * Transfiere el carrito anónimo a un usuario autenticado.
+     * La fusión es por conjuntos: una consulta trae los dos carritos, las cantidades sumadas
+     * se ajustan en memoria al stock actual (con el precio vigente), se escriben con un upsert
+     * por lotes y el carrito de la sesión se borra de una vez. Las sentencias no dependen de los ítems.
      */
     @Transactional
     public CarritoDTO transferirCarritoAUsuario(String sessionId, Long usuarioId) {
-        Optional<Carrito> carritoAnonimo = carritoRepository.findBySessionId(sessionId);
-        
-        if (carritoAnonimo.isEmpty() || carritoAnonimo.get().estaVacio()) {
-            // No hay carrito anónimo o está vacío, retornar carrito del usuario
-            return obtenerCarritoPorUsuario(usuarioId);
+        CarritoAnonimo enMemoria = carritosAnonimos.buscar(sessionId);
+        Carrito origen = null;
+        Carrito destino = null;
+
+        if (enMemoria != null) {
+            // El de la sesión está en memoria: solo falta el del usuario
+            carritosAnonimos.descartarAlConfirmar(enMemoria);
+            destino = carritoRepository.findAgregadoPorUsuario(usuarioId).orElse(null);
+        } else {
+            for (Carrito carrito : carritoRepository.findAgregadosParaFusion(sessionId, usuarioId)) {
+                if (sessionId.equals(carrito.getSessionId())) {
+                    origen = carrito;
+                } else {
+                    destino = carrito;
+                }
+            }
         }
 
-        Usuario usuario = usuarioRepository.findById(usuarioId)
-                .orElseThrow(() -> new ResourceNotFoundException("Usuario", "id", usuarioId));
+        List<LineaCarrito> lineasOrigen = enMemoria != null ? enMemoria.lineas() : lineasDe(origen);
+        if (lineasOrigen.isEmpty()) {
+            // No hay carrito anónimo o está vacío, retornar carrito del usuario
+            return new CarritoDTO(destino != null ? destino : crearCarritoParaUsuario(usuarioId));
+        }
+        if (destino == null) {
+            destino = crearCarritoParaUsuario(usuarioId);
+        }
 
-        Optional<Carrito> carritoUsuario = carritoRepository.findByUsuarioId(usuarioId);
+        Map<Long, ProductoVariante> variantes = enMemoria != null
+                ? variantesDe(lineasOrigen)
+                : variantesDe(origen);
 
-        if (carritoUsuario.isPresent()) {
-            // Fusionar carritos: agregar items del anónimo al del usuario
-            Carrito destino = carritoUsuario.get();
-            Carrito origen = carritoAnonimo.get();
+        List<LineaCarrito> fusionadas = new ArrayList<>();
+        List<Long> sinStock = new ArrayList<>();
+        for (LineaCarrito linea : lineasOrigen) {
+            ProductoVariante variante = variantes.get(linea.varianteId());
+            ItemCarrito existente = destino.buscarItemPorVariante(linea.varianteId());
 
-            for (ItemCarrito itemOrigen : origen.getItems()) {
-                Optional<ItemCarrito> itemExistente = itemCarritoRepository
-                        .findByCarritoIdAndProductoVarianteId(
-                                destino.getId(), 
-                                itemOrigen.getProductoVariante().getId());
+            int sumada = linea.cantidad() + (existente != null ? existente.getCantidad() : 0);
+            int disponible = variante != null && Boolean.TRUE.equals(variante.getActivo()) ? variante.getStock() : 0;
+            int cantidad = Math.min(sumada, disponible);
 
-                if (itemExistente.isPresent()) {
-                    // Sumar cantidades
-                    ItemCarrito item = itemExistente.get();
-                    item.setCantidad(item.getCantidad() + itemOrigen.getCantidad());
-                    itemCarritoRepository.save(item);
-                } else {
-                    // Crear nuevo item en el carrito destino
-                    ItemCarrito nuevoItem = new ItemCarrito(
-                            destino, 
-                            itemOrigen.getProductoVariante(), 
-                            itemOrigen.getCantidad());
-                    destino.agregarItem(nuevoItem);
-                    itemCarritoRepository.save(nuevoItem);
-                }
+            if (cantidad > 0) {
+                fusionadas.add(new LineaCarrito(linea.varianteId(), cantidad, variante.getPrecioTotal()));
+            } else if (existente != null) {
+                sinStock.add(linea.varianteId());
             }
+        }
 
-            // Eliminar carrito anónimo
-            carritoRepository.delete(origen);
-            
-            return new CarritoDTO(destino);
-        } else {
-            // Asignar el carrito anónimo al usuario
-            Carrito carrito = carritoAnonimo.get();
-            carrito.setUsuario(usuario);
-            carrito.setSessionId(null);
-            carritoRepository.save(carrito);
-            
-            return new CarritoDTO(carrito);
+        if (!sinStock.isEmpty()) {
+            itemCarritoRepository.eliminarVariantesDelCarrito(destino.getId(), sinStock);
         }
+        if (origen != null) {
+            itemCarritoRepository.eliminarItemsDelCarrito(origen.getId());
+            carritoRepository.eliminarPorId(origen.getId());
+        }
+        destino.registrarActividad();
+        itemCarritoRepository.guardarLineas(destino.getId(), fusionadas);
+
+        // guardarLineas vacía el contexto de persistencia: el carrito se vuelve a leer con su estado final
+        return obtenerCarritoPorId(destino.getId());
     }
 
     // ==================== MÉTODOS AUXILIARES ====================
 
+    private List<LineaCarrito> lineasDe(Carrito carrito) {
+        if (carrito == null) {
+            return List.of();
+        }
+        return carrito.getItems().stream()
+                .map(item -> new LineaCarrito(
+                        item.getProductoVariante().getId(), item.getCantidad(), item.getPrecioUnitario()))
+                .toList();
+    }
+
+    /**
+     * Variantes de las líneas, con su producto, en una sola consulta.
+     */
+    private Map<Long, ProductoVariante> variantesDe(List<LineaCarrito> lineas) {
+        List<Long> ids = lineas.stream().map(LineaCarrito::varianteId).toList();
+        return varianteRepository.findConProductoByIdIn(ids).stream()
+                .collect(Collectors.toMap(ProductoVariante::getId, Function.identity()));
+    }
+
+    /**
+     * Variantes de los ítems del carrito, ya cargadas por el fetch del agregado.
+     */
+    private Map<Long, ProductoVariante> variantesDe(Carrito carrito) {
+        return carrito.getItems().stream()
+                .map(ItemCarrito::getProductoVariante)
+                .collect(Collectors.toMap(ProductoVariante::getId, Function.identity()));
+    }
+
+    /**
+     * Carrito anónimo en memoria de la sesión. Si la sesión no tiene uno en memoria
+     * ni en la base, lo crea en memoria; si ya tiene uno persistido devuelve null.
+     */
+    private CarritoAnonimo carritoEnMemoria(String sessionId) {
+        CarritoAnonimo carrito = carritosAnonimos.buscar(sessionId);
+        if (carrito != null || carritoRepository.existsBySessionId(sessionId)) {
+            return carrito;
+        }
+        return carritosAnonimos.crear(sessionId);
+    }
+
+    /**
+     * Carrito (con sus ítems cargados) dueño de un ítem persistido.
+     * Los ítems borrados se quitan del agregado y orphanRemoval emite el DELETE.
+     */
+    private Carrito carritoDelItemPersistido(Long itemId) {
+        return carritoRepository.findAgregadoPorItem(itemId)
+                .orElseThrow(() -> new ResourceNotFoundException("Item del carrito", "id", itemId));
+    }
+
+    private CarritoAnonimo carritoDelItem(Long itemId) {
+        CarritoAnonimo carrito = carritosAnonimos.buscarPorItem(itemId);
+        if (carrito == null) {
+            throw new ResourceNotFoundException("Item del carrito", "id", itemId);
+        }
+        return carrito;
+    }
+
+    private static Long varianteDelItem(CarritoAnonimo carrito, Long itemId) {
+        Long varianteId = carrito.varianteDelItem(itemId);
+        if (varianteId == null) {
+            throw new ResourceNotFoundException("Item del carrito", "id", itemId);
+        }
+        return varianteId;
+    }
+
+    /**
+     * Aplica el cambio bajo el monitor del carrito, solo mientras sigue en el almacén.
+     * Si se desalojó entre la búsqueda y el cambio, se lo vuelve a buscar por sesión: vuelve a memoria
+     * si todavía no se volcó. Devuelve null si ya no está en memoria (el cambio no se aplicó).
+     */
+    private CarritoDTO modificarEnMemoria(CarritoAnonimo carrito, Consumer<CarritoAnonimo> cambio) {
+        for (CarritoAnonimo actual = carrito; actual != null; actual = carritosAnonimos.buscar(actual.sessionId())) {
+            synchronized (actual) {
+                if (actual.enAlmacen()) {
+                    cambio.accept(actual);
+                    return actual.aDTO();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Un ítem en memoria cuyo carrito ya se volcó tiene otro id en la base: se informa como inexistente.
+     */
+    private static CarritoDTO enMemoriaODesconocido(CarritoDTO actualizado, Long itemId) {
+        if (actualizado == null) {
+            throw new ResourceNotFoundException("Item del carrito", "id", itemId);
+        }
+        return actualizado;
+    }
+
     /**
      * Crea un carrito nuevo para un usuario.
      */
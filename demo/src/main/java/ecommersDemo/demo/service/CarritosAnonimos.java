@@ -0,0 +1,478 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.CarritoDTO;
+import ecommersDemo.demo.dto.ItemCarritoDTO;
+import ecommersDemo.demo.model.Carrito;
+import ecommersDemo.demo.model.ItemCarrito;
+import ecommersDemo.demo.model.ProductoVariante;
+import ecommersDemo.demo.repository.CarritoRepository;
+import ecommersDemo.demo.repository.ProductoVarianteRepository;
+import ecommersDemo.demo.repository.projection.LineaCarrito;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Almacén en memoria de los carritos anónimos (X-Session-Id).
+ * La mayoría se abandona, así que mientras duran no se escriben en la base: se persisten
+ * al transferirlos a un usuario o, por lotes (write-behind), cuando el almacén se llena
+ * y desaloja los menos usados.
+ * Supone una única instancia de la aplicación: los carritos no se comparten entre nodos.
+ * Un carrito se modifica solo mientras sigue en el almacén ({@link CarritoAnonimo#enAlmacen}):
+ * al sacarlo se marca bajo su monitor, así un cambio queda incluido en lo que se vuelca o se rechaza.
+ */
+@Component
+public class CarritosAnonimos {
+
+    private static final Logger log = LoggerFactory.getLogger(CarritosAnonimos.class);
+
+    /**
+     * Vigencia de un carrito sin cambios, la misma que renueva Carrito.fechaExpiracion.
+     */
+    static final Duration VIGENCIA = Duration.ofDays(7);
+
+    private final CarritoRepository carritoRepository;
+    private final ProductoVarianteRepository varianteRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int capacidad;
+
+    // Orden de acceso: el primero es el menos usado. Se accede sincronizando sobre el mapa
+    private final LinkedHashMap<String, CarritoAnonimo> carritos = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Long, CarritoAnonimo> porItem = new ConcurrentHashMap<>();
+    // Desalojados con ítems, a la espera del próximo volcado
+    private final Map<String, CarritoAnonimo> pendientes = new ConcurrentHashMap<>();
+    // Ids negativos: no chocan con los de las tablas carritos e items_carrito
+    private final AtomicLong secuencia = new AtomicLong();
+
+    public CarritosAnonimos(CarritoRepository carritoRepository,
+                            ProductoVarianteRepository varianteRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${ecommers.carritos.anonimos.capacidad:10000}") int capacidad) {
+        this.carritoRepository = carritoRepository;
+        this.varianteRepository = varianteRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.capacidad = capacidad;
+    }
+
+    // ==================== CONSULTA ====================
+
+    /**
+     * Indica si el ID corresponde a un carrito o ítem en memoria.
+     */
+    static boolean esIdEnMemoria(Long id) {
+        return id != null && id < 0;
+    }
+
+    /**
+     * Carrito vigente de la sesión, o null si no está en memoria.
+     * Un carrito desalojado que todavía no se volcó vuelve al almacén.
+     */
+    CarritoAnonimo buscar(String sessionId) {
+        CarritoAnonimo carrito;
+        synchronized (carritos) {
+            carrito = carritos.get(sessionId);
+        }
+        if (carrito != null) {
+            if (!carrito.haExpirado()) {
+                return carrito;
+            }
+            descartar(carrito);
+            return null;
+        }
+        return pendientes.isEmpty() ? null : rescatar(sessionId);
+    }
+
+    /**
+     * Carrito en memoria dueño del ítem, o null si no hay ninguno vigente.
+     */
+    CarritoAnonimo buscarPorItem(Long itemId) {
+        CarritoAnonimo carrito = porItem.get(itemId);
+        return carrito != null && !carrito.haExpirado() ? carrito : null;
+    }
+
+    // ==================== ALTA Y BAJA ====================
+
+    /**
+     * Crea el carrito en memoria de la sesión (o devuelve el existente si otro hilo se adelantó).
+     * Si el almacén queda lleno desaloja el carrito menos usado.
+     */
+    CarritoAnonimo crear(String sessionId) {
+        CarritoAnonimo carrito;
+        CarritoAnonimo desalojado = null;
+        synchronized (carritos) {
+            carrito = carritos.get(sessionId);
+            if (carrito == null) {
+                carrito = new CarritoAnonimo(secuencia.decrementAndGet(), sessionId);
+                carritos.put(sessionId, carrito);
+                desalojado = excedente();
+            }
+        }
+        if (desalojado != null) {
+            desalojar(desalojado);
+        }
+        return carrito;
+    }
+
+    /**
+     * Saca el carrito del almacén.
+     */
+    void descartar(CarritoAnonimo carrito) {
+        synchronized (carritos) {
+            carritos.remove(carrito.sessionId, carrito);
+        }
+        carrito.retirar();
+    }
+
+    /**
+     * Saca el carrito del almacén cuando la transacción en curso se confirma
+     * (si hace rollback, sigue en memoria). Fuera de una transacción lo saca en el acto.
+     */
+    void descartarAlConfirmar(CarritoAnonimo carrito) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            descartar(carrito);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_COMMITTED) {
+                    descartar(carrito);
+                }
+            }
+        });
+    }
+
+    // ==================== VOLCADO ====================
+
+    /**
+     * Persiste, en una sola transacción, los carritos desalojados con ítems.
+     * Desde ese momento la sesión usa el carrito de la base.
+     */
+    @Scheduled(fixedDelayString = "${ecommers.carritos.anonimos.volcado-ms:5000}")
+    public synchronized void volcar() {
+        if (pendientes.isEmpty()) {
+            return;
+        }
+        List<CarritoAnonimo> lote = List.copyOf(pendientes.values());
+
+        try {
+            int persistidos = transactionTemplate.execute(status -> {
+                List<Carrito> entidades = new ArrayList<>();
+                for (CarritoAnonimo carrito : lote) {
+                    // Un carrito con la misma sesión ya en la base haría fallar el lote entero
+                    if (!carrito.haExpirado() && !carritoRepository.existsBySessionId(carrito.sessionId)) {
+                        entidades.add(aEntidad(carrito));
+                    }
+                }
+                carritoRepository.saveAll(entidades);
+                return entidades.size();
+            });
+            lote.forEach(carrito -> pendientes.remove(carrito.sessionId, carrito));
+            log.debug("Carritos anónimos volcados: {} de {} desalojados", persistidos, lote.size());
+        } catch (RuntimeException e) {
+            // Siguen pendientes y se reintentan en el próximo volcado
+            log.error("No se pudieron volcar los carritos anónimos", e);
+        }
+    }
+
+    /**
+     * Quita de memoria los carritos vencidos.
+     */
+    @Scheduled(fixedDelayString = "${ecommers.carritos.anonimos.purga-ms:60000}")
+    public void purgarVencidos() {
+        List<CarritoAnonimo> vencidos = new ArrayList<>();
+        synchronized (carritos) {
+            Iterator<CarritoAnonimo> it = carritos.values().iterator();
+            while (it.hasNext()) {
+                CarritoAnonimo carrito = it.next();
+                if (carrito.haExpirado()) {
+                    it.remove();
+                    vencidos.add(carrito);
+                }
+            }
+        }
+        vencidos.forEach(CarritoAnonimo::retirar);
+        pendientes.values().removeIf(CarritoAnonimo::haExpirado);
+        if (!vencidos.isEmpty()) {
+            log.debug("Carritos anónimos vencidos: {}", vencidos.size());
+        }
+    }
+
+    /**
+     * Al apagar, persiste todos los carritos con ítems para no perderlos.
+     */
+    @PreDestroy
+    public void detener() {
+        List<CarritoAnonimo> vigentes;
+        synchronized (carritos) {
+            vigentes = new ArrayList<>(carritos.values());
+            carritos.clear();
+        }
+        vigentes.forEach(this::desalojar);
+        volcar();
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Devuelve a memoria un carrito desalojado que todavía no se volcó.
+     * Sincronizado con volcar(): un carrito que se está escribiendo no vuelve,
+     * y cuando la escritura termina la sesión lo encuentra en la base.
+     */
+    private synchronized CarritoAnonimo rescatar(String sessionId) {
+        CarritoAnonimo carrito = pendientes.remove(sessionId);
+        if (carrito == null || carrito.haExpirado()) {
+            return null;
+        }
+        CarritoAnonimo desalojado;
+        synchronized (carritos) {
+            CarritoAnonimo existente = carritos.putIfAbsent(sessionId, carrito);
+            if (existente != null) {
+                return existente;
+            }
+            desalojado = excedente();
+        }
+        carrito.reincorporar();
+        if (desalojado != null) {
+            desalojar(desalojado);
+        }
+        return carrito;
+    }
+
+    /**
+     * Saca el carrito menos usado si el almacén superó su capacidad. Se llama sincronizando sobre el mapa.
+     */
+    private CarritoAnonimo excedente() {
+        if (carritos.size() <= capacidad) {
+            return null;
+        }
+        Iterator<CarritoAnonimo> it = carritos.values().iterator();
+        CarritoAnonimo menosUsado = it.next();
+        it.remove();
+        return menosUsado;
+    }
+
+    private void desalojar(CarritoAnonimo carrito) {
+        // Bajo el monitor del carrito: un cambio en curso termina antes y queda en lo que se vuelca
+        synchronized (carrito) {
+            carrito.retirar();
+            // Los vacíos o vencidos no se persisten: la sesión vuelve a empezar con un carrito nuevo
+            if (!carrito.estaVacio() && !carrito.haExpirado()) {
+                pendientes.put(carrito.sessionId, carrito);
+            }
+        }
+    }
+
+    private Carrito aEntidad(CarritoAnonimo carrito) {
+        Carrito entidad = new Carrito(carrito.sessionId);
+        for (LineaCarrito linea : carrito.lineas()) {
+            ItemCarrito item = new ItemCarrito();
+            item.setProductoVariante(varianteRepository.getReferenceById(linea.varianteId()));
+            item.setCantidad(linea.cantidad());
+            item.setPrecioUnitario(linea.precioUnitario());
+            entidad.agregarItem(item);
+        }
+        return entidad;
+    }
+
+    /**
+     * Carrito anónimo en memoria. Sus métodos se sincronizan sobre el propio carrito;
+     * quien valida stock antes de modificarlo también toma ese monitor.
+     */
+    final class CarritoAnonimo {
+
+        private final Long id;
+        private final String sessionId;
+        private final LocalDateTime fechaCreacion = LocalDateTime.now();
+        private volatile LocalDateTime fechaActualizacion = fechaCreacion;
+        // Falso desde que sale del almacén (desalojo, descarte o vencimiento) hasta que se rescata
+        private boolean enAlmacen = true;
+        // Por variante, en el orden en que se agregaron
+        private final Map<Long, ItemAnonimo> items = new LinkedHashMap<>();
+
+        private CarritoAnonimo(Long id, String sessionId) {
+            this.id = id;
+            this.sessionId = sessionId;
+        }
+
+        String sessionId() {
+            return sessionId;
+        }
+
+        /**
+         * Indica si el carrito sigue en el almacén y se puede modificar.
+         * Quien lo modifica lo consulta tomando el monitor del carrito, antes del cambio.
+         */
+        synchronized boolean enAlmacen() {
+            return enAlmacen;
+        }
+
+        boolean haExpirado() {
+            return LocalDateTime.now().isAfter(fechaActualizacion.plus(VIGENCIA));
+        }
+
+        synchronized boolean estaVacio() {
+            return items.isEmpty();
+        }
+
+        /**
+         * Cantidad actual de la variante en el carrito (0 si no está).
+         */
+        synchronized int cantidad(Long varianteId) {
+            ItemAnonimo item = items.get(varianteId);
+            return item != null ? item.cantidad : 0;
+        }
+
+        /**
+         * Variante del ítem, o null si el ítem ya no está en el carrito.
+         */
+        synchronized Long varianteDelItem(Long itemId) {
+            return items.values().stream()
+                    .filter(item -> item.id.equals(itemId))
+                    .map(item -> item.varianteId)
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        /**
+         * Fija la cantidad de la variante, agregando el ítem si no estaba.
+         * Precio y datos de la variante se toman de la entidad recién leída.
+         */
+        synchronized void poner(ProductoVariante variante, int cantidad) {
+            ItemAnonimo item = items.get(variante.getId());
+            if (item == null) {
+                item = new ItemAnonimo(secuencia.decrementAndGet(), variante.getId());
+                items.put(variante.getId(), item);
+                if (enAlmacen) {
+                    porItem.put(item.id, this);
+                }
+            }
+            item.actualizar(variante, cantidad);
+            fechaActualizacion = LocalDateTime.now();
+        }
+
+        synchronized void quitar(Long varianteId) {
+            ItemAnonimo item = items.remove(varianteId);
+            if (item != null) {
+                porItem.remove(item.id, this);
+            }
+            fechaActualizacion = LocalDateTime.now();
+        }
+
+        synchronized void vaciar() {
+            liberarItems();
+            items.clear();
+            fechaActualizacion = LocalDateTime.now();
+        }
+
+        synchronized List<LineaCarrito> lineas() {
+            return items.values().stream()
+                    .map(item -> new LineaCarrito(item.varianteId, item.cantidad, item.precioUnitario))
+                    .toList();
+        }
+
+        synchronized CarritoDTO aDTO() {
+            CarritoDTO dto = new CarritoDTO();
+            dto.setId(id);
+            dto.setSessionId(sessionId);
+            dto.setItems(items.values().stream().map(ItemAnonimo::aDTO).toList());
+            dto.setCantidadItems(items.values().stream().mapToInt(item -> item.cantidad).sum());
+            dto.setCantidadProductosDistintos(items.size());
+            dto.setTotal(items.values().stream()
+                    .map(ItemAnonimo::subtotal)
+                    .reduce(BigDecimal.ZERO, BigDecimal::add));
+            dto.setFechaCreacion(fechaCreacion);
+            dto.setFechaActualizacion(fechaActualizacion);
+            return dto;
+        }
+
+        private synchronized void reincorporar() {
+            enAlmacen = true;
+            items.values().forEach(item -> porItem.put(item.id, this));
+        }
+
+        private synchronized void retirar() {
+            enAlmacen = false;
+            liberarItems();
+        }
+
+        private synchronized void liberarItems() {
+            items.values().forEach(item -> porItem.remove(item.id, this));
+        }
+    }
+
+    /**
+     * Ítem de un carrito en memoria, con los datos de la variante que muestra ItemCarritoDTO.
+     * Stock y precio son los leídos en la última modificación.
+     */
+    private static final class ItemAnonimo {
+
+        private final Long id;
+        private final Long varianteId;
+        private int cantidad;
+        private BigDecimal precioUnitario;
+        private String productoNombre;
+        private String talleNombre;
+        private String color;
+        private String imagenUrl;
+        private Integer stockDisponible;
+
+        private ItemAnonimo(Long id, Long varianteId) {
+            this.id = id;
+            this.varianteId = varianteId;
+        }
+
+        private void actualizar(ProductoVariante variante, int cantidad) {
+            this.cantidad = cantidad;
+            this.precioUnitario = variante.getPrecioTotal();
+            this.color = variante.getColor();
+            this.imagenUrl = variante.getImagenUrl();
+            this.stockDisponible = variante.getStock();
+            if (variante.getProducto() != null) {
+                this.productoNombre = variante.getProducto().getNombre();
+                if (this.imagenUrl == null) {
+                    this.imagenUrl = variante.getProducto().getImagenPrincipalUrl();
+                }
+            }
+            this.talleNombre = variante.getTalle() != null ? variante.getTalle().getNombre() : null;
+        }
+
+        private BigDecimal subtotal() {
+            return precioUnitario.multiply(BigDecimal.valueOf(cantidad));
+        }
+
+        private ItemCarritoDTO aDTO() {
+            ItemCarritoDTO dto = new ItemCarritoDTO();
+            dto.setId(id);
+            dto.setProductoVarianteId(varianteId);
+            dto.setProductoNombre(productoNombre);
+            dto.setTalleNombre(talleNombre);
+            dto.setColor(color);
+            dto.setImagenUrl(imagenUrl);
+            dto.setCantidad(cantidad);
+            dto.setPrecioUnitario(precioUnitario);
+            dto.setSubtotal(subtotal());
+            dto.setStockDisponible(stockDisponible);
+            dto.setStockSuficiente(stockDisponible != null && stockDisponible >= cantidad);
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.CatalogoFiltradoDTO;
+import ecommersDemo.demo.dto.ProductoDTO;
+import ecommersDemo.demo.dto.request.FiltroCatalogoRequest;
+import ecommersDemo.demo.dto.response.PaginaCursor;
+import ecommersDemo.demo.event.CatalogoModificadoEvent;
+import ecommersDemo.demo.exception.BadRequestException;
+import ecommersDemo.demo.model.Producto;
+import ecommersDemo.demo.repository.ProductoRepository;
+import ecommersDemo.demo.service.CatalogoSnapshot.BusquedaOrdenada;
+import ecommersDemo.demo.service.CatalogoSnapshot.ProductoCatalogo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import jakarta.annotation.PreDestroy;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Modelo de lectura en memoria del catálogo público.
+ * Se carga completo al iniciar y se refresca por producto después de cada
+ * commit que modifica el catálogo, de modo que las lecturas públicas no van a la base.
+ * Mantiene además el índice de búsqueda, actualizado con los mismos refrescos.
+ */
+@Component
+public class CatalogoCache {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogoCache.class);
+
+    private static final int TAMANIO_MAXIMO_PAGINA = 100;
+
+    private static final Map<String, Comparator<ProductoDTO>> ORDENAMIENTOS = Map.of(
+            "id", Comparator.comparing(ProductoDTO::getId),
+            "nombre", Comparator.comparing(ProductoDTO::getNombre, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)),
+            "precio", Comparator.comparing(ProductoDTO::getPrecio, Comparator.nullsLast(Comparator.<BigDecimal>naturalOrder())),
+            "precioFinal", Comparator.comparing(ProductoDTO::getPrecioFinal, Comparator.nullsLast(Comparator.<BigDecimal>naturalOrder())),
+            "fechaCreacion", Comparator.comparing(ProductoDTO::getFechaCreacion, Comparator.nullsLast(Comparator.<LocalDateTime>naturalOrder())));
+
+    private final ProductoRepository productoRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    private volatile CatalogoSnapshot snapshot;
+    private volatile IndiceBusqueda indice = new IndiceBusqueda();
+
+    // Refrescos pendientes; los procesa un único hilo, agrupando los IDs acumulados
+    private final Set<Long> pendientes = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refrescador = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("catalogo-refresco").daemon().factory());
+
+    public CatalogoCache(ProductoRepository productoRepository,
+                         PlatformTransactionManager transactionManager) {
+        this.productoRepository = productoRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    // ==================== CARGA Y REFRESCO ====================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        recargarCompleto();
+    }
+
+    /**
+     * Reconstruye el snapshot completo desde la base de datos.
+     */
+    public synchronized void recargarCompleto() {
+        long version = snapshot != null ? snapshot.getVersion() + 1 : 1;
+        List<ProductoCatalogo> productos = transactionTemplate.execute(status ->
+                productoRepository.findByActivoTrue().stream()
+                        .map(this::crearEntrada)
+                        .collect(Collectors.toList()));
+        indice = IndiceBusqueda.de(productos.stream().map(ProductoCatalogo::resumen).toList());
+        snapshot = CatalogoSnapshot.completo(version, productos);
+        log.info("Catálogo en memoria cargado: {} productos (versión {})", snapshot.tamanio(), version);
+    }
+
+    /**
+     * Refresca los productos modificados una vez confirmada la transacción que los cambió.
+     * La lectura se hace en segundo plano: el hilo que confirma todavía retiene su conexión,
+     * y pedir otra desde ahí puede agotar el pool cuando hay muchos commits concurrentes.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCatalogoModificado(CatalogoModificadoEvent evento) {
+        pendientes.addAll(evento.productoIds());
+        refrescador.execute(this::refrescarPendientes);
+    }
+
+    @PreDestroy
+    public void detener() {
+        refrescador.shutdownNow();
+    }
+
+    /**
+     * Vuelve a leer solo los productos indicados y publica un snapshot nuevo.
+     */
+    public synchronized void refrescarProductos(Set<Long> productoIds) {
+        if (productoIds.isEmpty()) {
+            return;
+        }
+        if (snapshot == null) {
+            recargarCompleto();
+            return;
+        }
+
+        List<ProductoCatalogo> activos = transactionTemplate.execute(status ->
+                productoRepository.findByIdIn(productoIds).stream()
+                        .filter(Producto::getActivo)
+                        .map(this::crearEntrada)
+                        .collect(Collectors.toList()));
+
+        Set<Long> removidos = new HashSet<>(productoIds);
+        activos.forEach(p -> removidos.remove(p.id()));
+
+        activos.forEach(p -> indice.indexar(p.resumen()));
+        removidos.forEach(indice::remover);
+        snapshot = snapshot.aplicar(activos, removidos);
+        log.debug("Catálogo en memoria actualizado a versión {} (productos {})", snapshot.getVersion(), productoIds);
+    }
+
+    private void refrescarPendientes() {
+        Set<Long> productoIds = new HashSet<>();
+        for (Iterator<Long> it = pendientes.iterator(); it.hasNext(); ) {
+            productoIds.add(it.next());
+            it.remove();
+        }
+        try {
+            refrescarProductos(productoIds);
+        } catch (RuntimeException e) {
+            log.error("No se pudo refrescar el catálogo en memoria (productos {})", productoIds, e);
+        }
+    }
+
+    public CatalogoSnapshot snapshot() {
+        CatalogoSnapshot actual = snapshot;
+        if (actual == null) {
+            recargarCompleto();
+            actual = snapshot;
+        }
+        return actual;
+    }
+
+    // ==================== CONSULTAS ====================
+
+    public List<ProductoDTO> listarActivos() {
+        return snapshot().porId().stream()
+                .map(ProductoCatalogo::resumen)
+                .collect(Collectors.toList());
+    }
+
+    public Page<ProductoDTO> listarActivos(Pageable pageable) {
+        return paginar(null, pageable);
+    }
+
+    public Page<ProductoDTO> listarPorCategoria(Long categoriaId, Pageable pageable) {
+        return paginar(categoriaId, pageable);
+    }
+
+    /**
+     * Búsqueda por texto sobre el índice en memoria.
+     * Ordena por relevancia; el orden pedido (si lo hay) solo desempata.
+     */
+    public Page<ProductoDTO> buscar(String termino, Pageable pageable) {
+        CatalogoSnapshot actual = snapshot();
+        Map<Long, Double> puntajes = indice.buscar(termino);
+
+        // Los IDs se resuelven contra el snapshot: un producto recién desactivado no aparece
+        List<ProductoDTO> lista = puntajes.keySet().stream()
+                .map(actual::buscar)
+                .flatMap(Optional::stream)
+                .map(ProductoCatalogo::resumen)
+                .sorted(porRelevancia(puntajes, pageable.getSort()))
+                .collect(Collectors.toList());
+        return recortar(lista, pageable);
+    }
+
+    /**
+     * Búsqueda facetada: combina todos los filtros y devuelve los conteos por faceta.
+     */
+    public CatalogoFiltradoDTO filtrar(FiltroCatalogoRequest filtro, Pageable pageable) {
+        CatalogoSnapshot actual = snapshot();
+        boolean conBusqueda = filtro.getBusqueda() != null && !filtro.getBusqueda().isBlank();
+        Map<Long, Double> puntajes = conBusqueda ? indice.buscar(filtro.getBusqueda()) : null;
+
+        CatalogoFacetas.Resultado resultado = actual.facetas()
+                .filtrar(filtro, puntajes != null ? puntajes.keySet() : null);
+
+        Stream<ProductoDTO> resumenes = resultado.productos().stream().map(ProductoCatalogo::resumen);
+        if (puntajes != null) {
+            resumenes = resumenes.sorted(porRelevancia(puntajes, pageable.getSort()));
+        } else if (pageable.getSort().isSorted()) {
+            resumenes = resumenes.sorted(comparador(pageable.getSort()));
+        }
+
+        CatalogoFiltradoDTO respuesta = new CatalogoFiltradoDTO();
+        respuesta.setProductos(recortar(resumenes.collect(Collectors.toList()), pageable));
+        respuesta.setCategorias(resultado.categorias());
+        respuesta.setTalles(resultado.talles());
+        respuesta.setColores(resultado.colores());
+        respuesta.setMarcas(resultado.marcas());
+        respuesta.setEnOferta(resultado.enOferta());
+        respuesta.setConStock(resultado.conStock());
+        respuesta.setPrecioMinimo(resultado.precioMinimo());
+        respuesta.setPrecioMaximo(resultado.precioMaximo());
+        return respuesta;
+    }
+
+    /**
+     * Listado por cursor (sin total): busca por bisección la posición del cursor en el listado
+     * ya ordenado del snapshot, en lugar de ordenar y saltear filas en cada página.
+     * Solo la página devuelta se copia.
+     */
+    public PaginaCursor<ProductoDTO> listarPorCursor(Long categoriaId, OrdenCatalogo orden, String cursor, int tamanio) {
+        Cursor desde = Cursor.decodificar(cursor);
+        List<ProductoCatalogo> ordenados = snapshot().ordenados(orden, categoriaId);
+        int inicio = desde == null ? 0 : primeroDespuesDe(ordenados, p -> orden.compararConCursor(p, desde));
+        return armarPagina(ordenados, inicio, tamanio, orden::cursorDe);
+    }
+
+    /**
+     * Búsqueda por texto paginada por cursor. Ordena por relevancia y desempata por id,
+     * así el cursor (puntaje, id) identifica la posición aunque cambie el orden pedido.
+     * El resultado ordenado se guarda en el snapshot por término: las páginas siguientes solo bisecan.
+     */
+    public PaginaCursor<ProductoDTO> buscarPorCursor(String termino, String cursor, int tamanio) {
+        CatalogoSnapshot actual = snapshot();
+        Cursor desde = Cursor.decodificar(cursor);
+        BusquedaOrdenada busqueda = actual.busqueda(termino, t -> buscarOrdenado(actual, t));
+        List<ProductoCatalogo> ordenados = busqueda.productos();
+        Map<Long, Double> puntajes = busqueda.puntajes();
+
+        int inicio = 0;
+        if (desde != null) {
+            double puntajeCursor = desde.valor(Double::parseDouble);
+            inicio = primeroDespuesDe(ordenados, p -> {
+                int comparacion = Double.compare(puntajeCursor, puntajes.get(p.getId()));
+                return comparacion != 0 ? comparacion : desde.id().compareTo(p.getId());
+            });
+        }
+        return armarPagina(ordenados, inicio, tamanio,
+                p -> new Cursor(puntajes.get(p.getId()).toString(), p.getId()));
+    }
+
+    public List<ProductoDTO> listarDestacados() {
+        return snapshot().porId().stream()
+                .map(ProductoCatalogo::resumen)
+                .filter(p -> Boolean.TRUE.equals(p.getDestacado()))
+                .collect(Collectors.toList());
+    }
+
+    public List<ProductoDTO> listarEnOferta() {
+        return snapshot().porId().stream()
+                .map(ProductoCatalogo::resumen)
+                .filter(p -> Boolean.TRUE.equals(p.getTieneOferta()))
+                .collect(Collectors.toList());
+    }
+
+    public Optional<ProductoDTO> obtenerDetalle(Long id) {
+        return snapshot().buscar(id).map(ProductoCatalogo::detalle);
+    }
+
+    /**
+     * Productos activos de la misma categoría, excluyendo el producto indicado.
+     */
+    public List<ProductoDTO> listarRelacionados(Long categoriaId, Long productoId, int limite) {
+        return snapshot().ordenados().stream()
+                .map(ProductoCatalogo::resumen)
+                .filter(p -> categoriaId.equals(p.getCategoriaId()) && !p.getId().equals(productoId))
+                .limit(limite)
+                .collect(Collectors.toList());
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    private BusquedaOrdenada buscarOrdenado(CatalogoSnapshot actual, String termino) {
+        Map<Long, Double> puntajes = indice.buscar(termino);
+        // Los IDs se resuelven contra el snapshot: un producto recién desactivado no aparece
+        List<ProductoCatalogo> ordenados = puntajes.keySet().stream()
+                .map(actual::buscar)
+                .flatMap(Optional::stream)
+                .sorted(Comparator.comparing(ProductoCatalogo::resumen,
+                        Comparator.<ProductoDTO>comparingDouble(p -> -puntajes.get(p.getId()))
+                                .thenComparing(ProductoDTO::getId, Comparator.reverseOrder())))
+                .toList();
+        return new BusquedaOrdenada(ordenados, Map.copyOf(puntajes));
+    }
+
+    private ProductoCatalogo crearEntrada(Producto producto) {
+        return new ProductoCatalogo(new ProductoDTO(producto), new ProductoDTO(producto, true));
+    }
+
+    /**
+     * Página por offset de todo el catálogo o de una categoría. Si el orden pedido es uno de los
+     * del catálogo se recorta el listado ya ordenado del snapshot (el mismo que usa el cursor);
+     * un orden compuesto o por otra propiedad se resuelve ordenando en cada pedido.
+     */
+    private Page<ProductoDTO> paginar(Long categoriaId, Pageable pageable) {
+        CatalogoSnapshot actual = snapshot();
+        Optional<OrdenCatalogo> orden = OrdenCatalogo.de(pageable.getSort());
+        if (orden.isPresent()) {
+            List<ProductoCatalogo> ordenados = actual.ordenados(orden.get(), categoriaId);
+            if (pageable.isUnpaged()) {
+                return new PageImpl<>(ordenados.stream().map(ProductoCatalogo::resumen).toList(), pageable, ordenados.size());
+            }
+            int desde = (int) Math.min(pageable.getOffset(), ordenados.size());
+            int hasta = Math.min(desde + pageable.getPageSize(), ordenados.size());
+            List<ProductoDTO> pagina = ordenados.subList(desde, hasta).stream()
+                    .map(ProductoCatalogo::resumen)
+                    .toList();
+            return new PageImpl<>(pagina, pageable, ordenados.size());
+        }
+
+        List<ProductoDTO> lista = actual.porId().stream()
+                .filter(p -> categoriaId == null || categoriaId.equals(p.resumen().getCategoriaId()))
+                .map(ProductoCatalogo::resumen)
+                .sorted(comparador(pageable.getSort()))
+                .collect(Collectors.toList());
+        return recortar(lista, pageable);
+    }
+
+    private Page<ProductoDTO> recortar(List<ProductoDTO> lista, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(lista, pageable, lista.size());
+        }
+        int desde = (int) Math.min(pageable.getOffset(), lista.size());
+        int hasta = Math.min(desde + pageable.getPageSize(), lista.size());
+        return new PageImpl<>(lista.subList(desde, hasta), pageable, lista.size());
+    }
+
+    /**
+     * Índice del primer elemento que va después del cursor (comparacion positiva), por bisección.
+     */
+    private static int primeroDespuesDe(List<ProductoCatalogo> ordenados, ToIntFunction<ProductoDTO> comparacion) {
+        int desde = 0;
+        int hasta = ordenados.size();
+        while (desde < hasta) {
+            int medio = (desde + hasta) >>> 1;
+            if (comparacion.applyAsInt(ordenados.get(medio).resumen()) > 0) {
+                hasta = medio;
+            } else {
+                desde = medio + 1;
+            }
+        }
+        return desde;
+    }
+
+    private PaginaCursor<ProductoDTO> armarPagina(List<ProductoCatalogo> ordenados, int inicio, int tamanio,
+                                                  Function<ProductoDTO, Cursor> cursorDe) {
+        int limite = Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO_PAGINA));
+        int fin = Math.min(inicio + limite, ordenados.size());
+        List<ProductoDTO> pagina = ordenados.subList(inicio, fin).stream()
+                .map(ProductoCatalogo::resumen)
+                .toList();
+        String siguiente = fin < ordenados.size() && !pagina.isEmpty()
+                ? cursorDe.apply(pagina.get(pagina.size() - 1)).codificar()
+                : null;
+        return new PaginaCursor<>(pagina, siguiente, null);
+    }
+
+    private Comparator<ProductoDTO> porRelevancia(Map<Long, Double> puntajes, Sort sort) {
+        Comparator<ProductoDTO> orden = Comparator.comparingDouble(p -> -puntajes.get(p.getId()));
+        return orden.thenComparing(sort.isSorted() ? comparador(sort) : CatalogoSnapshot.ORDEN_POR_DEFECTO);
+    }
+
+    private Comparator<ProductoDTO> comparador(Sort sort) {
+        Comparator<ProductoDTO> comparador = null;
+        for (Sort.Order orden : sort) {
+            Comparator<ProductoDTO> base = ORDENAMIENTOS.get(orden.getProperty());
+            if (base == null) {
+                throw new BadRequestException("No se puede ordenar el catálogo por: " + orden.getProperty());
+            }
+            if (orden.isDescending()) {
+                base = base.reversed();
+            }
+            comparador = comparador == null ? base : comparador.thenComparing(base);
+        }
+        return comparador.thenComparing(ProductoDTO::getId, Comparator.reverseOrder());
+    }
+}
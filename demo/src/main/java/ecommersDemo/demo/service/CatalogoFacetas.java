@@ -0,0 +1,541 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.FacetaValorDTO;
+import ecommersDemo.demo.dto.ProductoDTO;
+import ecommersDemo.demo.dto.ProductoVarianteDTO;
+import ecommersDemo.demo.dto.request.FiltroCatalogoRequest;
+import ecommersDemo.demo.service.CatalogoSnapshot.ProductoCatalogo;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Índice de facetas de un snapshot del catálogo: un BitSet por valor de faceta,
+ * donde cada producto ocupa una posición fija mientras siga en el catálogo.
+ * Talle, color y stock se indexan por variante (cada variante activa con su propia posición) y se
+ * combinan antes de pasar a productos: "talle S y color rojo" exige una variante S roja.
+ * Filtrar y contar se reduce a operaciones AND/OR sobre bits.
+ * <p>
+ * Es inmutable: cada snapshot nuevo deriva su índice del anterior copiando solo los bits
+ * de los valores que tocan los productos modificados.
+ */
+final class CatalogoFacetas {
+
+    // Posiciones de cada filtro de producto en el arreglo de filtros activos
+    private static final int CATEGORIA = 0;
+    private static final int MARCA = 1;
+    private static final int PRECIO = 2;
+    private static final int OFERTA = 3;
+    private static final int BUSQUEDA = 4;
+    private static final int CANTIDAD_FILTROS_PRODUCTO = 5;
+
+    // Posiciones de cada filtro de variante
+    private static final int TALLE = 0;
+    private static final int COLOR = 1;
+    private static final int STOCK = 2;
+    private static final int CANTIDAD_FILTROS_VARIANTE = 3;
+
+    // Productos en el orden por defecto y, por posición, su índice en esa lista (-1 si la posición está libre)
+    private final List<ProductoCatalogo> productos;
+    private final int[] ordenDePosicion;
+    private final Map<Long, Integer> posiciones;
+    private final BitSet todos;
+
+    private final Faceta<Long> categorias;
+    private final Faceta<String> marcas;
+    private final BitSet enOferta;
+
+    // Variantes activas: producto al que pertenece cada una y sus facetas
+    private final Map<Long, Integer> posicionesVariante;
+    private int[] productoDeVariante;
+    private int variantesUsadas;
+    private final BitSet todasVariantes;
+    private final Faceta<Long> talles;
+    private final Faceta<String> colores;
+    private final BitSet variantesConStock;
+
+    // Posiciones ordenadas por precio final, para resolver rangos con búsqueda binaria
+    private final int[] porPrecio;
+    private final BigDecimal[] preciosOrdenados;
+
+    /**
+     * Construye el índice completo de los productos, dados en el orden por defecto.
+     */
+    static CatalogoFacetas de(List<ProductoCatalogo> productos) {
+        return new CatalogoFacetas(null, List.of(), productos, productos);
+    }
+
+    /**
+     * Deriva el índice de un snapshot nuevo a partir de este.
+     * {@code anteriores} son las entradas previas de los productos modificados o removidos,
+     * {@code actualizados} las nuevas y {@code productos} el catálogo nuevo en el orden por defecto.
+     */
+    CatalogoFacetas actualizar(Collection<ProductoCatalogo> anteriores,
+                               Collection<ProductoCatalogo> actualizados,
+                               List<ProductoCatalogo> productos) {
+        return new CatalogoFacetas(this, anteriores, actualizados, productos);
+    }
+
+    private CatalogoFacetas(CatalogoFacetas base,
+                            Collection<ProductoCatalogo> anteriores,
+                            Collection<ProductoCatalogo> actualizados,
+                            List<ProductoCatalogo> productos) {
+        this.productos = productos;
+        this.posiciones = base != null ? new HashMap<>(base.posiciones) : new HashMap<>();
+        this.todos = base != null ? (BitSet) base.todos.clone() : new BitSet();
+        this.categorias = base != null ? base.categorias.copia() : new Faceta<>();
+        this.marcas = base != null ? base.marcas.copia() : new Faceta<>();
+        this.enOferta = base != null ? (BitSet) base.enOferta.clone() : new BitSet();
+        this.posicionesVariante = base != null ? new HashMap<>(base.posicionesVariante) : new HashMap<>();
+        this.productoDeVariante = base != null ? base.productoDeVariante.clone() : new int[0];
+        this.variantesUsadas = base != null ? base.variantesUsadas : 0;
+        this.todasVariantes = base != null ? (BitSet) base.todasVariantes.clone() : new BitSet();
+        this.talles = base != null ? base.talles.copia() : new Faceta<>();
+        this.colores = base != null ? base.colores.copia() : new Faceta<>();
+        this.variantesConStock = base != null ? (BitSet) base.variantesConStock.clone() : new BitSet();
+
+        int posicionesUsadas = base != null ? base.ordenDePosicion.length : 0;
+        Set<Integer> tocadas = new HashSet<>();
+        for (ProductoCatalogo anterior : anteriores) {
+            Integer posicion = posiciones.remove(anterior.id());
+            if (posicion != null) {
+                quitar(anterior, posicion);
+                tocadas.add(posicion);
+            }
+        }
+
+        // Un producto que sigue en el catálogo conserva su posición; uno nuevo toma la siguiente libre
+        List<Integer> agregadas = new ArrayList<>();
+        for (ProductoCatalogo producto : actualizados) {
+            Integer posicion = base != null ? base.posiciones.get(producto.id()) : null;
+            if (posicion == null) {
+                posicion = posicionesUsadas++;
+            }
+            posiciones.put(producto.id(), posicion);
+            agregar(producto, posicion);
+            agregadas.add(posicion);
+        }
+        for (ProductoCatalogo anterior : anteriores) {
+            if (!posiciones.containsKey(anterior.id())) {
+                variantesActivas(anterior).forEach(v -> posicionesVariante.remove(v.getId()));
+            }
+        }
+
+        this.ordenDePosicion = new int[posicionesUsadas];
+        Arrays.fill(ordenDePosicion, -1);
+        for (int i = 0; i < productos.size(); i++) {
+            ordenDePosicion[posiciones.get(productos.get(i).id())] = i;
+        }
+
+        // Se descartan los precios tocados y se intercalan los nuevos, sin reordenar todo el catálogo
+        Map<Integer, BigDecimal> preciosNuevos = new HashMap<>();
+        for (ProductoCatalogo producto : actualizados) {
+            preciosNuevos.put(posiciones.get(producto.id()), precio(producto));
+        }
+        agregadas.sort(Comparator.comparing(preciosNuevos::get));
+        int[] previas = base != null ? base.porPrecio : new int[0];
+        BigDecimal[] preciosPrevios = base != null ? base.preciosOrdenados : new BigDecimal[0];
+        int[] posicionesPorPrecio = new int[previas.length + agregadas.size()];
+        BigDecimal[] precios = new BigDecimal[posicionesPorPrecio.length];
+        int cantidad = 0;
+        int siguiente = 0;
+        for (int i = 0; i <= previas.length; i++) {
+            while (siguiente < agregadas.size() && (i == previas.length
+                    || preciosNuevos.get(agregadas.get(siguiente)).compareTo(preciosPrevios[i]) < 0)) {
+                int posicion = agregadas.get(siguiente++);
+                posicionesPorPrecio[cantidad] = posicion;
+                precios[cantidad] = preciosNuevos.get(posicion);
+                cantidad++;
+            }
+            if (i < previas.length && !tocadas.contains(previas[i])) {
+                posicionesPorPrecio[cantidad] = previas[i];
+                precios[cantidad] = preciosPrevios[i];
+                cantidad++;
+            }
+        }
+        this.porPrecio = Arrays.copyOf(posicionesPorPrecio, cantidad);
+        this.preciosOrdenados = Arrays.copyOf(precios, cantidad);
+    }
+
+    private void agregar(ProductoCatalogo producto, int posicion) {
+        ProductoDTO resumen = producto.resumen();
+        todos.set(posicion);
+        if (resumen.getCategoriaId() != null) {
+            categorias.agregar(resumen.getCategoriaId(), resumen.getCategoriaNombre(), posicion);
+        }
+        if (resumen.getMarca() != null && !resumen.getMarca().isBlank()) {
+            marcas.agregar(normalizar(resumen.getMarca()), resumen.getMarca().trim(), posicion);
+        }
+        if (Boolean.TRUE.equals(resumen.getTieneOferta())) {
+            enOferta.set(posicion);
+        }
+
+        for (ProductoVarianteDTO variante : variantesActivas(producto)) {
+            Integer j = posicionesVariante.get(variante.getId());
+            if (j == null) {
+                j = variantesUsadas++;
+                posicionesVariante.put(variante.getId(), j);
+                if (j == productoDeVariante.length) {
+                    productoDeVariante = Arrays.copyOf(productoDeVariante, Math.max(16, j * 2));
+                }
+            }
+            productoDeVariante[j] = posicion;
+            todasVariantes.set(j);
+            if (variante.getTalleId() != null) {
+                talles.agregar(variante.getTalleId(), variante.getTalleNombre(), j);
+            }
+            if (variante.getColor() != null && !variante.getColor().isBlank()) {
+                colores.agregar(normalizar(variante.getColor()), variante.getColor().trim(), j);
+            }
+            if (variante.getStock() != null && variante.getStock() > 0) {
+                variantesConStock.set(j);
+            }
+        }
+    }
+
+    private void quitar(ProductoCatalogo producto, int posicion) {
+        ProductoDTO resumen = producto.resumen();
+        todos.clear(posicion);
+        if (resumen.getCategoriaId() != null) {
+            categorias.quitar(resumen.getCategoriaId(), posicion);
+        }
+        if (resumen.getMarca() != null && !resumen.getMarca().isBlank()) {
+            marcas.quitar(normalizar(resumen.getMarca()), posicion);
+        }
+        enOferta.clear(posicion);
+
+        for (ProductoVarianteDTO variante : variantesActivas(producto)) {
+            Integer j = posicionesVariante.get(variante.getId());
+            if (j == null) {
+                continue;
+            }
+            todasVariantes.clear(j);
+            if (variante.getTalleId() != null) {
+                talles.quitar(variante.getTalleId(), j);
+            }
+            if (variante.getColor() != null && !variante.getColor().isBlank()) {
+                colores.quitar(normalizar(variante.getColor()), j);
+            }
+            variantesConStock.clear(j);
+        }
+    }
+
+    /**
+     * Aplica los filtros y calcula los conteos por faceta.
+     * {@code idsBusqueda} es null cuando no hay búsqueda por texto.
+     */
+    Resultado filtrar(FiltroCatalogoRequest filtro, Set<Long> idsBusqueda) {
+        Set<Long> categoriasElegidas = conjunto(filtro.getCategoriaId(), Function.identity());
+        Set<Long> tallesElegidos = conjunto(filtro.getTalleId(), Function.identity());
+        Set<String> coloresElegidos = conjunto(filtro.getColor(), CatalogoFacetas::normalizar);
+        Set<String> marcasElegidas = conjunto(filtro.getMarca(), CatalogoFacetas::normalizar);
+
+        BitSet[] filtros = new BitSet[CANTIDAD_FILTROS_PRODUCTO];
+        filtros[CATEGORIA] = categorias.union(categoriasElegidas);
+        filtros[MARCA] = marcas.union(marcasElegidas);
+        filtros[PRECIO] = rangoPrecio(filtro.getPrecioMin(), filtro.getPrecioMax());
+        filtros[OFERTA] = Boolean.TRUE.equals(filtro.getEnOferta()) ? enOferta : null;
+        filtros[BUSQUEDA] = idsBusqueda != null ? posicionesDe(idsBusqueda) : null;
+
+        BitSet[] filtrosVariante = new BitSet[CANTIDAD_FILTROS_VARIANTE];
+        filtrosVariante[TALLE] = talles.union(tallesElegidos);
+        filtrosVariante[COLOR] = colores.union(coloresElegidos);
+        filtrosVariante[STOCK] = Boolean.TRUE.equals(filtro.getConStock()) ? variantesConStock : null;
+
+        // Productos con alguna variante que cumple a la vez talle, color y stock (null si no se filtra por variante)
+        BitSet porVariantes = tieneFiltros(filtrosVariante)
+                ? productosDe(variantesFiltradas(filtrosVariante, -1))
+                : null;
+
+        BitSet resultado = interseccion(filtros, -1, porVariantes);
+        int[] indices = new int[resultado.cardinality()];
+        int cantidad = 0;
+        for (int i = resultado.nextSetBit(0); i >= 0; i = resultado.nextSetBit(i + 1)) {
+            indices[cantidad++] = ordenDePosicion[i];
+        }
+        Arrays.sort(indices);
+        List<ProductoCatalogo> coincidencias = new ArrayList<>(indices.length);
+        for (int indice : indices) {
+            coincidencias.add(productos.get(indice));
+        }
+
+        // Facetas disyuntivas: cada conteo ignora el filtro de su propia faceta.
+        // Las de variante cuentan productos con alguna variante del valor que cumpla los otros filtros de variante.
+        BitSet porProducto = interseccion(filtros, -1, null);
+        BitSet sinCategoria = interseccion(filtros, CATEGORIA, porVariantes);
+        BitSet sinMarca = interseccion(filtros, MARCA, porVariantes);
+        BitSet sinTalle = variantesFiltradas(filtrosVariante, TALLE);
+        BitSet sinColor = variantesFiltradas(filtrosVariante, COLOR);
+        BitSet sinPrecio = interseccion(filtros, PRECIO, porVariantes);
+        return new Resultado(
+                coincidencias,
+                categorias.contar(valor -> cantidad(sinCategoria, valor), categoriasElegidas, String::valueOf),
+                talles.contar(valor -> cantidadProductos(porProducto, sinTalle, valor), tallesElegidos, String::valueOf),
+                colores.contar(valor -> cantidadProductos(porProducto, sinColor, valor), coloresElegidos, Function.identity()),
+                marcas.contar(valor -> cantidad(sinMarca, valor), marcasElegidas, Function.identity()),
+                cantidad(interseccion(filtros, OFERTA, porVariantes), enOferta),
+                cantidadProductos(porProducto, variantesFiltradas(filtrosVariante, STOCK), variantesConStock),
+                precioExtremo(sinPrecio, true),
+                precioExtremo(sinPrecio, false));
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    private BitSet interseccion(BitSet[] filtros, int excluido, BitSet porVariantes) {
+        BitSet resultado = (BitSet) todos.clone();
+        for (int i = 0; i < filtros.length; i++) {
+            if (i != excluido && filtros[i] != null) {
+                resultado.and(filtros[i]);
+            }
+        }
+        if (porVariantes != null) {
+            resultado.and(porVariantes);
+        }
+        return resultado;
+    }
+
+    /**
+     * Variantes activas que cumplen los filtros de variante, salvo el excluido.
+     */
+    private BitSet variantesFiltradas(BitSet[] filtros, int excluido) {
+        BitSet resultado = (BitSet) todasVariantes.clone();
+        for (int i = 0; i < filtros.length; i++) {
+            if (i != excluido && filtros[i] != null) {
+                resultado.and(filtros[i]);
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Productos a los que pertenece alguna de las variantes indicadas.
+     */
+    private BitSet productosDe(BitSet variantes) {
+        BitSet resultado = new BitSet();
+        for (int j = variantes.nextSetBit(0); j >= 0; j = variantes.nextSetBit(j + 1)) {
+            resultado.set(productoDeVariante[j]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Productos de {@code base} con alguna variante de {@code variantes} que también esté en {@code valor}.
+     */
+    private int cantidadProductos(BitSet base, BitSet variantes, BitSet valor) {
+        BitSet coinciden = (BitSet) variantes.clone();
+        coinciden.and(valor);
+        BitSet resultado = productosDe(coinciden);
+        resultado.and(base);
+        return resultado.cardinality();
+    }
+
+    private static boolean tieneFiltros(BitSet[] filtros) {
+        for (BitSet filtro : filtros) {
+            if (filtro != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private BitSet rangoPrecio(BigDecimal minimo, BigDecimal maximo) {
+        if (minimo == null && maximo == null) {
+            return null;
+        }
+        int desde = minimo != null ? primeraPosicion(minimo, false) : 0;
+        int hasta = maximo != null ? primeraPosicion(maximo, true) : porPrecio.length;
+        BitSet rango = new BitSet();
+        for (int i = desde; i < hasta; i++) {
+            rango.set(porPrecio[i]);
+        }
+        return rango;
+    }
+
+    /**
+     * Primer índice con precio >= valor (o > valor si {@code estricto}).
+     */
+    private int primeraPosicion(BigDecimal valor, boolean estricto) {
+        int bajo = 0;
+        int alto = preciosOrdenados.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            int cmp = preciosOrdenados[medio].compareTo(valor);
+            if (cmp < 0 || (estricto && cmp == 0)) {
+                bajo = medio + 1;
+            } else {
+                alto = medio;
+            }
+        }
+        return bajo;
+    }
+
+    private BigDecimal precioExtremo(BitSet base, boolean minimo) {
+        if (minimo) {
+            for (int i = 0; i < porPrecio.length; i++) {
+                if (base.get(porPrecio[i])) {
+                    return preciosOrdenados[i];
+                }
+            }
+        } else {
+            for (int i = porPrecio.length - 1; i >= 0; i--) {
+                if (base.get(porPrecio[i])) {
+                    return preciosOrdenados[i];
+                }
+            }
+        }
+        return null;
+    }
+
+    private BitSet posicionesDe(Set<Long> ids) {
+        BitSet bits = new BitSet();
+        for (Long id : ids) {
+            Integer posicion = posiciones.get(id);
+            if (posicion != null) {
+                bits.set(posicion);
+            }
+        }
+        return bits;
+    }
+
+    private static int cantidad(BitSet base, BitSet valor) {
+        BitSet copia = (BitSet) base.clone();
+        copia.and(valor);
+        return copia.cardinality();
+    }
+
+    private static List<ProductoVarianteDTO> variantesActivas(ProductoCatalogo producto) {
+        List<ProductoVarianteDTO> variantes = producto.detalle().getVariantes();
+        if (variantes == null) {
+            return List.of();
+        }
+        return variantes.stream()
+                .filter(v -> v.getId() != null && Boolean.TRUE.equals(v.getActivo()))
+                .toList();
+    }
+
+    private static BigDecimal precio(ProductoCatalogo producto) {
+        BigDecimal precio = producto.resumen().getPrecioFinal();
+        return precio != null ? precio : BigDecimal.ZERO;
+    }
+
+    private static String normalizar(String valor) {
+        return valor.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static <T, K> Set<K> conjunto(List<T> valores, Function<T, K> clave) {
+        if (valores == null || valores.isEmpty()) {
+            return Set.of();
+        }
+        Set<K> resultado = new LinkedHashSet<>();
+        for (T valor : valores) {
+            if (valor != null) {
+                resultado.add(clave.apply(valor));
+            }
+        }
+        return resultado;
+    }
+
+    /**
+     * Bits por valor de una faceta, con el nombre a mostrar de cada valor.
+     * Una copia comparte los bits con la original y los clona al modificar cada valor por primera vez.
+     */
+    private static final class Faceta<K extends Comparable<K>> {
+
+        private final Map<K, BitSet> bits;
+        private final Map<K, String> nombres;
+        private final Set<K> propios = new HashSet<>();
+
+        Faceta() {
+            this(new TreeMap<>(), new HashMap<>());
+        }
+
+        private Faceta(Map<K, BitSet> bits, Map<K, String> nombres) {
+            this.bits = bits;
+            this.nombres = nombres;
+        }
+
+        Faceta<K> copia() {
+            return new Faceta<>(new TreeMap<>(bits), new HashMap<>(nombres));
+        }
+
+        void agregar(K clave, String nombre, int posicion) {
+            modificable(clave).set(posicion);
+            nombres.put(clave, nombre);
+        }
+
+        void quitar(K clave, int posicion) {
+            if (!bits.containsKey(clave)) {
+                return;
+            }
+            BitSet valor = modificable(clave);
+            valor.clear(posicion);
+            if (valor.isEmpty()) {
+                bits.remove(clave);
+                nombres.remove(clave);
+                propios.remove(clave);
+            }
+        }
+
+        private BitSet modificable(K clave) {
+            BitSet valor = bits.get(clave);
+            if (valor == null) {
+                valor = new BitSet();
+                bits.put(clave, valor);
+                propios.add(clave);
+            } else if (propios.add(clave)) {
+                valor = (BitSet) valor.clone();
+                bits.put(clave, valor);
+            }
+            return valor;
+        }
+
+        /**
+         * Unión de los bits de los valores elegidos, o null si no se filtra por esta faceta.
+         */
+        BitSet union(Set<K> claves) {
+            if (claves.isEmpty()) {
+                return null;
+            }
+            BitSet resultado = new BitSet();
+            for (K clave : claves) {
+                BitSet valor = bits.get(clave);
+                if (valor != null) {
+                    resultado.or(valor);
+                }
+            }
+            return resultado;
+        }
+
+        /**
+         * Conteo por valor; se omiten los valores sin productos salvo que estén seleccionados.
+         */
+        List<FacetaValorDTO> contar(ToIntFunction<BitSet> cantidadPorValor, Set<K> seleccionados,
+                                    Function<K, String> comoTexto) {
+            List<FacetaValorDTO> valores = new ArrayList<>();
+            bits.forEach((clave, valor) -> {
+                int cantidad = cantidadPorValor.applyAsInt(valor);
+                boolean seleccionado = seleccionados.contains(clave);
+                if (cantidad > 0 || seleccionado) {
+                    valores.add(new FacetaValorDTO(comoTexto.apply(clave), nombres.get(clave), cantidad, seleccionado));
+                }
+            });
+            return valores;
+        }
+    }
+
+    /**
+     * Productos que cumplen todos los filtros (en el orden por defecto) y los conteos por faceta.
+     */
+    record Resultado(List<ProductoCatalogo> productos,
+                     List<FacetaValorDTO> categorias,
+                     List<FacetaValorDTO> talles,
+                     List<FacetaValorDTO> colores,
+                     List<FacetaValorDTO> marcas,
+                     int enOferta,
+                     int conStock,
+                     BigDecimal precioMinimo,
+                     BigDecimal precioMaximo) {
+    }
+}
@@ -0,0 +1,174 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.ProductoDTO;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Vista inmutable y versionada del catálogo activo.
+ * Cada modificación genera un snapshot nuevo; los lectores nunca ven estados intermedios.
+ */
+public final class CatalogoSnapshot {
+
+    // Términos distintos cuyo resultado ordenado se conserva; los demás se calculan en cada página
+    private static final int MAX_BUSQUEDAS = 256;
+
+    /**
+     * Orden por defecto del listado público: más nuevos primero.
+     */
+    static final Comparator<ProductoDTO> ORDEN_POR_DEFECTO = Comparator
+            .comparing(ProductoDTO::getFechaCreacion, Comparator.nullsLast(Comparator.<LocalDateTime>reverseOrder()))
+            .thenComparing(ProductoDTO::getId, Comparator.reverseOrder());
+
+    private final long version;
+    private final Map<Long, ProductoCatalogo> productos;
+    private final List<ProductoCatalogo> ordenados;
+
+    // Se construye en el primer uso; si dos hilos lo calculan a la vez el resultado es el mismo
+    private volatile CatalogoFacetas facetas;
+
+    // Listados por orden (y categoría) para la paginación por cursor, construidos en el primer uso
+    private final Map<ClaveListado, List<ProductoCatalogo>> listados = new ConcurrentHashMap<>();
+
+    // Resultados de búsqueda ordenados por relevancia para la paginación por cursor, por término
+    private final Map<String, BusquedaOrdenada> busquedas = new ConcurrentHashMap<>();
+
+    private CatalogoSnapshot(long version, Map<Long, ProductoCatalogo> productos) {
+        this.version = version;
+        this.productos = Collections.unmodifiableMap(productos);
+        List<ProductoCatalogo> lista = new ArrayList<>(productos.values());
+        lista.sort(Comparator.comparing(ProductoCatalogo::resumen, ORDEN_POR_DEFECTO));
+        this.ordenados = List.copyOf(lista);
+    }
+
+    static CatalogoSnapshot vacio() {
+        return new CatalogoSnapshot(0, new LinkedHashMap<>());
+    }
+
+    static CatalogoSnapshot completo(long version, Collection<ProductoCatalogo> productos) {
+        Map<Long, ProductoCatalogo> porId = new TreeMap<>();
+        for (ProductoCatalogo producto : productos) {
+            porId.put(producto.id(), producto);
+        }
+        return new CatalogoSnapshot(version, new LinkedHashMap<>(porId));
+    }
+
+    /**
+     * Crea un snapshot nuevo aplicando cambios sobre el actual.
+     * Los productos en {@code removidos} dejan de formar parte del catálogo activo.
+     */
+    CatalogoSnapshot aplicar(Collection<ProductoCatalogo> actualizados, Set<Long> removidos) {
+        Map<Long, ProductoCatalogo> porId = new TreeMap<>(productos);
+        removidos.forEach(porId::remove);
+        for (ProductoCatalogo producto : actualizados) {
+            porId.put(producto.id(), producto);
+        }
+        CatalogoSnapshot nuevo = new CatalogoSnapshot(version + 1, new LinkedHashMap<>(porId));
+
+        // Si este snapshot ya tenía facetas, el nuevo las deriva tocando solo los productos cambiados
+        CatalogoFacetas previas = facetas;
+        if (previas != null) {
+            Set<Long> tocados = new HashSet<>(removidos);
+            actualizados.forEach(p -> tocados.add(p.id()));
+            List<ProductoCatalogo> anteriores = tocados.stream()
+                    .map(productos::get)
+                    .filter(Objects::nonNull)
+                    .toList();
+            nuevo.facetas = previas.actualizar(anteriores, actualizados, nuevo.ordenados);
+        }
+        return nuevo;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public Optional<ProductoCatalogo> buscar(Long id) {
+        return Optional.ofNullable(productos.get(id));
+    }
+
+    /**
+     * Productos activos ordenados por ID.
+     */
+    public Collection<ProductoCatalogo> porId() {
+        return productos.values();
+    }
+
+    /**
+     * Productos activos en el orden por defecto del listado.
+     */
+    public List<ProductoCatalogo> ordenados() {
+        return ordenados;
+    }
+
+    /**
+     * Productos activos en el orden indicado, opcionalmente de una sola categoría.
+     */
+    List<ProductoCatalogo> ordenados(OrdenCatalogo orden, Long categoriaId) {
+        // El listado completo se arma afuera del de la categoría: computeIfAbsent no admite anidarse
+        List<ProductoCatalogo> todos = listados.computeIfAbsent(new ClaveListado(orden, null), clave -> {
+            List<ProductoCatalogo> lista = new ArrayList<>(productos.values());
+            lista.sort(Comparator.comparing(ProductoCatalogo::resumen, orden.comparador()));
+            return List.copyOf(lista);
+        });
+        if (categoriaId == null) {
+            return todos;
+        }
+        return listados.computeIfAbsent(new ClaveListado(orden, categoriaId), clave -> todos.stream()
+                .filter(p -> categoriaId.equals(p.resumen().getCategoriaId()))
+                .toList());
+    }
+
+    /**
+     * Resultado ordenado de una búsqueda sobre este snapshot: se calcula en la primera página
+     * y las siguientes lo reutilizan mientras el snapshot siga vigente.
+     */
+    BusquedaOrdenada busqueda(String termino, Function<String, BusquedaOrdenada> calcular) {
+        BusquedaOrdenada actual = busquedas.get(termino);
+        if (actual == null) {
+            actual = calcular.apply(termino);
+            if (busquedas.size() < MAX_BUSQUEDAS) {
+                busquedas.putIfAbsent(termino, actual);
+            }
+        }
+        return actual;
+    }
+
+    /**
+     * Índice de facetas sobre los productos de este snapshot.
+     */
+    CatalogoFacetas facetas() {
+        CatalogoFacetas actual = facetas;
+        if (actual == null) {
+            actual = CatalogoFacetas.de(ordenados);
+            facetas = actual;
+        }
+        return actual;
+    }
+
+    public int tamanio() {
+        return productos.size();
+    }
+
+    private record ClaveListado(OrdenCatalogo orden, Long categoriaId) {
+    }
+
+    /**
+     * Productos que coinciden con una búsqueda, ya ordenados, y el puntaje de cada uno.
+     */
+    record BusquedaOrdenada(List<ProductoCatalogo> productos, Map<Long, Double> puntajes) {
+    }
+
+    /**
+     * Entrada del catálogo: versión resumida (listados) y detallada (con variantes).
+     */
+    public record ProductoCatalogo(ProductoDTO resumen, ProductoDTO detalle) {
+
+        public Long id() {
+            return resumen.getId();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package ecommersDemo.demo.service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sketch Space-Saving de claves más frecuentes (heavy hitters) con memoria acotada.
+ * Guarda como máximo {@code capacidad} contadores; al llegar una clave nueva con el sketch lleno
+ * reemplaza a la de menor cuenta y arranca desde esa cuenta (sobreestima, nunca subestima).
+ * Las claves con peso mayor a total/capacidad nunca se pierden, tampoco al combinar sketches
+ * con {@link #combinar}.
+ * Admite restas (cancelaciones): si la clave sigue en el sketch se descuenta sin bajar de 0
+ * y conserva su contador, así el sketch lleno nunca libera lugares y una clave nueva siempre
+ * entra desplazando a la de menor cuenta; si ya fue desplazada, su aporte quedó absorbido
+ * por otra clave y se ignora.
+ */
+final class ContadorFrecuentes {
+
+    private final int capacidad;
+    private final Map<Long, Long> cuentas;
+
+    ContadorFrecuentes(int capacidad) {
+        this.capacidad = capacidad;
+        this.cuentas = new HashMap<>(capacidad * 2);
+    }
+
+    synchronized void sumar(Long clave, long peso) {
+        Long actual = cuentas.get(clave);
+        if (actual != null) {
+            cuentas.put(clave, Math.max(0, actual + peso));
+            return;
+        }
+        if (peso <= 0) {
+            return;
+        }
+        if (cuentas.size() < capacidad) {
+            cuentas.put(clave, peso);
+            return;
+        }
+
+        // Sketch lleno: desplazar la clave con menor cuenta (capacidad chica, búsqueda lineal)
+        Map.Entry<Long, Long> minima = null;
+        for (Map.Entry<Long, Long> entrada : cuentas.entrySet()) {
+            if (minima == null || entrada.getValue() < minima.getValue()) {
+                minima = entrada;
+            }
+        }
+        long minimo = minima.getValue();
+        cuentas.remove(minima.getKey());
+        cuentas.put(clave, minimo + peso);
+    }
+
+    /**
+     * Combina varios sketches (por ejemplo, uno por día) en las cuentas estimadas de cada clave.
+     * Una clave ausente de un sketch lleno pudo haber sido desplazada de él: se le acredita
+     * la menor cuenta de ese sketch, como en la combinación estándar de Space-Saving.
+     * Así la estimación combinada tampoco subestima.
+     */
+    static Map<Long, Long> combinar(Collection<ContadorFrecuentes> sketches) {
+        Map<Long, Long> combinado = new HashMap<>();
+        // Suma de los mínimos de los sketches ya combinados: lo que arrastra una clave que no estaba en ellos
+        long creditoAnteriores = 0;
+        for (ContadorFrecuentes sketch : sketches) {
+            Map<Long, Long> cuentas;
+            long minimo;
+            synchronized (sketch) {
+                cuentas = new HashMap<>(sketch.cuentas);
+                minimo = sketch.minimo();
+            }
+
+            long credito = creditoAnteriores;
+            combinado.replaceAll((clave, cuenta) -> cuentas.containsKey(clave) ? cuenta : cuenta + minimo);
+            cuentas.forEach((clave, cuenta) -> combinado.merge(clave, credito + cuenta, (anterior, nueva) -> anterior + cuenta));
+            creditoAnteriores += minimo;
+        }
+        return combinado;
+    }
+
+    /**
+     * Cuenta que se acredita a una clave ausente: una clave desplazada tenía a lo sumo la menor
+     * cuenta del sketch lleno; si el sketch no está lleno, ninguna fue desplazada.
+     */
+    private long minimo() {
+        if (cuentas.size() < capacidad) {
+            return 0;
+        }
+        long minimo = Long.MAX_VALUE;
+        for (long cuenta : cuentas.values()) {
+            minimo = Math.min(minimo, cuenta);
+        }
+        return minimo;
+    }
+}
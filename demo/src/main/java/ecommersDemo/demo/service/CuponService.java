@@ -6,24 +6,32 @@ import ecommersDemo.demo.exception.BadRequestException;
 import ecommersDemo.demo.exception.ResourceNotFoundException;
 import ecommersDemo.demo.model.Cupon;
 import ecommersDemo.demo.repository.CuponRepository;
+import ecommersDemo.demo.service.ReglasCupones.ReglaCupon;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Service
 public class CuponService {
 
     private final CuponRepository cuponRepository;
+    private final CanjeCupones canjeCupones;
+    private final ReglasCupones reglasCupones;
 
-    public CuponService(CuponRepository cuponRepository) {
+    public CuponService(CuponRepository cuponRepository, CanjeCupones canjeCupones, ReglasCupones reglasCupones) {
         this.cuponRepository = cuponRepository;
+        this.canjeCupones = canjeCupones;
+        this.reglasCupones = reglasCupones;
     }
 
     /**
      * Valida un cupón y calcula el descuento aplicable para un monto dado.
+     * Se resuelve en memoria con las reglas cacheadas y el motor de canje; solo un código
+     * que no está en cache consulta la base.
      */
-    @Transactional(readOnly = true)
     public ValidarCuponResponse validarCupon(String codigo, BigDecimal montoCompra) {
         if (codigo == null || codigo.trim().isEmpty()) {
             return new ValidarCuponResponse(false, "El código de cupón es requerido");
@@ -33,35 +41,25 @@ public class CuponService {
             return new ValidarCuponResponse(false, "El monto de compra debe ser mayor a cero");
         }
 
-        Cupon cupon = cuponRepository.findByCodigoAndActivoTrue(codigo.trim().toUpperCase())
-                .orElse(null);
+        String codigoNormalizado = codigo.trim().toUpperCase();
+        ReglaCupon regla = reglasCupones.obtener(codigoNormalizado).orElse(null);
 
-        if (cupon == null) {
+        if (regla == null) {
             return new ValidarCuponResponse(false, "El código de cupón no existe o no está activo");
         }
 
-        if (!cupon.esValido(montoCompra)) {
-            // Determinar el motivo de invalidez
-            String mensaje = "El cupón no es válido";
-            
-            if (cupon.getMontoMinimo() != null && montoCompra.compareTo(cupon.getMontoMinimo()) < 0) {
-                mensaje = String.format("El monto mínimo para este cupón es $%.2f", cupon.getMontoMinimo());
-            } else if (cupon.getUsosMaximos() != null && cupon.getUsosActuales() >= cupon.getUsosMaximos()) {
-                mensaje = "Este cupón ha alcanzado su límite de usos";
-            } else {
-                java.time.LocalDateTime ahora = java.time.LocalDateTime.now();
-                if (ahora.isBefore(cupon.getFechaInicio())) {
-                    mensaje = "Este cupón aún no está disponible";
-                } else if (ahora.isAfter(cupon.getFechaFin())) {
-                    mensaje = "Este cupón ha expirado";
-                }
-            }
-            
-            return new ValidarCuponResponse(false, mensaje);
+        // usosActuales se vuelca por lotes: el límite se controla contra el motor de canje
+        if (canjeCupones.agotado(codigoNormalizado)) {
+            return new ValidarCuponResponse(false, "Este cupón ha alcanzado su límite de usos");
+        }
+
+        String motivo = regla.motivoInvalidez(montoCompra, LocalDateTime.now());
+        if (motivo != null) {
+            return new ValidarCuponResponse(false, motivo);
         }
 
-        BigDecimal descuentoAplicable = cupon.calcularDescuento(montoCompra);
-        CuponDTO cuponDTO = new CuponDTO(cupon);
+        BigDecimal descuentoAplicable = regla.calcularDescuento(montoCompra);
+        CuponDTO cuponDTO = regla.aDTO(canjeCupones.usosComprometidos(codigoNormalizado));
 
         return new ValidarCuponResponse(true, "Cupón válido", cuponDTO, descuentoAplicable);
     }
@@ -77,28 +75,14 @@ public class CuponService {
     }
 
     /**
-     * Incrementa el contador de usos de un cupón.
+     * Registra un uso del cupón en el motor de canje en memoria, sin tocar la fila del cupón.
+     * El uso queda reservado hasta que termina la transacción del pedido: se confirma con el commit
+     * y se libera con el rollback, así usosMaximos nunca se supera.
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public void incrementarUsoCupon(String codigo) {
-        Cupon cupon = cuponRepository.findByCodigo(codigo)
-                .orElseThrow(() -> new ResourceNotFoundException("Cupón", "código", codigo));
-        cupon.incrementarUso();
-        cuponRepository.save(cupon);
+        if (!canjeCupones.reservar(codigo)) {
+            throw new BadRequestException("Este cupón ha alcanzado su límite de usos");
+        }
     }
 }
-
-
-
-
-
-
-
-
-
-
-
-
-
-
-
@@ -0,0 +1,49 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Function;
+
+/**
+ * Cursor de paginación por clave (keyset): valor de la columna de orden e id de la última fila entregada.
+ * Viaja al cliente como un token opaco en Base64 URL-safe.
+ */
+record Cursor(String valor, Long id) {
+
+    private static final char SEPARADOR = '|';
+
+    String codificar() {
+        String plano = valor + SEPARADOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plano.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodifica un token; null o vacío significa primera página.
+     */
+    static Cursor decodificar(String token) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String plano = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // El id va al final: el valor puede contener el separador
+            int separador = plano.lastIndexOf(SEPARADOR);
+            return new Cursor(plano.substring(0, separador), Long.valueOf(plano.substring(separador + 1)));
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Cursor de paginación inválido");
+        }
+    }
+
+    /**
+     * Convierte el valor de la columna de orden a su tipo.
+     */
+    <T> T valor(Function<String, T> conversion) {
+        try {
+            return conversion.apply(valor);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Cursor de paginación inválido");
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.CarritoAbandonadoEvent;
+import ecommersDemo.demo.model.MarcaProceso;
+import ecommersDemo.demo.repository.CarritoRepository;
+import ecommersDemo.demo.repository.ItemCarritoRepository;
+import ecommersDemo.demo.repository.MarcaProcesoRepository;
+import ecommersDemo.demo.repository.projection.CarritoActividad;
+import ecommersDemo.demo.repository.projection.ItemCarritoResumen;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Detecta los carritos con ítems que llevan {@code umbral} sin actividad y los publica como
+ * {@link CarritoAbandonadoEvent} en el sumidero configurado, para que marketing no consulte las tablas de carritos.
+ * Avanza por fecha de actualización desde una marca de agua guardada en la base: cada carrito
+ * inactivo se lee una sola vez y nunca se recorre la tabla completa. La marca se guarda después
+ * de publicar, así que si algo falla el lote se vuelve a publicar (al menos una vez).
+ * Un carrito que vuelve a tener actividad queda detrás de la marca y se publica de nuevo si se abandona otra vez.
+ */
+@Component
+public class DetectorCarritosAbandonados {
+
+    private static final Logger log = LoggerFactory.getLogger(DetectorCarritosAbandonados.class);
+
+    static final String PROCESO = "carritos-abandonados";
+
+    // Sin marca guardada se empieza desde el primer carrito
+    private static final LocalDateTime INICIO = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String METRICA_EVENTOS = "ecommers.carritos.abandonados.eventos";
+
+    private final CarritoRepository carritoRepository;
+    private final ItemCarritoRepository itemCarritoRepository;
+    private final MarcaProcesoRepository marcaProcesoRepository;
+    private final SumideroCarritosAbandonados sumidero;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration umbral;
+    private final int tamanioLote;
+    private final int maxLotes;
+
+    private final Counter eventosPublicados;
+
+    public DetectorCarritosAbandonados(CarritoRepository carritoRepository,
+                                       ItemCarritoRepository itemCarritoRepository,
+                                       MarcaProcesoRepository marcaProcesoRepository,
+                                       SumideroCarritosAbandonados sumidero,
+                                       PlatformTransactionManager transactionManager,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${ecommers.carritos.abandonados.umbral:24h}") Duration umbral,
+                                       @Value("${ecommers.carritos.abandonados.lote:200}") int tamanioLote,
+                                       @Value("${ecommers.carritos.abandonados.max-lotes:50}") int maxLotes) {
+        this.carritoRepository = carritoRepository;
+        this.itemCarritoRepository = itemCarritoRepository;
+        this.marcaProcesoRepository = marcaProcesoRepository;
+        this.sumidero = sumidero;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.umbral = umbral;
+        this.tamanioLote = tamanioLote;
+        this.maxLotes = maxLotes;
+
+        this.eventosPublicados = Counter.builder(METRICA_EVENTOS)
+                .description("Carritos abandonados publicados en el sumidero")
+                .register(meterRegistry);
+    }
+
+    // ==================== DETECCIÓN ====================
+
+    /**
+     * Publica los carritos que cruzaron el umbral desde la última ejecución, en hasta
+     * {@code maxLotes} lotes: lo que quede se retoma en la próxima ejecución.
+     */
+    @Scheduled(fixedDelayString = "${ecommers.carritos.abandonados.intervalo-ms:300000}")
+    public synchronized void detectar() {
+        LocalDateTime hasta = LocalDateTime.now().minus(umbral);
+        try {
+            for (int i = 0; i < maxLotes; i++) {
+                if (!procesarLote(hasta)) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            // La marca quedó en el último lote publicado: se reintenta en la próxima ejecución
+            log.error("No se pudieron publicar los carritos abandonados", e);
+        }
+    }
+
+    /**
+     * Lee el lote siguiente a la marca, publica los carritos con ítems y avanza la marca
+     * (también sobre los vacíos). Devuelve si el lote vino completo y puede haber más.
+     */
+    private boolean procesarLote(LocalDateTime hasta) {
+        MarcaProceso marca = marcaProcesoRepository.findById(PROCESO)
+                .orElseGet(() -> new MarcaProceso(PROCESO, INICIO, 0L));
+        List<CarritoActividad> carritos = carritoRepository.findInactivosDesde(
+                marca.getFecha(), marca.getUltimoId(), hasta, Limit.of(tamanioLote));
+        if (carritos.isEmpty()) {
+            return false;
+        }
+
+        Map<Long, List<ItemCarritoResumen>> itemsPorCarrito = itemCarritoRepository
+                .findResumenPorCarritos(carritos.stream().map(CarritoActividad::carritoId).toList())
+                .stream()
+                .collect(Collectors.groupingBy(ItemCarritoResumen::carritoId));
+        List<CarritoAbandonadoEvent> eventos = carritos.stream()
+                .filter(carrito -> itemsPorCarrito.containsKey(carrito.carritoId()))
+                .map(carrito -> CarritoAbandonadoEvent.de(carrito, itemsPorCarrito.get(carrito.carritoId())))
+                .toList();
+        if (!eventos.isEmpty()) {
+            sumidero.publicar(eventos);
+            eventosPublicados.increment(eventos.size());
+        }
+
+        CarritoActividad ultimo = carritos.getLast();
+        marca.avanzar(ultimo.fechaActualizacion(), ultimo.carritoId());
+        transactionTemplate.executeWithoutResult(status -> marcaProcesoRepository.save(marca));
+        log.debug("Carritos abandonados: {} leídos, {} publicados", carritos.size(), eventos.size());
+        return carritos.size() == tamanioLote;
+    }
+}
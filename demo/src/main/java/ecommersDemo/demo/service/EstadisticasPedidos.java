@@ -0,0 +1,262 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.repository.PedidoRepository;
+import ecommersDemo.demo.repository.projection.PedidosPorEstado;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cantidad de pedidos por estado, en contadores en memoria.
+ * Cada creación o cambio de estado mueve una unidad entre contadores después del commit;
+ * periódicamente se reconcilian contra la base con un único GROUP BY estado.
+ * También cachea la cantidad de pedidos por usuario, para los totales del historial paginado por cursor.
+ * Un evento llega después del commit de su pedido, así que una consulta a la base puede ya incluirlo:
+ * cada consulta lee también el estado de los pedidos modificados hace poco ({@link FotoPedidos})
+ * y los eventos aplicados mientras corre quedan registrados; al guardar el resultado, bajo el mismo
+ * cerrojo que el listener, se suman solo los que la consulta no incluía.
+ */
+@Component
+public class EstadisticasPedidos {
+
+    private static final Logger log = LoggerFactory.getLogger(EstadisticasPedidos.class);
+
+    private static final int MAX_USUARIOS = 10_000;
+    // Con el cache lleno se descarta esta fracción de los usuarios, los consultados hace más tiempo
+    private static final int FRACCION_DESALOJO = 4;
+
+    // Cubre la demora entre el commit de un pedido y su evento
+    private static final Duration MARGEN = Duration.ofMinutes(5);
+
+    private final PedidoRepository pedidoRepository;
+    // El conteo y los pedidos modificados se leen de una misma foto de la base
+    private final TransactionTemplate transaccionFoto;
+
+    private final Map<EstadoPedido, AtomicLong> contadores = new EnumMap<>(EstadoPedido.class);
+    // Se carga bajo demanda; se vacía en cada reconciliación
+    private final Map<Long, PedidosUsuario> pedidosPorUsuario = new ConcurrentHashMap<>();
+
+    // Protegidos por this: eventos aplicados mientras corre alguna consulta y cuántas corren
+    private final List<PedidoEstadoCambiadoEvent> registro = new ArrayList<>();
+    private int consultasEnCurso;
+    private FotoPedidos ultimaFoto;
+
+    public EstadisticasPedidos(PedidoRepository pedidoRepository, PlatformTransactionManager transactionManager) {
+        this.pedidoRepository = pedidoRepository;
+        this.transaccionFoto = new TransactionTemplate(transactionManager);
+        this.transaccionFoto.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.transaccionFoto.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        this.transaccionFoto.setReadOnly(true);
+        for (EstadoPedido estado : EstadoPedido.values()) {
+            contadores.put(estado, new AtomicLong());
+        }
+    }
+
+    /**
+     * Cantidad de pedidos en cada estado (todos los estados, aunque estén en cero).
+     */
+    public Map<EstadoPedido, Long> contarPorEstado() {
+        Map<EstadoPedido, Long> conteos = new EnumMap<>(EstadoPedido.class);
+        contadores.forEach((estado, contador) -> conteos.put(estado, contador.get()));
+        return conteos;
+    }
+
+    /**
+     * Cantidad total de pedidos.
+     */
+    public long contarTotal() {
+        return contadores.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    /**
+     * Cantidad de pedidos en un estado.
+     */
+    public long contar(EstadoPedido estado) {
+        return contadores.get(estado).get();
+    }
+
+    /**
+     * Cantidad de pedidos de un usuario; la primera consulta de cada usuario va a la base.
+     */
+    public long contarPedidosUsuario(Long usuarioId) {
+        PedidosUsuario cargado = pedidosPorUsuario.get(usuarioId);
+        if (cargado != null) {
+            return cargado.usar();
+        }
+
+        int desde = iniciarConsulta();
+        try {
+            LocalDateTime modificadosDesde = LocalDateTime.now().minus(MARGEN);
+            PedidosUsuario leido = transaccionFoto.execute(status -> new PedidosUsuario(
+                    pedidoRepository.countByUsuarioId(usuarioId),
+                    FotoPedidos.de(pedidoRepository.findEstadosDeUsuarioModificadosDesde(usuarioId, modificadosDesde),
+                            MARGEN)));
+            synchronized (this) {
+                cargado = pedidosPorUsuario.get(usuarioId);
+                if (cargado != null) {
+                    return cargado.usar();
+                }
+                for (PedidoEstadoCambiadoEvent evento : registro.subList(desde, registro.size())) {
+                    if (esCreacionDe(evento, usuarioId) && !leido.foto.incluye(evento)) {
+                        leido.cantidad.incrementAndGet();
+                    }
+                }
+                if (pedidosPorUsuario.size() >= MAX_USUARIOS) {
+                    desalojarMenosUsados();
+                }
+                pedidosPorUsuario.put(usuarioId, leido);
+                return leido.usar();
+            }
+        } finally {
+            terminarConsulta();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public synchronized void onPedidoEstadoCambiado(PedidoEstadoCambiadoEvent evento) {
+        if (evento.estadoAnterior() == evento.estadoNuevo()) {
+            return;
+        }
+        if (consultasEnCurso > 0) {
+            registro.add(evento);
+        }
+        if (ultimaFoto == null || !ultimaFoto.incluye(evento)) {
+            mover(evento);
+        }
+        if (evento.estadoAnterior() == null) {
+            PedidosUsuario delUsuario = pedidosPorUsuario.get(evento.usuarioId());
+            if (delUsuario != null && !delUsuario.foto.incluye(evento)) {
+                delUsuario.cantidad.incrementAndGet();
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void inicializar() {
+        reconciliar();
+    }
+
+    /**
+     * Reemplaza los contadores por los valores de la base, más los eventos aplicados mientras
+     * corría la consulta que ella no incluía.
+     */
+    @Scheduled(fixedDelayString = "${ecommers.pedidos.estadisticas.reconciliacion-ms:300000}",
+            initialDelayString = "${ecommers.pedidos.estadisticas.reconciliacion-ms:300000}")
+    public void reconciliar() {
+        int desde = iniciarConsulta();
+        try {
+            LocalDateTime modificadosDesde = LocalDateTime.now().minus(MARGEN);
+            ConteoEnFoto conteo = transaccionFoto.execute(status -> new ConteoEnFoto(
+                    pedidoRepository.contarPorEstado(),
+                    FotoPedidos.de(pedidoRepository.findEstadosModificadosDesde(modificadosDesde), MARGEN)));
+
+            Map<EstadoPedido, Long> esperados = new EnumMap<>(EstadoPedido.class);
+            for (EstadoPedido estado : EstadoPedido.values()) {
+                esperados.put(estado, 0L);
+            }
+            conteo.porEstado().forEach(fila -> esperados.put(fila.estado(), fila.cantidad()));
+
+            synchronized (this) {
+                pedidosPorUsuario.clear();
+                esperados.forEach((estado, cantidad) -> {
+                    long anterior = contadores.get(estado).getAndSet(cantidad);
+                    if (anterior != cantidad) {
+                        log.info("Estadísticas de pedidos reconciliadas: {} {} -> {}", estado, anterior, cantidad);
+                    }
+                });
+                for (PedidoEstadoCambiadoEvent evento : registro.subList(desde, registro.size())) {
+                    if (!conteo.foto().incluye(evento)) {
+                        mover(evento);
+                    }
+                }
+                ultimaFoto = conteo.foto();
+            }
+        } finally {
+            terminarConsulta();
+        }
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Empieza a registrar eventos y devuelve la posición desde la que corresponden a esta consulta.
+     */
+    private synchronized int iniciarConsulta() {
+        consultasEnCurso++;
+        return registro.size();
+    }
+
+    private synchronized void terminarConsulta() {
+        if (--consultasEnCurso == 0) {
+            registro.clear();
+        }
+    }
+
+    /**
+     * Descarta la fracción de usuarios consultados hace más tiempo, así el cache lleno no se vacía
+     * entero y los usuarios activos no vuelven a ir a la base. Se ordena una vez cada varios ingresos.
+     */
+    private void desalojarMenosUsados() {
+        long[] usos = pedidosPorUsuario.values().stream().mapToLong(usuario -> usuario.ultimoUso).sorted().toArray();
+        long limite = usos[usos.length / FRACCION_DESALOJO];
+        pedidosPorUsuario.values().removeIf(usuario -> usuario.ultimoUso < limite);
+        if (pedidosPorUsuario.size() >= MAX_USUARIOS) {
+            // Usos empatados en el límite: se descarta igual lo necesario para hacer lugar
+            pedidosPorUsuario.values().removeIf(usuario -> usuario.ultimoUso <= limite);
+        }
+    }
+
+    private void mover(PedidoEstadoCambiadoEvent evento) {
+        if (evento.estadoAnterior() != null) {
+            contadores.get(evento.estadoAnterior()).decrementAndGet();
+        }
+        contadores.get(evento.estadoNuevo()).incrementAndGet();
+    }
+
+    private static boolean esCreacionDe(PedidoEstadoCambiadoEvent evento, Long usuarioId) {
+        return evento.estadoAnterior() == null && usuarioId.equals(evento.usuarioId());
+    }
+
+    private record ConteoEnFoto(List<PedidosPorEstado> porEstado, FotoPedidos foto) {
+    }
+
+    /**
+     * Pedidos de un usuario, la foto de sus pedidos recientes con la que se contaron y su última consulta.
+     */
+    private static final class PedidosUsuario {
+
+        private final AtomicLong cantidad;
+        private final FotoPedidos foto;
+        private volatile long ultimoUso;
+
+        PedidosUsuario(long cantidad, FotoPedidos foto) {
+            this.cantidad = new AtomicLong(cantidad);
+            this.foto = foto;
+            this.ultimoUso = System.nanoTime();
+        }
+
+        long usar() {
+            ultimoUso = System.nanoTime();
+            return cantidad.get();
+        }
+    }
+}
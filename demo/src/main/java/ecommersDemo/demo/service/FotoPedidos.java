@@ -0,0 +1,37 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.repository.projection.EstadoDePedido;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Estado de los pedidos modificados hace poco según una consulta que se usó para recalcular
+ * valores acumulados por eventos (rollup de ventas, contadores de pedidos).
+ * Las transiciones válidas de un pedido siempre avanzan en el orden de {@link EstadoPedido}
+ * (PENDIENTE, CONFIRMADO, ... y los finales): si la foto ya vio el estado al que lleva un evento,
+ * o uno posterior, el evento está incluido en lo recalculado.
+ * Un pedido que la foto no vio se creó después, o cambió por última vez mucho antes: su evento no está incluido.
+ * Sirve para los eventos que llegan hasta {@code margen} después de la consulta, el mismo margen
+ * con el que se eligieron los pedidos modificados.
+ */
+record FotoPedidos(Map<Long, EstadoPedido> estados, long vigenteHasta) {
+
+    static FotoPedidos de(List<EstadoDePedido> modificados, Duration margen) {
+        return new FotoPedidos(
+                modificados.stream().collect(Collectors.toMap(EstadoDePedido::pedidoId, EstadoDePedido::estado)),
+                System.nanoTime() + margen.toNanos());
+    }
+
+    boolean incluye(PedidoEstadoCambiadoEvent evento) {
+        if (System.nanoTime() - vigenteHasta > 0) {
+            return false;
+        }
+        EstadoPedido visto = estados.get(evento.pedidoId());
+        return visto != null && visto.ordinal() >= evento.estadoNuevo().ordinal();
+    }
+}
@@ -0,0 +1,172 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.ProductoDTO;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.regex.Pattern;
+
+/**
+ * Índice invertido en memoria para la búsqueda de productos.
+ * Indexa nombre, descripción, marca, material y categoría con plegado de acentos;
+ * el último término de la consulta se busca por prefijo (autocompletado).
+ * Las escrituras las serializa CatalogoCache; las lecturas pueden ser concurrentes.
+ */
+public final class IndiceBusqueda {
+
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARADORES = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "de", "del", "la", "las", "el", "los", "y", "o", "en", "con", "para", "por", "un", "una", "a");
+
+    // Peso de cada campo en el ranking
+    private static final double PESO_NOMBRE = 5.0;
+    private static final double PESO_MARCA = 3.0;
+    private static final double PESO_CATEGORIA = 3.0;
+    private static final double PESO_MATERIAL = 2.0;
+    private static final double PESO_DESCRIPCION = 1.0;
+
+    // Un término que coincide solo por prefijo puntúa menos que uno exacto
+    private static final double FACTOR_PREFIJO = 0.5;
+
+    // término -> (productoId -> peso)
+    private final ConcurrentNavigableMap<String, Map<Long, Double>> terminos = new ConcurrentSkipListMap<>();
+    // productoId -> términos indexados (para poder desindexar)
+    private final Map<Long, Set<String>> terminosPorProducto = new ConcurrentHashMap<>();
+
+    public static IndiceBusqueda de(Collection<ProductoDTO> productos) {
+        IndiceBusqueda indice = new IndiceBusqueda();
+        productos.forEach(indice::indexar);
+        return indice;
+    }
+
+    // ==================== ESCRITURA ====================
+
+    /**
+     * Indexa (o reindexa) un producto.
+     */
+    public void indexar(ProductoDTO producto) {
+        Map<String, Double> pesos = new HashMap<>();
+        acumular(pesos, producto.getNombre(), PESO_NOMBRE);
+        acumular(pesos, producto.getMarca(), PESO_MARCA);
+        acumular(pesos, producto.getCategoriaNombre(), PESO_CATEGORIA);
+        acumular(pesos, producto.getMaterial(), PESO_MATERIAL);
+        acumular(pesos, producto.getDescripcion(), PESO_DESCRIPCION);
+
+        Long id = producto.getId();
+        // Primero se agregan los términos nuevos y después se quitan los que ya no aplican,
+        // así una lectura concurrente nunca deja de encontrar el producto a mitad de la actualización
+        pesos.forEach((termino, peso) ->
+                terminos.computeIfAbsent(termino, t -> new ConcurrentHashMap<>()).put(id, peso));
+
+        Set<String> anteriores = terminosPorProducto.put(id, Set.copyOf(pesos.keySet()));
+        if (anteriores != null) {
+            anteriores.stream()
+                    .filter(termino -> !pesos.containsKey(termino))
+                    .forEach(termino -> quitarPosting(termino, id));
+        }
+    }
+
+    /**
+     * Quita un producto del índice.
+     */
+    public void remover(Long productoId) {
+        Set<String> anteriores = terminosPorProducto.remove(productoId);
+        if (anteriores != null) {
+            anteriores.forEach(termino -> quitarPosting(termino, productoId));
+        }
+    }
+
+    // ==================== CONSULTA ====================
+
+    /**
+     * Devuelve los productos que contienen todos los términos de la consulta con su puntaje.
+     * El mapa resultante está ordenado por relevancia descendente.
+     */
+    public Map<Long, Double> buscar(String consulta) {
+        List<String> tokens = tokenizar(consulta);
+        if (tokens.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, Double> acumulado = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            boolean ultimo = i == tokens.size() - 1;
+            Map<Long, Double> coincidencias = ultimo ? buscarPorPrefijo(tokens.get(i)) : buscarExacto(tokens.get(i));
+            if (acumulado == null) {
+                acumulado = coincidencias;
+            } else {
+                acumulado.keySet().retainAll(coincidencias.keySet());
+                acumulado.replaceAll((id, puntaje) -> puntaje + coincidencias.get(id));
+            }
+            if (acumulado.isEmpty()) {
+                return Map.of();
+            }
+        }
+
+        Map<Long, Double> ordenado = new LinkedHashMap<>();
+        acumulado.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                        .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                .forEachOrdered(e -> ordenado.put(e.getKey(), e.getValue()));
+        return ordenado;
+    }
+
+    public int tamanio() {
+        return terminosPorProducto.size();
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Normaliza un texto: minúsculas, sin acentos, separado en términos y sin palabras vacías.
+     */
+    static List<String> tokenizar(String texto) {
+        if (texto == null || texto.isBlank()) {
+            return List.of();
+        }
+        String plegado = MARCAS_DIACRITICAS
+                .matcher(Normalizer.normalize(texto, Normalizer.Form.NFD))
+                .replaceAll("")
+                .toLowerCase(Locale.ROOT);
+        List<String> tokens = new ArrayList<>();
+        for (String token : SEPARADORES.split(plegado)) {
+            if (!token.isEmpty() && !PALABRAS_VACIAS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+
+    private void acumular(Map<String, Double> pesos, String texto, double peso) {
+        for (String token : tokenizar(texto)) {
+            pesos.merge(token, peso, Double::sum);
+        }
+    }
+
+    private Map<Long, Double> buscarExacto(String token) {
+        Map<Long, Double> postings = terminos.get(token);
+        return postings != null ? new HashMap<>(postings) : new HashMap<>();
+    }
+
+    private Map<Long, Double> buscarPorPrefijo(String prefijo) {
+        Map<Long, Double> resultado = new HashMap<>();
+        terminos.subMap(prefijo, true, prefijo + Character.MAX_VALUE, false).forEach((termino, postings) -> {
+            double factor = termino.equals(prefijo) ? 1.0 : FACTOR_PREFIJO;
+            // Por producto se queda con la mejor coincidencia del prefijo
+            postings.forEach((id, peso) -> resultado.merge(id, peso * factor, Math::max));
+        });
+        return resultado;
+    }
+
+    private void quitarPosting(String termino, Long productoId) {
+        terminos.computeIfPresent(termino, (t, postings) -> {
+            postings.remove(productoId);
+            return postings.isEmpty() ? null : postings;
+        });
+    }
+}
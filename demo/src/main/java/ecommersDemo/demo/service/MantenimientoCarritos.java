@@ -0,0 +1,137 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.repository.CarritoRepository;
+import ecommersDemo.demo.repository.ItemCarritoRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Borra de la base los carritos anónimos vencidos (fechaExpiracion pasada) y sus ítems.
+ * Trabaja por lotes acotados, cada uno en su propia transacción corta (primero los ítems,
+ * después los carritos), y entre lote y lote hace una pausa: nunca retiene muchos bloqueos
+ * ni satura la base en horas pico.
+ * Cada cambio de ítems renueva la expiración del carrito (Carrito.registrarActividad), así que
+ * solo vence un carrito sin uso. Los de usuarios registrados no se borran aunque venzan: son el
+ * carrito guardado de la cuenta, que el usuario espera encontrar la próxima vez que inicie sesión.
+ */
+@Component
+public class MantenimientoCarritos {
+
+    private static final Logger log = LoggerFactory.getLogger(MantenimientoCarritos.class);
+
+    private static final String METRICA_FILAS = "ecommers.carritos.limpieza.filas";
+    private static final String METRICA_LOTE = "ecommers.carritos.limpieza.lote";
+    private static final String METRICA_PENDIENTES = "ecommers.carritos.limpieza.pendientes";
+
+    private final CarritoRepository carritoRepository;
+    private final ItemCarritoRepository itemCarritoRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int tamanioLote;
+    private final Duration intervalo;
+
+    private final Counter carritosBorrados;
+    private final Counter itemsBorrados;
+    private final Timer tiempoLote;
+    private final AtomicLong pendientes = new AtomicLong();
+
+    // Mientras quedan vencidos se borra un lote por pausa; con la base al día se revisa cada intervalo
+    private volatile long proximaRevision;
+
+    public MantenimientoCarritos(CarritoRepository carritoRepository,
+                                 ItemCarritoRepository itemCarritoRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ecommers.carritos.limpieza.lote:500}") int tamanioLote,
+                                 @Value("${ecommers.carritos.limpieza.intervalo:10m}") Duration intervalo) {
+        this.carritoRepository = carritoRepository;
+        this.itemCarritoRepository = itemCarritoRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.tamanioLote = tamanioLote;
+        this.intervalo = intervalo;
+        this.proximaRevision = System.nanoTime();
+
+        this.carritosBorrados = filas(meterRegistry, "carritos");
+        this.itemsBorrados = filas(meterRegistry, "items_carrito");
+        this.tiempoLote = Timer.builder(METRICA_LOTE)
+                .description("Duración de cada lote de borrado de carritos vencidos")
+                .register(meterRegistry);
+        Gauge.builder(METRICA_PENDIENTES, pendientes, AtomicLong::get)
+                .description("Carritos anónimos vencidos que quedan por borrar")
+                .register(meterRegistry);
+    }
+
+    // ==================== LIMPIEZA ====================
+
+    /**
+     * Borra un lote de carritos vencidos. La demora entre ejecuciones es la pausa entre lotes,
+     * que limita el ritmo de borrado.
+     */
+    @Scheduled(fixedDelayString = "${ecommers.carritos.limpieza.pausa-ms:1000}")
+    public void limpiar() {
+        if (System.nanoTime() - proximaRevision < 0) {
+            return;
+        }
+
+        try {
+            Lote lote = tiempoLote.record(this::borrarLote);
+            itemsBorrados.increment(lote.items());
+            carritosBorrados.increment(lote.carritos());
+            if (lote.leidos() < tamanioLote) {
+                pendientes.set(0);
+                proximaRevision = System.nanoTime() + intervalo.toNanos();
+            } else {
+                pendientes.set(carritoRepository.countByUsuarioIsNullAndFechaExpiracionBefore(LocalDateTime.now()));
+            }
+        } catch (RuntimeException e) {
+            // Se reintenta en la próxima ejecución
+            log.error("No se pudo borrar el lote de carritos vencidos", e);
+        }
+    }
+
+    /**
+     * Borra hasta {@code tamanioLote} carritos vencidos en una transacción.
+     */
+    private Lote borrarLote() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime ahora = LocalDateTime.now();
+            List<Long> ids = carritoRepository.findIdsAnonimosExpirados(ahora, Limit.of(tamanioLote));
+            if (ids.isEmpty()) {
+                return new Lote(0, 0, 0);
+            }
+
+            // Se repite la condición de vencimiento: un carrito renovado desde la lectura se conserva
+            int items = itemCarritoRepository.eliminarItemsDeCarritosExpirados(ids, ahora);
+            int carritos = carritoRepository.eliminarExpiradosPorIds(ids, ahora);
+            log.debug("Carritos vencidos borrados: {} carritos, {} ítems", carritos, items);
+            return new Lote(ids.size(), items, carritos);
+        });
+    }
+
+    private static Counter filas(MeterRegistry meterRegistry, String tabla) {
+        return Counter.builder(METRICA_FILAS)
+                .description("Filas borradas por la limpieza de carritos vencidos")
+                .tag("tabla", tabla)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Resultado de un lote: carritos vencidos leídos y filas borradas.
+     */
+    private record Lote(int leidos, int items, int carritos) {
+    }
+}
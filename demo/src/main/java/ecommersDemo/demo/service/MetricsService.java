@@ -1,53 +1,91 @@
 package ecommersDemo.demo.service;
 
-import ecommersDemo.demo.model.Pedido;
 import ecommersDemo.demo.model.Pedido.EstadoPedido;
-import ecommersDemo.demo.model.Usuario;
 import ecommersDemo.demo.repository.*;
+import ecommersDemo.demo.repository.projection.ResumenVentas;
+import ecommersDemo.demo.repository.projection.VentasCategoria;
+import ecommersDemo.demo.repository.projection.VentasDia;
+import ecommersDemo.demo.repository.projection.VentasEstado;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
  * Servicio para calcular métricas avanzadas del dashboard admin.
  * Similar a TiendaNube/Shopify.
+ * Los resultados se sirven desde {@link CacheMetricas}; cada cálculo corre en su propia
+ * transacción de solo lectura, así un acierto de cache no toma conexión del pool.
  */
 @Service
 @Transactional(readOnly = true)
 public class MetricsService {
 
-    private final PedidoRepository pedidoRepository;
-    private final DetallePedidoRepository detallePedidoRepository;
-    private final UsuarioRepository usuarioRepository;
+    private static final Logger log = LoggerFactory.getLogger(MetricsService.class);
+
+    private static final String METRICA_SECCION = "ecommers.metricas.resumen.seccion";
+
+    private final VentaDiariaRepository ventaDiariaRepository;
+    private final VentaDiariaCategoriaRepository ventaDiariaCategoriaRepository;
+    private final TopVendidos topVendidos;
+    private final CacheMetricas cacheMetricas;
+    private final AnaliticaClientes analiticaClientes;
     @SuppressWarnings("unused")
     private final ProductoRepository productoRepository;
     @SuppressWarnings("unused")
     private final CategoriaRepository categoriaRepository;
+    private final MeterRegistry meterRegistry;
+    private final Duration timeoutSeccion;
+
+    private final ExecutorService ejecutorSecciones = Executors.newVirtualThreadPerTaskExecutor();
 
     public MetricsService(
-            PedidoRepository pedidoRepository,
-            DetallePedidoRepository detallePedidoRepository,
-            UsuarioRepository usuarioRepository,
+            VentaDiariaRepository ventaDiariaRepository,
+            VentaDiariaCategoriaRepository ventaDiariaCategoriaRepository,
+            TopVendidos topVendidos,
+            CacheMetricas cacheMetricas,
+            AnaliticaClientes analiticaClientes,
             ProductoRepository productoRepository,
-            CategoriaRepository categoriaRepository) {
-        this.pedidoRepository = pedidoRepository;
-        this.detallePedidoRepository = detallePedidoRepository;
-        this.usuarioRepository = usuarioRepository;
+            CategoriaRepository categoriaRepository,
+            MeterRegistry meterRegistry,
+            @Value("${ecommers.metricas.resumen.timeout-seccion:3s}") Duration timeoutSeccion) {
+        this.ventaDiariaRepository = ventaDiariaRepository;
+        this.ventaDiariaCategoriaRepository = ventaDiariaCategoriaRepository;
+        this.topVendidos = topVendidos;
+        this.cacheMetricas = cacheMetricas;
+        this.analiticaClientes = analiticaClientes;
         this.productoRepository = productoRepository;
         this.categoriaRepository = categoriaRepository;
+        this.meterRegistry = meterRegistry;
+        this.timeoutSeccion = timeoutSeccion;
     }
 
     /**
      * Obtiene métricas de ventas por período con comparativa.
+     * Se leen del rollup diario: el costo depende de los días del período, no de los pedidos.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Map<String, Object> obtenerMetricasVentas(String periodo) {
+        return cacheMetricas.obtener("ventas", () -> calcularMetricasVentas(periodo), periodo);
+    }
+
+    private Map<String, Object> calcularMetricasVentas(String periodo) {
         Map<String, Object> metricas = new HashMap<>();
 
         // Calcular fechas según período
@@ -55,14 +93,20 @@ public class MetricsService {
         LocalDateTime[] fechasAnterior = calcularFechasPeriodo(periodo, true);
 
         // Métricas del período actual
-        BigDecimal ventasActual = pedidoRepository.calcularTotalVentas(fechasActual[0], fechasActual[1]);
-        long pedidosActual = contarPedidosCompletados(fechasActual[0], fechasActual[1]);
-        BigDecimal ticketPromedioActual = calcularTicketPromedio(fechasActual[0], fechasActual[1]);
+        List<VentasEstado> porEstadoActual = ventaDiariaRepository.sumarPorEstado(
+                fechasActual[0].toLocalDate(), fechasActual[1].toLocalDate());
+        BigDecimal ventasActual = sumarVentas(porEstadoActual);
+        ResumenVentas resumenActual = resumirCompletados(porEstadoActual);
+        long pedidosActual = resumenActual.pedidos();
+        BigDecimal ticketPromedioActual = resumenActual.ticketPromedio();
 
         // Métricas del período anterior
-        BigDecimal ventasAnterior = pedidoRepository.calcularTotalVentas(fechasAnterior[0], fechasAnterior[1]);
-        long pedidosAnterior = contarPedidosCompletados(fechasAnterior[0], fechasAnterior[1]);
-        BigDecimal ticketPromedioAnterior = calcularTicketPromedio(fechasAnterior[0], fechasAnterior[1]);
+        List<VentasEstado> porEstadoAnterior = ventaDiariaRepository.sumarPorEstado(
+                fechasAnterior[0].toLocalDate(), fechasAnterior[1].toLocalDate());
+        BigDecimal ventasAnterior = sumarVentas(porEstadoAnterior);
+        ResumenVentas resumenAnterior = resumirCompletados(porEstadoAnterior);
+        long pedidosAnterior = resumenAnterior.pedidos();
+        BigDecimal ticketPromedioAnterior = resumenAnterior.ticketPromedio();
 
         // Calcular cambios porcentuales
         double cambioVentas = calcularCambioPorcentual(ventasActual, ventasAnterior);
@@ -88,80 +132,129 @@ public class MetricsService {
     /**
      * Obtiene datos de ventas en el tiempo para gráficos.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Map<String, Object> obtenerVentasEnTiempo(int dias) {
+        return cacheMetricas.obtener("ventasTiempo", () -> calcularVentasEnTiempo(dias), dias);
+    }
+
+    private Map<String, Object> calcularVentasEnTiempo(int dias) {
         Map<String, Object> datos = new HashMap<>();
         LocalDateTime fechaFin = LocalDateTime.now();
         LocalDateTime fechaInicio = fechaFin.minusDays(dias);
 
-        List<Pedido> pedidos = pedidoRepository.findPedidosPorRangoFecha(fechaInicio, fechaFin);
-
-        // Agrupar por día
-        Map<LocalDate, BigDecimal> ventasPorDia = pedidos.stream()
-                .filter(p -> !p.getEstado().equals(EstadoPedido.CANCELADO))
-                .collect(Collectors.groupingBy(
-                        p -> p.getFechaPedido().toLocalDate(),
-                        Collectors.reducing(
-                                BigDecimal.ZERO,
-                                Pedido::getTotal,
-                                BigDecimal::add)));
+        // Una fila por día con pedidos; los días sin ventas se completan con cero
+        Map<LocalDate, VentasDia> ventasPorDia = ventaDiariaRepository
+                .sumarPorDia(fechaInicio.toLocalDate(), fechaFin.toLocalDate())
+                .stream()
+                .collect(Collectors.toMap(VentasDia::fecha, v -> v));
 
         // Crear lista ordenada de fechas
         List<Map<String, Object>> puntos = new ArrayList<>();
+        BigDecimal totalVentas = BigDecimal.ZERO;
+        long totalPedidos = 0;
         LocalDate fecha = fechaInicio.toLocalDate();
         while (!fecha.isAfter(fechaFin.toLocalDate())) {
+            VentasDia dia = ventasPorDia.get(fecha);
+            BigDecimal ventas = dia != null ? dia.total() : BigDecimal.ZERO;
+            long pedidos = dia != null ? dia.pedidos() : 0;
+
             Map<String, Object> punto = new HashMap<>();
             punto.put("fecha", fecha.toString());
-            punto.put("ventas", ventasPorDia.getOrDefault(fecha, BigDecimal.ZERO));
-            punto.put("pedidos", contarPedidosPorDia(pedidos, fecha));
+            punto.put("ventas", ventas);
+            punto.put("pedidos", pedidos);
             puntos.add(punto);
+
+            totalVentas = totalVentas.add(ventas);
+            totalPedidos += pedidos;
             fecha = fecha.plusDays(1);
         }
 
         datos.put("puntos", puntos);
-        datos.put("totalVentas", ventasPorDia.values().stream()
-                .reduce(BigDecimal.ZERO, BigDecimal::add));
-        datos.put("totalPedidos", pedidos.stream()
-                .filter(p -> !p.getEstado().equals(EstadoPedido.CANCELADO))
-                .count());
+        datos.put("totalVentas", totalVentas);
+        datos.put("totalPedidos", totalPedidos);
 
         return datos;
     }
 
     /**
-     * Obtiene los productos más vendidos.
+     * Obtiene los productos más vendidos de los últimos días, por cantidad y por ingresos.
+     * Los sketches en memoria eligen los candidatos y el rollup diario da sus cifras: no recorre el historial de pedidos.
      */
-    public Map<String, Object> obtenerProductosMasVendidos(int limite) {
-        Map<String, Object> resultado = new HashMap<>();
-
-        // Productos más vendidos por cantidad
-        List<Object[]> productosPorCantidad = detallePedidoRepository.findProductosMasVendidos();
-        List<Map<String, Object>> topPorCantidad = productosPorCantidad.stream()
-                .limit(limite)
-                .map(arr -> {
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("nombre", arr[0]);
-                    item.put("cantidadVendida", arr[1]);
-                    return item;
-                })
-                .collect(Collectors.toList());
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Map<String, Object> obtenerProductosMasVendidos(int limite, int dias) {
+        return cacheMetricas.obtener("productosMasVendidos", () -> calcularProductosMasVendidos(limite, dias), limite, dias);
+    }
 
-        resultado.put("porCantidad", topPorCantidad);
+    private Map<String, Object> calcularProductosMasVendidos(int limite, int dias) {
+        Map<String, Object> resultado = new HashMap<>();
 
-        // TODO: Agregar productos más vendidos por ingresos
-        // Esto requeriría una query adicional
+        topVendidos.top(dias, limite).forEach((criterio, productos) ->
+                resultado.put(criterio, productos.stream()
+                        .map(producto -> {
+                            Map<String, Object> item = new HashMap<>();
+                            item.put("productoId", producto.productoId());
+                            item.put("nombre", producto.nombre());
+                            item.put("cantidadVendida", producto.unidades());
+                            item.put("ingresos", producto.monto());
+                            return item;
+                        })
+                        .collect(Collectors.toList())));
+        resultado.put("dias", Math.min(Math.max(dias, 1), TopVendidos.DIAS_RETENCION));
+        resultado.put("limite", Math.min(Math.max(limite, 1), TopVendidos.LIMITE_MAXIMO));
 
         return resultado;
     }
 
     /**
-     * Obtiene métricas por categoría.
+     * Obtiene métricas por categoría (ingresos, unidades, pedidos y ticket promedio) con comparativa
+     * contra el período anterior. Se leen del rollup diario por categoría, como el resto del dashboard.
      */
-    public Map<String, Object> obtenerMetricasCategorias() {
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public Map<String, Object> obtenerMetricasCategorias(String periodo) {
+        return cacheMetricas.obtener("categorias", () -> calcularMetricasCategorias(periodo), periodo);
+    }
+
+    private Map<String, Object> calcularMetricasCategorias(String periodo) {
         Map<String, Object> resultado = new HashMap<>();
 
-        // Por ahora retornamos estructura básica
-        // TODO: Implementar cálculo de ventas por categoría
-        resultado.put("categorias", new ArrayList<>());
+        LocalDateTime[] fechasActual = calcularFechasPeriodo(periodo, false);
+        LocalDateTime[] fechasAnterior = calcularFechasPeriodo(periodo, true);
+
+        List<VentasCategoria> actuales = ventaDiariaCategoriaRepository.sumarPorCategoria(
+                fechasActual[0].toLocalDate(), fechasActual[1].toLocalDate());
+        Map<Long, VentasCategoria> anteriores = ventaDiariaCategoriaRepository.sumarPorCategoria(
+                        fechasAnterior[0].toLocalDate(), fechasAnterior[1].toLocalDate())
+                .stream()
+                .collect(Collectors.toMap(VentasCategoria::categoriaId, v -> v));
+
+        List<Map<String, Object>> categorias = actuales.stream()
+                .sorted(Comparator.comparing(VentasCategoria::ingresos).reversed())
+                .map(actual -> {
+                    VentasCategoria anterior = anteriores.getOrDefault(actual.categoriaId(),
+                            new VentasCategoria(actual.categoriaId(), actual.nombre(), 0, 0, BigDecimal.ZERO));
+
+                    Map<String, Object> item = new HashMap<>();
+                    item.put("categoriaId", actual.categoriaId());
+                    item.put("nombre", actual.nombre() != null ? actual.nombre() : "Sin categoría");
+                    item.put("ingresos", actual.ingresos());
+                    item.put("ingresosAnterior", anterior.ingresos());
+                    item.put("cambioIngresos", calcularCambioPorcentual(actual.ingresos(), anterior.ingresos()));
+                    item.put("unidades", actual.unidades());
+                    item.put("unidadesAnterior", anterior.unidades());
+                    item.put("pedidos", actual.pedidos());
+                    item.put("pedidosAnterior", anterior.pedidos());
+                    item.put("cambioPedidos", calcularCambioPorcentual(
+                            BigDecimal.valueOf(actual.pedidos()),
+                            BigDecimal.valueOf(anterior.pedidos())));
+                    item.put("ticketPromedio", actual.ticketPromedio());
+                    item.put("ticketPromedioAnterior", anterior.ticketPromedio());
+                    item.put("cambioTicket", calcularCambioPorcentual(actual.ticketPromedio(), anterior.ticketPromedio()));
+                    return item;
+                })
+                .collect(Collectors.toList());
+
+        resultado.put("categorias", categorias);
+        resultado.put("periodo", periodo);
 
         return resultado;
     }
@@ -169,20 +262,22 @@ public class MetricsService {
     /**
      * Obtiene métricas de clientes.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Map<String, Object> obtenerMetricasClientes(String periodo) {
+        return cacheMetricas.obtener("clientes", () -> calcularMetricasClientes(periodo), periodo);
+    }
+
+    private Map<String, Object> calcularMetricasClientes(String periodo) {
         Map<String, Object> metricas = new HashMap<>();
 
         LocalDateTime[] fechas = calcularFechasPeriodo(periodo, false);
 
-        // Contar clientes únicos que hicieron pedidos en el período
-        long clientesConPedidos = pedidoRepository.findPedidosPorRangoFecha(fechas[0], fechas[1])
-                .stream()
-                .map(p -> p.getUsuario().getId())
-                .distinct()
-                .count();
+        // Clientes únicos que hicieron pedidos en el período (estimación HyperLogLog, error ~1,6%)
+        long clientesConPedidos = analiticaClientes.contarCompradoresUnicos(
+                fechas[0].toLocalDate(), fechas[1].toLocalDate());
 
         // Total de clientes registrados
-        long totalClientes = usuarioRepository.findByRol(Usuario.Rol.CLIENTE).size();
+        long totalClientes = analiticaClientes.contarClientesRegistrados();
 
         metricas.put("clientesConPedidos", clientesConPedidos);
         metricas.put("totalClientes", totalClientes);
@@ -193,19 +288,54 @@ public class MetricsService {
 
     /**
      * Obtiene un resumen completo de todas las métricas.
+     * Las secciones se calculan en paralelo en hilos virtuales, cada una en su propia transacción
+     * de solo lectura. Una sección que no termina a tiempo queda afuera y el resumen se marca
+     * como parcial; su cálculo sigue y deja el resultado en cache para el próximo refresco.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public Map<String, Object> obtenerResumenCompleto() {
-        Map<String, Object> resumen = new HashMap<>();
+        Map<String, Supplier<Map<String, Object>>> secciones = new LinkedHashMap<>();
+        secciones.put("ventas", () -> obtenerMetricasVentas("mes"));
+        secciones.put("ventasTiempo", () -> obtenerVentasEnTiempo(30));
+        secciones.put("productosMasVendidos", () -> obtenerProductosMasVendidos(10, 30));
+        secciones.put("categorias", () -> obtenerMetricasCategorias("mes"));
+        secciones.put("clientes", () -> obtenerMetricasClientes("mes"));
+
+        long limite = System.nanoTime() + timeoutSeccion.toNanos();
+        Map<String, Long> tiemposMs = new ConcurrentHashMap<>();
+        Map<String, CompletableFuture<Map<String, Object>>> futuros = new LinkedHashMap<>();
+        secciones.forEach((nombre, seccion) -> futuros.put(nombre,
+                CompletableFuture.supplyAsync(() -> medirSeccion(nombre, seccion, tiemposMs), ejecutorSecciones)));
 
-        resumen.put("ventas", obtenerMetricasVentas("mes"));
-        resumen.put("ventasTiempo", obtenerVentasEnTiempo(30));
-        resumen.put("productosMasVendidos", obtenerProductosMasVendidos(10));
-        resumen.put("categorias", obtenerMetricasCategorias());
-        resumen.put("clientes", obtenerMetricasClientes("mes"));
+        Map<String, Object> resumen = new HashMap<>();
+        List<String> incompletas = new ArrayList<>();
+        futuros.forEach((nombre, futuro) -> {
+            try {
+                resumen.put(nombre, futuro.get(Math.max(0, limite - System.nanoTime()), TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                log.warn("La sección {} del resumen no terminó en {}", nombre, timeoutSeccion);
+                incompletas.add(nombre);
+            } catch (ExecutionException e) {
+                log.error("Error calculando la sección {} del resumen", nombre, e.getCause());
+                incompletas.add(nombre);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                incompletas.add(nombre);
+            }
+        });
+
+        resumen.put("parcial", !incompletas.isEmpty());
+        resumen.put("seccionesIncompletas", incompletas);
+        resumen.put("tiemposMs", new HashMap<>(tiemposMs));
 
         return resumen;
     }
 
+    @PreDestroy
+    public void detener() {
+        ejecutorSecciones.shutdownNow();
+    }
+
     // ==================== MÉTODOS AUXILIARES ====================
 
     private LocalDateTime[] calcularFechasPeriodo(String periodo, boolean anterior) {
@@ -246,29 +376,34 @@ public class MetricsService {
         return new LocalDateTime[] { inicio, fin };
     }
 
-    private long contarPedidosCompletados(LocalDateTime inicio, LocalDateTime fin) {
-        return pedidoRepository.findPedidosPorRangoFecha(inicio, fin)
-                .stream()
-                .filter(p -> !p.getEstado().equals(EstadoPedido.CANCELADO))
-                .count();
+    private BigDecimal sumarVentas(List<VentasEstado> porEstado) {
+        return porEstado.stream()
+                .filter(v -> v.estado() != EstadoPedido.CANCELADO && v.estado() != EstadoPedido.DEVUELTO)
+                .map(VentasEstado::total)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
-    private BigDecimal calcularTicketPromedio(LocalDateTime inicio, LocalDateTime fin) {
-        List<Pedido> pedidos = pedidoRepository.findPedidosPorRangoFecha(inicio, fin);
-        long pedidosCompletados = pedidos.stream()
-                .filter(p -> !p.getEstado().equals(EstadoPedido.CANCELADO))
-                .count();
-
-        if (pedidosCompletados == 0) {
-            return BigDecimal.ZERO;
+    private ResumenVentas resumirCompletados(List<VentasEstado> porEstado) {
+        long pedidos = 0;
+        BigDecimal total = BigDecimal.ZERO;
+        for (VentasEstado ventas : porEstado) {
+            if (ventas.estado() != EstadoPedido.CANCELADO) {
+                pedidos += ventas.pedidos();
+                total = total.add(ventas.total());
+            }
         }
+        return new ResumenVentas(pedidos, total);
+    }
 
-        BigDecimal total = pedidos.stream()
-                .filter(p -> !p.getEstado().equals(EstadoPedido.CANCELADO))
-                .map(Pedido::getTotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return total.divide(BigDecimal.valueOf(pedidosCompletados), 2, RoundingMode.HALF_UP);
+    private Map<String, Object> medirSeccion(String nombre, Supplier<Map<String, Object>> seccion,
+                                             Map<String, Long> tiemposMs) {
+        Timer.Sample muestra = Timer.start(meterRegistry);
+        try {
+            return seccion.get();
+        } finally {
+            long nanos = muestra.stop(Timer.builder(METRICA_SECCION).tag("seccion", nombre).register(meterRegistry));
+            tiemposMs.put(nombre, TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
     }
 
     private double calcularCambioPorcentual(BigDecimal actual, BigDecimal anterior) {
@@ -280,11 +415,4 @@ public class MetricsService {
                 .multiply(BigDecimal.valueOf(100))
                 .doubleValue();
     }
-
-    private long contarPedidosPorDia(List<Pedido> pedidos, LocalDate fecha) {
-        return pedidos.stream()
-                .filter(p -> p.getFechaPedido().toLocalDate().equals(fecha))
-                .filter(p -> !p.getEstado().equals(EstadoPedido.CANCELADO))
-                .count();
-    }
 }
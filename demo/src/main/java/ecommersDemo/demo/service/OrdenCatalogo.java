@@ -0,0 +1,102 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.ProductoDTO;
+import ecommersDemo.demo.exception.BadRequestException;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Orden del listado público paginado por cursor: una columna del catálogo y el id como desempate,
+ * así cada producto tiene una posición única y el cursor (valor, id) la identifica.
+ */
+record OrdenCatalogo(String propiedad, boolean descendente) {
+
+    static final OrdenCatalogo POR_DEFECTO = new OrdenCatalogo("fechaCreacion", true);
+
+    private static final Map<String, Campo<?>> CAMPOS = Map.of(
+            "fechaCreacion", new Campo<>(ProductoDTO::getFechaCreacion, LocalDateTime::parse, Comparator.<LocalDateTime>naturalOrder()),
+            "precio", new Campo<>(ProductoDTO::getPrecio, BigDecimal::new, Comparator.<BigDecimal>naturalOrder()),
+            "precioFinal", new Campo<>(ProductoDTO::getPrecioFinal, BigDecimal::new, Comparator.<BigDecimal>naturalOrder()),
+            "nombre", new Campo<>(ProductoDTO::getNombre, Function.identity(), String.CASE_INSENSITIVE_ORDER));
+
+    /**
+     * Interpreta un orden con el formato de Spring Data ("propiedad" o "propiedad,asc|desc").
+     */
+    static OrdenCatalogo de(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return POR_DEFECTO;
+        }
+        String[] partes = sort.split(",");
+        String propiedad = partes[0].trim();
+        if (!CAMPOS.containsKey(propiedad)) {
+            throw new BadRequestException("No se puede ordenar el catálogo por: " + propiedad);
+        }
+        boolean descendente = partes.length > 1 && partes[1].trim().equalsIgnoreCase("desc");
+        return new OrdenCatalogo(propiedad, descendente);
+    }
+
+    /**
+     * Orden de una página por offset, si es uno de los del catálogo: sin orden, el por defecto;
+     * una sola propiedad conocida, esa. Un orden compuesto o por otra propiedad no tiene equivalente.
+     */
+    static Optional<OrdenCatalogo> de(Sort sort) {
+        if (sort.isUnsorted()) {
+            return Optional.of(POR_DEFECTO);
+        }
+        List<Sort.Order> ordenes = sort.toList();
+        if (ordenes.size() != 1 || !CAMPOS.containsKey(ordenes.get(0).getProperty())) {
+            return Optional.empty();
+        }
+        return Optional.of(new OrdenCatalogo(ordenes.get(0).getProperty(), ordenes.get(0).isDescending()));
+    }
+
+    Comparator<ProductoDTO> comparador() {
+        return campo().comparador(descendente);
+    }
+
+    /**
+     * Cursor que apunta justo después del producto dado.
+     */
+    Cursor cursorDe(ProductoDTO producto) {
+        Object valor = campo().valor().apply(producto);
+        return new Cursor(valor != null ? valor.toString() : "", producto.getId());
+    }
+
+    /**
+     * Compara un producto con la posición del cursor: positivo si el producto va después.
+     */
+    int compararConCursor(ProductoDTO producto, Cursor cursor) {
+        return campo().compararConCursor(producto, cursor, descendente);
+    }
+
+    private Campo<?> campo() {
+        return CAMPOS.get(propiedad);
+    }
+
+    private record Campo<T>(Function<ProductoDTO, T> valor, Function<String, T> conversion, Comparator<T> orden) {
+
+        Comparator<T> ordenValores(boolean descendente) {
+            Comparator<T> valores = Comparator.nullsLast(orden);
+            return descendente ? valores.reversed() : valores;
+        }
+
+        Comparator<ProductoDTO> comparador(boolean descendente) {
+            return Comparator.comparing(valor, ordenValores(descendente))
+                    .thenComparing(ProductoDTO::getId, Comparator.reverseOrder());
+        }
+
+        int compararConCursor(ProductoDTO producto, Cursor cursor, boolean descendente) {
+            // Un valor vacío en el cursor representa null
+            T valorCursor = cursor.valor(v -> v.isEmpty() ? null : conversion.apply(v));
+            int comparacion = ordenValores(descendente).compare(valor.apply(producto), valorCursor);
+            return comparacion != 0 ? comparacion : cursor.id().compareTo(producto.getId());
+        }
+    }
+}
@@ -3,6 +3,9 @@ package ecommersDemo.demo.service;
 import ecommersDemo.demo.dto.PedidoDTO;
 import ecommersDemo.demo.dto.request.CambiarEstadoPedidoRequest;
 import ecommersDemo.demo.dto.request.CrearPedidoRequest;
+import ecommersDemo.demo.dto.response.PaginaCursor;
+import ecommersDemo.demo.event.CatalogoModificadoEvent;
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
 import ecommersDemo.demo.exception.BadRequestException;
 import ecommersDemo.demo.exception.CarritoVacioException;
 import ecommersDemo.demo.exception.ResourceNotFoundException;
@@ -12,51 +15,79 @@ import ecommersDemo.demo.model.Pedido.EstadoPedido;
 import ecommersDemo.demo.repository.CarritoRepository;
 import ecommersDemo.demo.repository.ItemCarritoRepository;
 import ecommersDemo.demo.repository.PedidoRepository;
+import ecommersDemo.demo.repository.ProductoRepository;
 import ecommersDemo.demo.repository.ProductoVarianteRepository;
 import ecommersDemo.demo.repository.UsuarioRepository;
 import ecommersDemo.demo.dto.ValidarCuponResponse;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 public class PedidoService {
 
+    private static final int TAMANIO_MAXIMO_PAGINA = 100;
+
     private final PedidoRepository pedidoRepository;
     private final CarritoRepository carritoRepository;
     private final ItemCarritoRepository itemCarritoRepository;
     private final ProductoVarianteRepository varianteRepository;
+    private final ProductoRepository productoRepository;
     private final UsuarioRepository usuarioRepository;
     private final CuponService cuponService;
+    private final ReintentoOptimista reintentoOptimista;
+    private final EstadisticasPedidos estadisticasPedidos;
+    private final ApplicationEventPublisher eventPublisher;
 
     public PedidoService(PedidoRepository pedidoRepository,
                         CarritoRepository carritoRepository,
                         ItemCarritoRepository itemCarritoRepository,
                         ProductoVarianteRepository varianteRepository,
+                        ProductoRepository productoRepository,
                         UsuarioRepository usuarioRepository,
-                        CuponService cuponService) {
+                        CuponService cuponService,
+                        ReintentoOptimista reintentoOptimista,
+                        EstadisticasPedidos estadisticasPedidos,
+                        ApplicationEventPublisher eventPublisher) {
         this.pedidoRepository = pedidoRepository;
         this.carritoRepository = carritoRepository;
         this.itemCarritoRepository = itemCarritoRepository;
         this.varianteRepository = varianteRepository;
+        this.productoRepository = productoRepository;
         this.usuarioRepository = usuarioRepository;
         this.cuponService = cuponService;
+        this.reintentoOptimista = reintentoOptimista;
+        this.estadisticasPedidos = estadisticasPedidos;
+        this.eventPublisher = eventPublisher;
     }
 
     // ==================== CREAR PEDIDO ====================
 
     /**
      * Crea un pedido a partir del carrito del usuario.
+     * Si una fila versionada choca con otro checkout concurrente, se reintenta el pedido completo
+     * (el uso del cupón se reserva en memoria y se libera si el intento hace rollback).
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public PedidoDTO crearPedidoDesdeCarrito(Long usuarioId, CrearPedidoRequest request) {
+        return reintentoOptimista.ejecutar("crearPedido", () -> registrarPedido(usuarioId, request));
+    }
+
+    private PedidoDTO registrarPedido(Long usuarioId, CrearPedidoRequest request) {
         // Validaciones
         if (request.getDireccionEnvio() == null || request.getDireccionEnvio().trim().isEmpty()) {
             throw new BadRequestException("La dirección de envío es obligatoria");
@@ -80,16 +111,8 @@ public class PedidoService {
             throw new CarritoVacioException("No se puede crear un pedido con el carrito vacío");
         }
 
-        // Validar stock de todos los items
-        for (ItemCarrito item : carrito.getItems()) {
-            ProductoVariante variante = item.getProductoVariante();
-            if (!variante.tieneStockSuficiente(item.getCantidad())) {
-                throw new StockInsuficienteException(
-                        variante.getId(),
-                        item.getCantidad(),
-                        variante.getStock());
-            }
-        }
+        // Reservar stock con UPDATE condicionales; si algún item no alcanza se revierte todo el pedido
+        Set<Long> productosModificados = reservarStock(carrito.getItems());
 
         // Crear pedido
         Pedido pedido = new Pedido(usuario);
@@ -109,11 +132,6 @@ public class PedidoService {
                     item.getProductoVariante(),
                     item.getCantidad());
             pedido.agregarDetalle(detalle);
-
-            // Decrementar stock
-            ProductoVariante variante = item.getProductoVariante();
-            variante.decrementarStock(item.getCantidad());
-            varianteRepository.save(variante);
         }
 
         // Calcular subtotal antes de aplicar cupón
@@ -144,6 +162,10 @@ public class PedidoService {
         // Vaciar carrito
         itemCarritoRepository.eliminarItemsDelCarrito(carrito.getId());
 
+        // El stock cambió: refrescar el catálogo en memoria al confirmar
+        eventPublisher.publishEvent(new CatalogoModificadoEvent(productosModificados));
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(pedido, null));
+
         return new PedidoDTO(pedido, true);
     }
 
@@ -157,6 +179,22 @@ public class PedidoService {
                 .map(PedidoDTO::new);
     }
 
+    /**
+     * Obtiene los pedidos de un usuario paginados por cursor (fechaPedido, id), del más reciente al más antiguo.
+     * Cada página es una búsqueda por índice desde la última fila entregada, sin COUNT ni OFFSET.
+     */
+    public PaginaCursor<PedidoDTO> obtenerPedidosUsuarioPorCursor(Long usuarioId, String cursor,
+                                                                   int tamanio, boolean incluirTotal) {
+        Cursor desde = Cursor.decodificar(cursor);
+        Limit limite = limiteDePagina(tamanio);
+        List<Pedido> pedidos = desde == null
+                ? pedidoRepository.findByUsuarioIdOrderByFechaPedidoDescIdDesc(usuarioId, limite)
+                : pedidoRepository.findSiguientesDeUsuario(
+                        usuarioId, desde.valor(LocalDateTime::parse), desde.id(), limite);
+        Long total = incluirTotal ? estadisticasPedidos.contarPedidosUsuario(usuarioId) : null;
+        return armarPagina(pedidos, limite, total);
+    }
+
     /**
      * Obtiene los pedidos de un usuario ordenados por fecha.
      */
@@ -221,8 +259,10 @@ public class PedidoService {
         restaurarStock(pedido);
 
         // Cambiar estado
+        EstadoPedido estadoAnterior = pedido.getEstado();
         pedido.setEstado(EstadoPedido.CANCELADO);
         pedido = pedidoRepository.save(pedido);
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(pedido, estadoAnterior));
 
         return new PedidoDTO(pedido, true);
     }
@@ -245,6 +285,33 @@ public class PedidoService {
                 .map(PedidoDTO::new);
     }
 
+    /**
+     * Obtiene pedidos paginados por cursor (fechaPedido, id), opcionalmente filtrados por estado (admin).
+     * El total sale de los contadores en memoria, no de un COUNT.
+     */
+    public PaginaCursor<PedidoDTO> obtenerPedidosPorCursor(EstadoPedido estado, String cursor,
+                                                           int tamanio, boolean incluirTotal) {
+        Cursor desde = Cursor.decodificar(cursor);
+        Limit limite = limiteDePagina(tamanio);
+        List<Pedido> pedidos;
+        if (estado == null) {
+            pedidos = desde == null
+                    ? pedidoRepository.findAllByOrderByFechaPedidoDescIdDesc(limite)
+                    : pedidoRepository.findSiguientes(desde.valor(LocalDateTime::parse), desde.id(), limite);
+        } else {
+            pedidos = desde == null
+                    ? pedidoRepository.findByEstadoOrderByFechaPedidoDescIdDesc(estado, limite)
+                    : pedidoRepository.findSiguientesPorEstado(
+                            estado, desde.valor(LocalDateTime::parse), desde.id(), limite);
+        }
+
+        Long total = null;
+        if (incluirTotal) {
+            total = estado == null ? estadisticasPedidos.contarTotal() : estadisticasPedidos.contar(estado);
+        }
+        return armarPagina(pedidos, limite, total);
+    }
+
     /**
      * Obtiene pedidos pendientes de procesar (admin).
      */
@@ -301,6 +368,7 @@ public class PedidoService {
 
         pedido.setEstado(nuevoEstado);
         pedido = pedidoRepository.save(pedido);
+        eventPublisher.publishEvent(PedidoEstadoCambiadoEvent.de(pedido, estadoActual));
 
         return new PedidoDTO(pedido, true);
     }
@@ -326,17 +394,74 @@ public class PedidoService {
 
     // ==================== MÉTODOS AUXILIARES ====================
 
+    /**
+     * Se pide una fila más que el tamaño de página para saber si hay una página siguiente.
+     */
+    private Limit limiteDePagina(int tamanio) {
+        return Limit.of(Math.max(1, Math.min(tamanio, TAMANIO_MAXIMO_PAGINA)) + 1);
+    }
+
+    private PaginaCursor<PedidoDTO> armarPagina(List<Pedido> pedidos, Limit limite, Long total) {
+        int tamanio = limite.max() - 1;
+        boolean hayMas = pedidos.size() > tamanio;
+        List<Pedido> pagina = hayMas ? pedidos.subList(0, tamanio) : pedidos;
+
+        String siguiente = null;
+        if (hayMas) {
+            Pedido ultimo = pagina.get(pagina.size() - 1);
+            siguiente = new Cursor(ultimo.getFechaPedido().toString(), ultimo.getId()).codificar();
+        }
+        return new PaginaCursor<>(pagina.stream().map(PedidoDTO::new).toList(), siguiente, total);
+    }
+
+    /**
+     * Reserva el stock de los items del carrito con UPDATE condicionales (stock >= cantidad).
+     * Las filas se actualizan siempre en el mismo orden (variantes y luego productos, por ID)
+     * para que dos checkouts concurrentes no se bloqueen mutuamente.
+     * Devuelve los IDs de los productos afectados.
+     */
+    private Set<Long> reservarStock(List<ItemCarrito> items) {
+        Map<Long, Integer> cantidadPorVariante = new TreeMap<>();
+        Map<Long, Long> productoPorVariante = new HashMap<>();
+        for (ItemCarrito item : items) {
+            ProductoVariante variante = item.getProductoVariante();
+            cantidadPorVariante.merge(variante.getId(), item.getCantidad(), Integer::sum);
+            productoPorVariante.put(variante.getId(), variante.getProducto().getId());
+        }
+
+        Map<Long, Integer> deltaPorProducto = new TreeMap<>();
+        cantidadPorVariante.forEach((varianteId, cantidad) -> {
+            if (varianteRepository.decrementarStock(varianteId, cantidad) == 0) {
+                throw new StockInsuficienteException(
+                        varianteId,
+                        cantidad,
+                        varianteRepository.obtenerStock(varianteId).orElse(0));
+            }
+            deltaPorProducto.merge(productoPorVariante.get(varianteId), -cantidad, Integer::sum);
+        });
+        deltaPorProducto.forEach(productoRepository::ajustarStockTotal);
+        return deltaPorProducto.keySet();
+    }
+
     /**
      * Restaura el stock de los productos de un pedido.
      */
     private void restaurarStock(Pedido pedido) {
+        Map<Long, Integer> cantidadPorVariante = new TreeMap<>();
+        Map<Long, Integer> deltaPorProducto = new TreeMap<>();
         for (DetallePedido detalle : pedido.getDetalles()) {
             ProductoVariante variante = detalle.getProductoVariante();
             if (variante != null) {
-                variante.incrementarStock(detalle.getCantidad());
-                varianteRepository.save(variante);
+                cantidadPorVariante.merge(variante.getId(), detalle.getCantidad(), Integer::sum);
+                // El stock agregado del producto solo cuenta variantes activas
+                int delta = Boolean.TRUE.equals(variante.getActivo()) ? detalle.getCantidad() : 0;
+                deltaPorProducto.merge(variante.getProducto().getId(), delta, Integer::sum);
             }
         }
+
+        cantidadPorVariante.forEach(varianteRepository::incrementarStock);
+        deltaPorProducto.forEach(productoRepository::ajustarStockTotal);
+        eventPublisher.publishEvent(new CatalogoModificadoEvent(deltaPorProducto.keySet()));
     }
 
     /**
@@ -1,12 +1,16 @@
 package ecommersDemo.demo.service;
 
+import ecommersDemo.demo.dto.CatalogoFiltradoDTO;
 import ecommersDemo.demo.dto.ProductoDTO;
 import ecommersDemo.demo.dto.ProductoVarianteDTO;
+import ecommersDemo.demo.dto.request.FiltroCatalogoRequest;
+import ecommersDemo.demo.dto.response.PaginaCursor;
 import ecommersDemo.demo.dto.request.ProductoCreateRequest;
 import ecommersDemo.demo.dto.request.ProductoUpdateRequest;
 import ecommersDemo.demo.dto.request.VarianteCreateRequest;
 import ecommersDemo.demo.dto.request.VarianteUpdateRequest;
 import ecommersDemo.demo.dto.request.ImagenRequest;
+import ecommersDemo.demo.event.CatalogoModificadoEvent;
 import ecommersDemo.demo.exception.BadRequestException;
 import ecommersDemo.demo.exception.DuplicateResourceException;
 import ecommersDemo.demo.exception.ResourceNotFoundException;
@@ -17,9 +21,11 @@ import ecommersDemo.demo.model.ProductoVariante;
 import ecommersDemo.demo.model.Talle;
 import ecommersDemo.demo.repository.ProductoRepository;
 import ecommersDemo.demo.repository.ProductoVarianteRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
@@ -33,77 +39,70 @@ public class ProductoService {
     private final ProductoVarianteRepository varianteRepository;
     private final CategoriaService categoriaService;
     private final TalleService talleService;
+    private final CatalogoCache catalogoCache;
+    private final ReintentoOptimista reintentoOptimista;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ProductoService(ProductoRepository productoRepository,
                           ProductoVarianteRepository varianteRepository,
                           CategoriaService categoriaService,
-                          TalleService talleService) {
+                          TalleService talleService,
+                          CatalogoCache catalogoCache,
+                          ReintentoOptimista reintentoOptimista,
+                          ApplicationEventPublisher eventPublisher) {
         this.productoRepository = productoRepository;
         this.varianteRepository = varianteRepository;
         this.categoriaService = categoriaService;
         this.talleService = talleService;
+        this.catalogoCache = catalogoCache;
+        this.reintentoOptimista = reintentoOptimista;
+        this.eventPublisher = eventPublisher;
     }
 
     // ==================== CATÁLOGO PÚBLICO ====================
+    // Las lecturas públicas se sirven desde el snapshot en memoria (CatalogoCache).
 
     /**
      * Obtiene todos los productos activos para el catálogo público.
      */
     public List<ProductoDTO> obtenerProductosActivos() {
-        return productoRepository.findByActivoTrue()
-                .stream()
-                .map(ProductoDTO::new)
-                .collect(Collectors.toList());
+        return catalogoCache.listarActivos();
     }
 
     /**
      * Obtiene productos activos con paginación.
      */
     public Page<ProductoDTO> obtenerProductosActivosPaginados(Pageable pageable) {
-        return productoRepository.findByActivoTrue(pageable)
-                .map(ProductoDTO::new);
+        return catalogoCache.listarActivos(pageable);
     }
 
     /**
      * Obtiene un producto por ID (solo si está activo) con sus variantes.
      */
     public ProductoDTO obtenerProductoPublico(Long id) {
-        Producto producto = productoRepository.findById(id)
+        return catalogoCache.obtenerDetalle(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Producto", "id", id));
-        
-        if (!producto.getActivo()) {
-            throw new ResourceNotFoundException("Producto", "id", id);
-        }
-        
-        return new ProductoDTO(producto, true);
     }
 
     /**
      * Obtiene productos por categoría.
      */
     public Page<ProductoDTO> obtenerProductosPorCategoria(Long categoriaId, Pageable pageable) {
-        return productoRepository.findByCategoriaIdAndActivoTrue(categoriaId, pageable)
-                .map(ProductoDTO::new);
+        return catalogoCache.listarPorCategoria(categoriaId, pageable);
     }
 
     /**
      * Obtiene productos destacados.
      */
     public List<ProductoDTO> obtenerProductosDestacados() {
-        return productoRepository.findByDestacadoTrueAndActivoTrue()
-                .stream()
-                .map(ProductoDTO::new)
-                .collect(Collectors.toList());
+        return catalogoCache.listarDestacados();
     }
 
     /**
      * Obtiene productos en oferta.
      */
     public List<ProductoDTO> obtenerProductosEnOferta() {
-        return productoRepository.findProductosEnOferta()
-                .stream()
-                .map(ProductoDTO::new)
-                .collect(Collectors.toList());
+        return catalogoCache.listarEnOferta();
     }
 
     /**
@@ -111,29 +110,50 @@ public class ProductoService {
      * Busca productos de la misma categoría, excluyendo el producto actual.
      */
     public List<ProductoDTO> obtenerProductosRelacionados(Long productoId) {
-        Producto producto = obtenerEntidadPorId(productoId);
-        
-        if (producto.getCategoria() == null) {
+        Long categoriaId = catalogoCache.obtenerDetalle(productoId)
+                .map(ProductoDTO::getCategoriaId)
+                .orElseGet(() -> {
+                    // Producto inactivo: no está en el snapshot, se consulta su categoría
+                    Producto producto = obtenerEntidadPorId(productoId);
+                    return producto.getCategoria() != null ? producto.getCategoria().getId() : null;
+                });
+
+        if (categoriaId == null) {
             return List.of();
         }
 
         // Obtener hasta 6 productos relacionados de la misma categoría
-        Pageable pageable = org.springframework.data.domain.PageRequest.of(0, 6);
-        return productoRepository.findProductosRelacionados(
-                producto.getCategoria().getId(), 
-                productoId, 
-                pageable
-        ).stream()
-        .map(ProductoDTO::new)
-        .collect(Collectors.toList());
+        return catalogoCache.listarRelacionados(categoriaId, productoId, 6);
     }
 
     /**
-     * Busca productos por término.
+     * Busca productos por término sobre el índice en memoria, ordenados por relevancia.
      */
     public Page<ProductoDTO> buscarProductos(String termino, Pageable pageable) {
-        return productoRepository.buscarProductos(termino, pageable)
-                .map(ProductoDTO::new);
+        return catalogoCache.buscar(termino, pageable);
+    }
+
+    /**
+     * Listado público paginado por cursor, sin total (scroll infinito).
+     * Con búsqueda ordena por relevancia; si no, por el orden pedido ("propiedad,asc|desc").
+     */
+    public PaginaCursor<ProductoDTO> obtenerProductosPorCursor(Long categoriaId, String busqueda, String sort,
+                                                               String cursor, int tamanio) {
+        if (busqueda != null && !busqueda.isBlank()) {
+            return catalogoCache.buscarPorCursor(busqueda.trim(), cursor, tamanio);
+        }
+        return catalogoCache.listarPorCursor(categoriaId, OrdenCatalogo.de(sort), cursor, tamanio);
+    }
+
+    /**
+     * Filtra el catálogo combinando facetas y devuelve los conteos por valor de faceta.
+     */
+    public CatalogoFiltradoDTO filtrarCatalogo(FiltroCatalogoRequest filtro, Pageable pageable) {
+        if (filtro.getPrecioMin() != null && filtro.getPrecioMax() != null
+                && filtro.getPrecioMin().compareTo(filtro.getPrecioMax()) > 0) {
+            throw new BadRequestException("El precio mínimo no puede ser mayor al precio máximo");
+        }
+        return catalogoCache.filtrar(filtro, pageable);
     }
 
     // ==================== ADMINISTRACIÓN ====================
@@ -216,6 +236,7 @@ public class ProductoService {
             producto = productoRepository.save(producto);
         }
 
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(producto.getId()));
         return new ProductoDTO(producto, true);
     }
 
@@ -290,6 +311,7 @@ public class ProductoService {
         }
 
         producto = productoRepository.save(producto);
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(producto.getId()));
         return new ProductoDTO(producto, true);
     }
 
@@ -301,6 +323,7 @@ public class ProductoService {
         Producto producto = obtenerEntidadPorId(id);
         producto.setActivo(false);
         productoRepository.save(producto);
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(id));
     }
 
     // ==================== VARIANTES ====================
@@ -339,7 +362,7 @@ public class ProductoService {
 
         // Crear variante
         ProductoVariante variante = new ProductoVariante();
-        variante.setProducto(producto);
+        producto.agregarVariante(variante);
         variante.setTalle(talle);
         variante.setColor(color);
         variante.setCodigoColor(request.getCodigoColor());
@@ -351,16 +374,26 @@ public class ProductoService {
         variante.setActivo(true);
 
         variante = varianteRepository.save(variante);
+        // El agregado se ajusta en SQL para no pisar los checkouts que commitean en paralelo
+        productoRepository.ajustarStockTotal(productoId, variante.getStockAportado());
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(variante.getProducto().getId()));
         return new ProductoVarianteDTO(variante);
     }
 
     /**
      * Actualiza una variante existente.
+     * La variante está versionada: si un checkout la modificó en paralelo se reintenta con datos frescos.
      */
-    @Transactional
+    @Transactional(propagation = Propagation.SUPPORTS)
     public ProductoVarianteDTO actualizarVariante(Long varianteId, VarianteUpdateRequest request) {
+        return reintentoOptimista.ejecutar("actualizarVariante",
+                () -> aplicarActualizacionVariante(varianteId, request));
+    }
+
+    private ProductoVarianteDTO aplicarActualizacionVariante(Long varianteId, VarianteUpdateRequest request) {
         ProductoVariante variante = varianteRepository.findById(varianteId)
                 .orElseThrow(() -> new ResourceNotFoundException("Variante", "id", varianteId));
+        int stockAportadoAntes = variante.getStockAportado();
 
         // Verificar SKU duplicado si se está cambiando
         if (request.getSku() != null && !request.getSku().equals(variante.getSku())) {
@@ -402,6 +435,14 @@ public class ProductoService {
         }
 
         variante = varianteRepository.save(variante);
+
+        // Stock o estado pudieron cambiar: se aplica solo la diferencia sobre el agregado del producto.
+        // La versión de la variante garantiza que stockAportadoAntes no quedó viejo al commitear.
+        int delta = variante.getStockAportado() - stockAportadoAntes;
+        if (delta != 0) {
+            productoRepository.ajustarStockTotal(variante.getProducto().getId(), delta);
+        }
+        eventPublisher.publishEvent(CatalogoModificadoEvent.deProducto(variante.getProducto().getId()));
         return new ProductoVarianteDTO(variante);
     }
 
@@ -0,0 +1,188 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.CuponDTO;
+import ecommersDemo.demo.event.CuponModificadoEvent;
+import ecommersDemo.demo.model.Cupon;
+import ecommersDemo.demo.model.Cupon.TipoDescuento;
+import ecommersDemo.demo.repository.CuponRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache de reglas de validación de cupones, por código normalizado.
+ * Cada cupón activo se compila una vez en una {@link ReglaCupon} inmutable que vive hasta su fechaFin,
+ * como mucho el TTL configurado, o hasta que un {@link CuponModificadoEvent} la invalida.
+ * La aplicación no tiene todavía un ABM de cupones que publique el evento: el TTL acota cuánto
+ * tarda en verse un cambio hecho directamente en la base.
+ * Los códigos inexistentes o inactivos también se cachean por un rato, así validar mientras
+ * se tipea no consulta la base.
+ */
+@Component
+public class ReglasCupones {
+
+    private static final Duration TTL_NEGATIVO = Duration.ofMinutes(1);
+    private static final int MAX_ENTRADAS = 10_000;
+
+    private final CuponRepository cuponRepository;
+    private final Duration ttl;
+
+    private final Map<String, Entrada> entradas = new ConcurrentHashMap<>();
+
+    public ReglasCupones(CuponRepository cuponRepository,
+                         @Value("${ecommers.cupones.reglas-ttl:5m}") Duration ttl) {
+        this.cuponRepository = cuponRepository;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Devuelve la regla del cupón activo con ese código, o vacío si no existe o no está activo.
+     */
+    public Optional<ReglaCupon> obtener(String codigo) {
+        LocalDateTime ahora = LocalDateTime.now();
+        Entrada entrada = entradas.get(codigo);
+        if (entrada == null || entrada.vencida(ahora)) {
+            entrada = cargar(codigo, ahora);
+            if (hayLugar(entrada, ahora)) {
+                entradas.put(codigo, entrada);
+            }
+        }
+        return Optional.ofNullable(entrada.regla());
+    }
+
+    public void invalidar(String codigo) {
+        entradas.remove(codigo);
+    }
+
+    public void invalidarTodo() {
+        entradas.clear();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCuponModificado(CuponModificadoEvent evento) {
+        invalidar(evento.codigo());
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    /**
+     * Evita que códigos inventados hagan crecer el mapa sin límite. Con el mapa lleno se descartan
+     * las entradas vencidas y las negativas; las reglas vigentes se conservan, porque las acota
+     * la cantidad de cupones activos. Si aun así no hay lugar, la entrada negativa no se cachea.
+     */
+    private boolean hayLugar(Entrada entrada, LocalDateTime ahora) {
+        if (entradas.size() < MAX_ENTRADAS) {
+            return true;
+        }
+        entradas.values().removeIf(actual -> actual.regla() == null || actual.vencida(ahora));
+        return entrada.regla() != null || entradas.size() < MAX_ENTRADAS;
+    }
+
+    private Entrada cargar(String codigo, LocalDateTime ahora) {
+        return cuponRepository.findByCodigoAndActivoTrue(codigo)
+                .map(cupon -> {
+                    ReglaCupon regla = ReglaCupon.de(cupon);
+                    // Un cupón ya vencido se vuelve a mirar recién después del TTL negativo
+                    if (!regla.fechaFin().isAfter(ahora)) {
+                        return new Entrada(regla, ahora.plus(TTL_NEGATIVO));
+                    }
+                    LocalDateTime tope = ahora.plus(ttl);
+                    return new Entrada(regla, regla.fechaFin().isBefore(tope) ? regla.fechaFin() : tope);
+                })
+                .orElseGet(() -> new Entrada(null, ahora.plus(TTL_NEGATIVO)));
+    }
+
+    private record Entrada(ReglaCupon regla, LocalDateTime venceEn) {
+
+        boolean vencida(LocalDateTime ahora) {
+            return !ahora.isBefore(venceEn);
+        }
+    }
+
+    /**
+     * Reglas compiladas de un cupón: ventana de fechas, monto mínimo, tipo y valor del descuento y tope.
+     */
+    public record ReglaCupon(
+            Long id,
+            String codigo,
+            String descripcion,
+            TipoDescuento tipoDescuento,
+            BigDecimal valorDescuento,
+            BigDecimal montoMinimo,
+            BigDecimal descuentoMaximo,
+            LocalDateTime fechaInicio,
+            LocalDateTime fechaFin,
+            Integer usosMaximos) {
+
+        private static final BigDecimal CIEN = new BigDecimal("100");
+
+        static ReglaCupon de(Cupon cupon) {
+            return new ReglaCupon(
+                    cupon.getId(),
+                    cupon.getCodigo(),
+                    cupon.getDescripcion(),
+                    cupon.getTipoDescuento(),
+                    cupon.getValorDescuento(),
+                    cupon.getMontoMinimo(),
+                    cupon.getDescuentoMaximo(),
+                    cupon.getFechaInicio(),
+                    cupon.getFechaFin(),
+                    cupon.getUsosMaximos());
+        }
+
+        /**
+         * Motivo por el que el cupón no aplica a la compra, o null si aplica.
+         * El límite de usos no se evalúa acá: lo lleva el motor de canje.
+         */
+        public String motivoInvalidez(BigDecimal montoCompra, LocalDateTime ahora) {
+            if (montoMinimo != null && montoCompra.compareTo(montoMinimo) < 0) {
+                return String.format("El monto mínimo para este cupón es $%.2f", montoMinimo);
+            }
+            if (ahora.isBefore(fechaInicio)) {
+                return "Este cupón aún no está disponible";
+            }
+            if (ahora.isAfter(fechaFin)) {
+                return "Este cupón ha expirado";
+            }
+            return null;
+        }
+
+        /**
+         * Calcula el descuento a aplicar, con las mismas reglas que {@link Cupon#calcularDescuento}.
+         */
+        public BigDecimal calcularDescuento(BigDecimal montoCompra) {
+            if (tipoDescuento == TipoDescuento.PORCENTAJE) {
+                BigDecimal descuento = montoCompra.multiply(valorDescuento).divide(CIEN);
+                return descuentoMaximo != null && descuento.compareTo(descuentoMaximo) > 0
+                        ? descuentoMaximo
+                        : descuento;
+            }
+            return valorDescuento.compareTo(montoCompra) > 0 ? montoCompra : valorDescuento;
+        }
+
+        public CuponDTO aDTO(int usosActuales) {
+            CuponDTO dto = new CuponDTO();
+            dto.setId(id);
+            dto.setCodigo(codigo);
+            dto.setDescripcion(descripcion);
+            dto.setTipoDescuento(tipoDescuento.name());
+            dto.setValorDescuento(valorDescuento);
+            dto.setMontoMinimo(montoMinimo);
+            dto.setDescuentoMaximo(descuentoMaximo);
+            dto.setFechaInicio(fechaInicio);
+            dto.setFechaFin(fechaFin);
+            dto.setUsosMaximos(usosMaximos);
+            dto.setUsosActuales(usosActuales);
+            dto.setActivo(true);
+            return dto;
+        }
+    }
+}
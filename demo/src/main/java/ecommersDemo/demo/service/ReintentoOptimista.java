@@ -0,0 +1,106 @@
+package ecommersDemo.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.retry.RetryException;
+import org.springframework.core.retry.RetryPolicy;
+import org.springframework.core.retry.RetryTemplate;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Ejecuta operaciones de escritura sobre entidades versionadas (@Version) reintentando
+ * ante conflictos de bloqueo optimista, con backoff exponencial acotado.
+ * Cada intento corre en una transacción nueva; si ya hay una transacción activa
+ * la operación se ejecuta directamente y reintenta quien abrió la transacción externa.
+ */
+@Component
+public class ReintentoOptimista {
+
+    private static final Logger log = LoggerFactory.getLogger(ReintentoOptimista.class);
+
+    private static final String METRICA_CONFLICTOS = "ecommers.bloqueo.optimista.conflictos";
+    private static final String METRICA_REINTENTOS = "ecommers.bloqueo.optimista.reintentos";
+    private static final String METRICA_AGOTADOS = "ecommers.bloqueo.optimista.agotados";
+
+    private final TransactionTemplate transactionTemplate;
+    private final RetryTemplate retryTemplate;
+    private final MeterRegistry meterRegistry;
+
+    public ReintentoOptimista(PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.retryTemplate = new RetryTemplate(RetryPolicy.builder()
+                .includes(OptimisticLockingFailureException.class)
+                .maxRetries(4)
+                .delay(Duration.ofMillis(10))
+                .multiplier(2.0)
+                .maxDelay(Duration.ofMillis(200))
+                .jitter(Duration.ofMillis(5))
+                .build());
+    }
+
+    /**
+     * Ejecuta la operación en una transacción, reintentando si otra transacción
+     * modificó la misma fila entre la lectura y el commit.
+     */
+    public <T> T ejecutar(String operacion, Supplier<T> accion) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return accion.get();
+        }
+
+        AtomicInteger intentos = new AtomicInteger();
+        String[] ultimaEntidad = {"desconocida"};
+        try {
+            return retryTemplate.execute(() -> {
+                if (intentos.incrementAndGet() > 1) {
+                    contador(METRICA_REINTENTOS, ultimaEntidad[0]).increment();
+                }
+                try {
+                    return transactionTemplate.execute(status -> accion.get());
+                } catch (OptimisticLockingFailureException e) {
+                    ultimaEntidad[0] = entidad(e);
+                    contador(METRICA_CONFLICTOS, ultimaEntidad[0]).increment();
+                    log.debug("Conflicto optimista en {} ({}), intento {}", ultimaEntidad[0], operacion, intentos.get());
+                    throw e;
+                }
+            });
+        } catch (RetryException e) {
+            if (e.getCause() instanceof OptimisticLockingFailureException conflicto) {
+                contador(METRICA_AGOTADOS, ultimaEntidad[0]).increment();
+                log.warn("Reintentos agotados para {} en {} tras {} intentos", operacion, ultimaEntidad[0], intentos.get());
+                throw conflicto;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    private Counter contador(String nombre, String entidad) {
+        return Counter.builder(nombre)
+                .tag("entidad", entidad)
+                .register(meterRegistry);
+    }
+
+    private static String entidad(OptimisticLockingFailureException e) {
+        if (e instanceof ObjectOptimisticLockingFailureException objeto && objeto.getPersistentClassName() != null) {
+            String nombre = objeto.getPersistentClassName();
+            return nombre.substring(nombre.lastIndexOf('.') + 1);
+        }
+        return "desconocida";
+    }
+}
@@ -0,0 +1,356 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent.Linea;
+import ecommersDemo.demo.event.RollupVentasVolcadoEvent;
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import ecommersDemo.demo.model.VentaDiaria;
+import ecommersDemo.demo.model.VentaDiariaCategoria;
+import ecommersDemo.demo.model.VentaDiariaProducto;
+import ecommersDemo.demo.repository.DetallePedidoRepository;
+import ecommersDemo.demo.repository.PedidoRepository;
+import ecommersDemo.demo.repository.VentaDiariaCategoriaRepository;
+import ecommersDemo.demo.repository.VentaDiariaProductoRepository;
+import ecommersDemo.demo.repository.VentaDiariaRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Mantiene los rollups diarios de ventas (ventas_diarias, ventas_diarias_producto y ventas_diarias_categoria).
+ * Cada pedido creado suma en su estado; cada cambio de estado resta del estado anterior
+ * y suma en el nuevo, así una cancelación deja de contar como venta.
+ * Los deltas se acumulan en memoria después del commit y se vuelcan por lotes, para que
+ * los checkouts no compitan por la misma fila del día; las lecturas pueden atrasarse un volcado.
+ */
+@Component
+public class RollupVentas {
+
+    private static final Logger log = LoggerFactory.getLogger(RollupVentas.class);
+
+    // Cubre la demora entre que un pedido se modifica y su evento llega al rollup
+    private static final Duration MARGEN_RECONSTRUCCION = Duration.ofMinutes(5);
+
+    private final VentaDiariaRepository ventaDiariaRepository;
+    private final VentaDiariaProductoRepository ventaDiariaProductoRepository;
+    private final VentaDiariaCategoriaRepository ventaDiariaCategoriaRepository;
+    private final PedidoRepository pedidoRepository;
+    private final DetallePedidoRepository detallePedidoRepository;
+    private final TopVendidos topVendidos;
+    private final TransactionTemplate transactionTemplate;
+    // Todas las lecturas de la reconstrucción ven una misma foto de la base
+    private final TransactionTemplate transaccionFoto;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<ClavePedidos, Delta> pendientesPedidos = new ConcurrentHashMap<>();
+    private final Map<ClaveProducto, Delta> pendientesProductos = new ConcurrentHashMap<>();
+    private final Map<ClaveCategoria, Delta> pendientesCategorias = new ConcurrentHashMap<>();
+
+    // Los eventos acumulan con el de lectura; la reconstrucción toma el de escritura al empezar y al terminar
+    private final ReadWriteLock cerrojoEventos = new ReentrantReadWriteLock();
+    // Eventos recibidos mientras corre una reconstrucción: todavía no se sabe si ya están en su foto
+    private volatile Queue<PedidoEstadoCambiadoEvent> enEspera;
+    private volatile FotoPedidos ultimaFoto;
+
+    public RollupVentas(VentaDiariaRepository ventaDiariaRepository,
+                        VentaDiariaProductoRepository ventaDiariaProductoRepository,
+                        VentaDiariaCategoriaRepository ventaDiariaCategoriaRepository,
+                        PedidoRepository pedidoRepository,
+                        DetallePedidoRepository detallePedidoRepository,
+                        TopVendidos topVendidos,
+                        PlatformTransactionManager transactionManager,
+                        ApplicationEventPublisher eventPublisher) {
+        this.ventaDiariaRepository = ventaDiariaRepository;
+        this.ventaDiariaProductoRepository = ventaDiariaProductoRepository;
+        this.ventaDiariaCategoriaRepository = ventaDiariaCategoriaRepository;
+        this.pedidoRepository = pedidoRepository;
+        this.detallePedidoRepository = detallePedidoRepository;
+        this.topVendidos = topVendidos;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transaccionFoto = new TransactionTemplate(transactionManager);
+        this.transaccionFoto.setIsolationLevel(TransactionDefinition.ISOLATION_SERIALIZABLE);
+        this.eventPublisher = eventPublisher;
+    }
+
+    // ==================== ACTUALIZACIÓN INCREMENTAL ====================
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onPedidoEstadoCambiado(PedidoEstadoCambiadoEvent evento) {
+        if (evento.estadoAnterior() == evento.estadoNuevo()) {
+            return;
+        }
+        cerrojoEventos.readLock().lock();
+        try {
+            Queue<PedidoEstadoCambiadoEvent> reconstruyendo = enEspera;
+            if (reconstruyendo != null) {
+                reconstruyendo.add(evento);
+                return;
+            }
+            FotoPedidos foto = ultimaFoto;
+            if (foto != null && foto.incluye(evento)) {
+                return;
+            }
+            acumular(evento);
+        } finally {
+            cerrojoEventos.readLock().unlock();
+        }
+    }
+
+    /**
+     * Vuelca a los rollups, en una sola transacción, los deltas acumulados desde el último volcado.
+     */
+    @Scheduled(fixedDelayString = "${ecommers.metricas.rollup-volcado-ms:5000}")
+    public synchronized void volcar() {
+        Map<ClavePedidos, Delta> pedidos = drenar(pendientesPedidos);
+        Map<ClaveProducto, Delta> productos = drenar(pendientesProductos);
+        Map<ClaveCategoria, Delta> categorias = drenar(pendientesCategorias);
+        if (pedidos.isEmpty() && productos.isEmpty() && categorias.isEmpty()) {
+            return;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                pedidos.forEach(this::aplicar);
+                productos.forEach(this::aplicar);
+                categorias.forEach(this::aplicar);
+            });
+            eventPublisher.publishEvent(new RollupVentasVolcadoEvent());
+            log.debug("Rollup de ventas volcado: {} filas de pedidos, {} de productos, {} de categorías",
+                    pedidos.size(), productos.size(), categorias.size());
+        } catch (RuntimeException e) {
+            // Se devuelven los deltas para reintentar en el próximo volcado
+            pedidos.forEach((clave, delta) -> pendientesPedidos.merge(clave, delta, Delta::sumar));
+            productos.forEach((clave, delta) -> pendientesProductos.merge(clave, delta, Delta::sumar));
+            categorias.forEach((clave, delta) -> pendientesCategorias.merge(clave, delta, Delta::sumar));
+            log.error("No se pudo volcar el rollup de ventas", e);
+        }
+    }
+
+    @PreDestroy
+    public void detener() {
+        volcar();
+    }
+
+    // ==================== RECONSTRUCCIÓN ====================
+
+    /**
+     * Backfill inicial: si hay pedidos pero el rollup está vacío, se reconstruye al arrancar.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    public void inicializar() {
+        if (ventaDiariaRepository.count() == 0 && pedidoRepository.count() > 0) {
+            reconstruir();
+        }
+    }
+
+    /**
+     * Reconstruye los rollups desde pedidos y detalles (backfill o reparación).
+     * Descarta los deltas pendientes: sus pedidos ya están confirmados y la reconstrucción los incluye.
+     * Los sketches de {@link TopVendidos} se recargan desde el rollup de productos reconstruido.
+     * Los eventos que llegan mientras corre se retienen; al terminar se aplican solo los que su foto
+     * de la base no incluye, comparando con el estado que ella vio de cada pedido modificado hace poco.
+     */
+    public synchronized Map<String, Object> reconstruir() {
+        Map<ClavePedidos, Delta> pedidos;
+        Map<ClaveProducto, Delta> productos;
+        Map<ClaveCategoria, Delta> categorias;
+        Queue<PedidoEstadoCambiadoEvent> retenidos = new ConcurrentLinkedQueue<>();
+        cerrojoEventos.writeLock().lock();
+        try {
+            pedidos = drenar(pendientesPedidos);
+            productos = drenar(pendientesProductos);
+            categorias = drenar(pendientesCategorias);
+            enEspera = retenidos;
+            ultimaFoto = null;
+        } finally {
+            cerrojoEventos.writeLock().unlock();
+        }
+
+        LocalDateTime modificadosDesde = LocalDateTime.now().minus(MARGEN_RECONSTRUCCION);
+        Map<String, Object> resultado = new LinkedHashMap<>();
+        Reconstruccion reconstruccion;
+        try {
+            reconstruccion = transaccionFoto.execute(status -> reconstruirEnFoto(modificadosDesde, resultado));
+        } catch (RuntimeException e) {
+            // Las tablas quedaron como estaban: se devuelven los deltas y se acumulan los retenidos
+            cerrojoEventos.writeLock().lock();
+            try {
+                pedidos.forEach((clave, delta) -> pendientesPedidos.merge(clave, delta, Delta::sumar));
+                productos.forEach((clave, delta) -> pendientesProductos.merge(clave, delta, Delta::sumar));
+                categorias.forEach((clave, delta) -> pendientesCategorias.merge(clave, delta, Delta::sumar));
+                retenidos.forEach(this::acumular);
+                enEspera = null;
+            } finally {
+                cerrojoEventos.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        FotoPedidos foto = reconstruccion.foto();
+        cerrojoEventos.writeLock().lock();
+        try {
+            topVendidos.reiniciar(reconstruccion.ventasProducto());
+            int aplicados = 0;
+            for (PedidoEstadoCambiadoEvent evento : retenidos) {
+                if (!foto.incluye(evento)) {
+                    acumular(evento);
+                    aplicados++;
+                }
+            }
+            resultado.put("eventosPosteriores", aplicados);
+            enEspera = null;
+            ultimaFoto = foto;
+        } finally {
+            cerrojoEventos.writeLock().unlock();
+        }
+
+        eventPublisher.publishEvent(new RollupVentasVolcadoEvent());
+        log.info("Rollup de ventas reconstruido: {}", resultado);
+        return resultado;
+    }
+
+    /**
+     * Reemplaza los rollups por la agregación de pedidos y detalles y devuelve la foto de los pedidos
+     * modificados desde {@code modificadosDesde}, leída en la misma transacción que la agregación.
+     */
+    private Reconstruccion reconstruirEnFoto(LocalDateTime modificadosDesde, Map<String, Object> resultado) {
+        ventaDiariaRepository.deleteAllInBatch();
+        ventaDiariaProductoRepository.deleteAllInBatch();
+        ventaDiariaCategoriaRepository.deleteAllInBatch();
+
+        List<VentaDiaria> ventas = ventaDiariaRepository.saveAll(pedidoRepository.agruparParaRollup());
+        List<VentaDiariaProducto> ventasProducto =
+                ventaDiariaProductoRepository.saveAll(detallePedidoRepository.agruparParaRollup());
+        List<VentaDiariaCategoria> ventasCategoria =
+                ventaDiariaCategoriaRepository.saveAll(detallePedidoRepository.agruparCategoriasParaRollup());
+
+        resultado.put("filasPedidos", ventas.size());
+        resultado.put("filasProductos", ventasProducto.size());
+        resultado.put("filasCategorias", ventasCategoria.size());
+
+        FotoPedidos foto = FotoPedidos.de(
+                pedidoRepository.findEstadosModificadosDesde(modificadosDesde), MARGEN_RECONSTRUCCION);
+        return new Reconstruccion(foto, ventasProducto);
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    private void acumular(PedidoEstadoCambiadoEvent evento) {
+        if (evento.estadoAnterior() != null) {
+            acumular(evento, evento.estadoAnterior(), -1);
+        }
+        acumular(evento, evento.estadoNuevo(), 1);
+        topVendidos.registrar(evento);
+    }
+
+    private void acumular(PedidoEstadoCambiadoEvent evento, EstadoPedido estado, int signo) {
+        pendientesPedidos.merge(
+                new ClavePedidos(evento.fecha(), estado, evento.metodoPago()),
+                new Delta(signo, 0, evento.total().multiply(BigDecimal.valueOf(signo))),
+                Delta::sumar);
+
+        Map<Long, Delta> porCategoria = new HashMap<>();
+        for (Linea linea : evento.lineas()) {
+            Delta delta = new Delta(0, (long) signo * linea.cantidad(), linea.subtotal().multiply(BigDecimal.valueOf(signo)));
+            pendientesProductos.merge(
+                    new ClaveProducto(evento.fecha(), estado, linea.categoriaId(), linea.productoId()),
+                    delta,
+                    Delta::sumar);
+            porCategoria.merge(linea.categoriaId(), delta, Delta::sumar);
+        }
+        // El pedido cuenta una sola vez por categoría, aunque tenga varias líneas de ella
+        porCategoria.forEach((categoriaId, delta) -> pendientesCategorias.merge(
+                new ClaveCategoria(evento.fecha(), estado, categoriaId),
+                new Delta(signo, delta.unidades(), delta.monto()),
+                Delta::sumar));
+    }
+
+    private void aplicar(ClavePedidos clave, Delta delta) {
+        VentaDiaria venta = ventaDiariaRepository
+                .findByFechaAndEstadoAndMetodoPago(clave.fecha(), clave.estado(), clave.metodoPago())
+                .orElseGet(() -> new VentaDiaria(clave.fecha(), clave.estado(), clave.metodoPago(), 0L, BigDecimal.ZERO));
+        venta.sumar(delta.pedidos(), delta.monto());
+        ventaDiariaRepository.save(venta);
+    }
+
+    private void aplicar(ClaveProducto clave, Delta delta) {
+        VentaDiariaProducto venta = ventaDiariaProductoRepository
+                .findByFechaAndEstadoAndCategoriaIdAndProductoId(
+                        clave.fecha(), clave.estado(), clave.categoriaId(), clave.productoId())
+                .orElseGet(() -> new VentaDiariaProducto(
+                        clave.fecha(), clave.estado(), clave.categoriaId(), clave.productoId(), 0L, BigDecimal.ZERO));
+        venta.sumar(delta.unidades(), delta.monto());
+        ventaDiariaProductoRepository.save(venta);
+    }
+
+    private void aplicar(ClaveCategoria clave, Delta delta) {
+        VentaDiariaCategoria venta = ventaDiariaCategoriaRepository
+                .findByFechaAndEstadoAndCategoriaId(clave.fecha(), clave.estado(), clave.categoriaId())
+                .orElseGet(() -> new VentaDiariaCategoria(
+                        clave.fecha(), clave.estado(), clave.categoriaId(), 0L, 0L, BigDecimal.ZERO));
+        venta.sumar(delta.pedidos(), delta.unidades(), delta.monto());
+        ventaDiariaCategoriaRepository.save(venta);
+    }
+
+    private static <K> Map<K, Delta> drenar(Map<K, Delta> pendientes) {
+        // remove() es atómico por clave: un merge concurrente crea una entrada nueva para el próximo volcado
+        Map<K, Delta> lote = new HashMap<>();
+        for (K clave : pendientes.keySet()) {
+            Delta delta = pendientes.remove(clave);
+            if (delta != null && !delta.esNulo()) {
+                lote.put(clave, delta);
+            }
+        }
+        return lote;
+    }
+
+    private record Reconstruccion(FotoPedidos foto, List<VentaDiariaProducto> ventasProducto) {
+    }
+
+    private record ClavePedidos(LocalDate fecha, EstadoPedido estado, MetodoPago metodoPago) {
+    }
+
+    private record ClaveProducto(LocalDate fecha, EstadoPedido estado, Long categoriaId, Long productoId) {
+    }
+
+    private record ClaveCategoria(LocalDate fecha, EstadoPedido estado, Long categoriaId) {
+    }
+
+    private record Delta(long pedidos, long unidades, BigDecimal monto) {
+
+        Delta sumar(Delta otro) {
+            return new Delta(pedidos + otro.pedidos, unidades + otro.unidades, monto.add(otro.monto));
+        }
+
+        boolean esNulo() {
+            return pedidos == 0 && unidades == 0 && monto.signum() == 0;
+        }
+    }
+}
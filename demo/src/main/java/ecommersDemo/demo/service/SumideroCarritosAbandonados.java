@@ -0,0 +1,19 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.CarritoAbandonadoEvent;
+
+import java.util.List;
+
+/**
+ * Destino de los eventos de carritos abandonados. Los procesos de marketing los consumen
+ * de acá en lugar de consultar las tablas de carritos.
+ * Se elige con ecommers.carritos.abandonados.sumidero (memoria o archivo).
+ */
+public interface SumideroCarritosAbandonados {
+
+    /**
+     * Publica un lote de eventos. Si falla, el detector reintenta el mismo lote:
+     * la entrega es al menos una vez y un consumidor puede recibir un evento repetido.
+     */
+    void publicar(List<CarritoAbandonadoEvent> eventos);
+}
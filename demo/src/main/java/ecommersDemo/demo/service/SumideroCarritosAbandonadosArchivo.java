@@ -0,0 +1,48 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.CarritoAbandonadoEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sumidero en un archivo local JSON Lines: un evento por línea, agregados al final.
+ * Es el sumidero por defecto: los eventos sobreviven a un reinicio.
+ */
+@Component
+@ConditionalOnProperty(name = "ecommers.carritos.abandonados.sumidero", havingValue = "archivo", matchIfMissing = true)
+public class SumideroCarritosAbandonadosArchivo implements SumideroCarritosAbandonados {
+
+    private final Path archivo;
+    private final JsonMapper jsonMapper;
+
+    public SumideroCarritosAbandonadosArchivo(
+            @Value("${ecommers.carritos.abandonados.archivo:carritos-abandonados.jsonl}") Path archivo,
+            JsonMapper jsonMapper) {
+        this.archivo = archivo;
+        this.jsonMapper = jsonMapper;
+    }
+
+    @Override
+    public synchronized void publicar(List<CarritoAbandonadoEvent> eventos) {
+        StringBuilder lineas = new StringBuilder();
+        for (CarritoAbandonadoEvent evento : eventos) {
+            lineas.append(jsonMapper.writeValueAsString(evento)).append('\n');
+        }
+        try {
+            Files.writeString(archivo, lineas, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudieron escribir los carritos abandonados en " + archivo, e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.CarritoAbandonadoEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Sumidero en memoria, acotado: si se llena descarta los eventos más viejos.
+ * Los eventos se pierden al reiniciar, así que solo se usa si se pide explícitamente (lo usan los tests).
+ */
+@Component
+@ConditionalOnProperty(name = "ecommers.carritos.abandonados.sumidero", havingValue = "memoria")
+public class SumideroCarritosAbandonadosEnMemoria implements SumideroCarritosAbandonados {
+
+    private static final Logger log = LoggerFactory.getLogger(SumideroCarritosAbandonadosEnMemoria.class);
+
+    private final int capacidad;
+    private final Deque<CarritoAbandonadoEvent> eventos = new ArrayDeque<>();
+
+    public SumideroCarritosAbandonadosEnMemoria(
+            @Value("${ecommers.carritos.abandonados.memoria.capacidad:10000}") int capacidad) {
+        this.capacidad = capacidad;
+    }
+
+    @Override
+    public synchronized void publicar(List<CarritoAbandonadoEvent> nuevos) {
+        int descartados = 0;
+        for (CarritoAbandonadoEvent evento : nuevos) {
+            if (eventos.size() == capacidad) {
+                eventos.removeFirst();
+                descartados++;
+            }
+            eventos.addLast(evento);
+        }
+        if (descartados > 0) {
+            log.warn("Sumidero de carritos abandonados lleno: se descartaron {} eventos", descartados);
+        }
+    }
+
+    /**
+     * Devuelve los eventos pendientes, en orden, y los quita del sumidero.
+     */
+    public synchronized List<CarritoAbandonadoEvent> consumir() {
+        List<CarritoAbandonadoEvent> pendientes = new ArrayList<>(eventos);
+        eventos.clear();
+        return pendientes;
+    }
+}
@@ -0,0 +1,185 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent.Linea;
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.Producto;
+import ecommersDemo.demo.model.VentaDiariaProducto;
+import ecommersDemo.demo.repository.ProductoRepository;
+import ecommersDemo.demo.repository.VentaDiariaProductoRepository;
+import ecommersDemo.demo.repository.projection.VentasProducto;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Productos más vendidos por unidades y por ingresos, con memoria acotada.
+ * Por cada día (fecha del pedido) se mantiene un par de sketches Space-Saving alimentados por
+ * los pedidos creados y descontados por las cancelaciones y devoluciones. Los alimenta
+ * {@link RollupVentas} con los mismos eventos que el rollup, y los reinicia cuando lo reconstruye.
+ * Una consulta combina los sketches de los días pedidos para elegir los candidatos y toma sus cifras
+ * exactas del rollup diario, sin recorrer el historial de detalles.
+ */
+@Component
+public class TopVendidos {
+
+    public static final int DIAS_RETENCION = 90;
+    private static final int CAPACIDAD_POR_DIA = 64;
+    // Candidatos por criterio que se buscan en el rollup antes de ordenar por las cifras exactas
+    private static final int CANDIDATOS = CAPACIDAD_POR_DIA;
+    // Más allá de la capacidad de los sketches el top ya no es confiable
+    public static final int LIMITE_MAXIMO = CAPACIDAD_POR_DIA;
+    private static final Set<EstadoPedido> ESTADOS_SIN_VENTA = EnumSet.of(EstadoPedido.CANCELADO, EstadoPedido.DEVUELTO);
+
+    private final VentaDiariaProductoRepository ventaDiariaProductoRepository;
+    private final ProductoRepository productoRepository;
+
+    private final Map<LocalDate, SketchDia> sketches = new ConcurrentHashMap<>();
+
+    public TopVendidos(VentaDiariaProductoRepository ventaDiariaProductoRepository,
+                       ProductoRepository productoRepository) {
+        this.ventaDiariaProductoRepository = ventaDiariaProductoRepository;
+        this.productoRepository = productoRepository;
+    }
+
+    // ==================== ALIMENTACIÓN ====================
+
+    /**
+     * Carga los días retenidos desde el rollup diario (corre después de su backfill).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void inicializar() {
+        LocalDate desde = LocalDate.now().minusDays(DIAS_RETENCION - 1);
+        reiniciar(ventaDiariaProductoRepository.findByFechaGreaterThanEqualAndEstadoNotIn(desde, ESTADOS_SIN_VENTA));
+    }
+
+    /**
+     * Reemplaza los sketches por las filas del rollup de productos (carga inicial o reconstrucción).
+     */
+    synchronized void reiniciar(List<VentaDiariaProducto> filas) {
+        sketches.clear();
+        for (VentaDiariaProducto venta : filas) {
+            if (!ESTADOS_SIN_VENTA.contains(venta.getEstado())) {
+                registrar(venta.getFecha(), venta.getProductoId(), venta.getUnidades(), venta.getMonto());
+            }
+        }
+    }
+
+    /**
+     * Suma o descuenta las líneas de un pedido que pasa a contar como venta o deja de contar.
+     */
+    void registrar(PedidoEstadoCambiadoEvent evento) {
+        boolean contabaAntes = evento.estadoAnterior() != null && !ESTADOS_SIN_VENTA.contains(evento.estadoAnterior());
+        boolean cuentaAhora = !ESTADOS_SIN_VENTA.contains(evento.estadoNuevo());
+        if (contabaAntes == cuentaAhora) {
+            return;
+        }
+
+        int signo = cuentaAhora ? 1 : -1;
+        for (Linea linea : evento.lineas()) {
+            registrar(evento.fecha(), linea.productoId(),
+                    (long) signo * linea.cantidad(),
+                    linea.subtotal().multiply(BigDecimal.valueOf(signo)));
+        }
+    }
+
+    // ==================== CONSULTA ====================
+
+    /**
+     * Top de productos de los últimos {@code dias} días, por unidades y por ingresos.
+     * Los sketches combinados eligen los candidatos de cada criterio; las unidades y los ingresos
+     * que se informan, y el orden final, salen del rollup diario (pueden atrasarse un volcado).
+     * {@code limite} se acota a {@link #LIMITE_MAXIMO}.
+     */
+    public Map<String, List<ProductoVendido>> top(int dias, int limite) {
+        LocalDate desde = LocalDate.now().minusDays(Math.min(Math.max(dias, 1), DIAS_RETENCION) - 1);
+        int cantidad = Math.min(Math.max(limite, 1), LIMITE_MAXIMO);
+
+        List<ContadorFrecuentes> sketchesUnidades = new ArrayList<>();
+        List<ContadorFrecuentes> sketchesCentavos = new ArrayList<>();
+        sketches.forEach((fecha, sketch) -> {
+            if (!fecha.isBefore(desde)) {
+                sketchesUnidades.add(sketch.unidades);
+                sketchesCentavos.add(sketch.centavos);
+            }
+        });
+
+        Set<Long> candidatos = new HashSet<>(mayores(ContadorFrecuentes.combinar(sketchesUnidades), CANDIDATOS));
+        candidatos.addAll(mayores(ContadorFrecuentes.combinar(sketchesCentavos), CANDIDATOS));
+        List<VentasProducto> ventas = candidatos.isEmpty()
+                ? List.of()
+                : ventaDiariaProductoRepository.sumarPorProductos(candidatos, desde);
+
+        Map<String, List<ProductoVendido>> resultado = new LinkedHashMap<>();
+        resultado.put("porCantidad", mejores(ventas, Comparator.comparingLong(VentasProducto::unidades), cantidad));
+        resultado.put("porIngresos", mejores(ventas, Comparator.comparing(VentasProducto::monto), cantidad));
+        return resultado;
+    }
+
+    // ==================== MÉTODOS AUXILIARES ====================
+
+    private void registrar(LocalDate fecha, Long productoId, long unidades, BigDecimal monto) {
+        LocalDate limite = LocalDate.now().minusDays(DIAS_RETENCION - 1);
+        if (fecha.isBefore(limite)) {
+            return;
+        }
+        SketchDia sketch = sketches.get(fecha);
+        if (sketch == null) {
+            // Día nuevo: descartar los que salieron de la ventana de retención
+            sketches.keySet().removeIf(dia -> dia.isBefore(limite));
+            sketch = sketches.computeIfAbsent(fecha, f -> new SketchDia());
+        }
+        sketch.unidades.sumar(productoId, unidades);
+        sketch.centavos.sumar(productoId, monto.movePointRight(2).longValue());
+    }
+
+    /**
+     * Los {@code limite} productos con más ventas según el criterio, con su nombre.
+     */
+    private List<ProductoVendido> mejores(List<VentasProducto> ventas, Comparator<VentasProducto> criterio, int limite) {
+        List<VentasProducto> elegidos = ventas.stream()
+                .filter(venta -> venta.unidades() > 0)
+                .sorted(criterio.reversed())
+                .limit(limite)
+                .toList();
+        if (elegidos.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, String> nombres = productoRepository
+                .findByIdIn(elegidos.stream().map(VentasProducto::productoId).toList()).stream()
+                .collect(Collectors.toMap(Producto::getId, Producto::getNombre));
+        return elegidos.stream()
+                .map(venta -> new ProductoVendido(
+                        venta.productoId(), nombres.get(venta.productoId()), venta.unidades(), venta.monto()))
+                .toList();
+    }
+
+    private static List<Long> mayores(Map<Long, Long> cuentas, int limite) {
+        return cuentas.entrySet().stream()
+                .filter(e -> e.getValue() > 0)
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(limite)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    /**
+     * Unidades e ingresos de un producto en la ventana consultada.
+     */
+    public record ProductoVendido(Long productoId, String nombre, long unidades, BigDecimal monto) {
+    }
+
+    private static final class SketchDia {
+
+        private final ContadorFrecuentes unidades = new ContadorFrecuentes(CAPACIDAD_POR_DIA);
+        private final ContadorFrecuentes centavos = new ContadorFrecuentes(CAPACIDAD_POR_DIA);
+    }
+}
@@ -0,0 +1,223 @@
+-- =============================================
+-- ESQUEMA INICIAL
+-- =============================================
+-- Tablas tal como las generaba Hibernate con ddl-auto=create-drop.
+-- Desde esta versión el esquema lo mantienen las migraciones y Hibernate solo lo valida.
+
+CREATE TABLE carritos (
+    id bigint generated by default as identity,
+    fecha_actualizacion timestamp(6),
+    fecha_creacion timestamp(6) not null,
+    fecha_expiracion timestamp(6),
+    usuario_id bigint unique,
+    session_id varchar(100) unique,
+    primary key (id)
+);
+
+CREATE TABLE categorias (
+    id bigint generated by default as identity,
+    activa boolean not null,
+    orden_visualizacion integer,
+    fecha_actualizacion timestamp(6),
+    fecha_creacion timestamp(6) not null,
+    nombre varchar(100) not null unique,
+    descripcion varchar(500),
+    imagen_url varchar(500),
+    primary key (id)
+);
+
+CREATE TABLE cupones (
+    id bigint generated by default as identity,
+    activo boolean not null,
+    descuento_maximo numeric(10,2),
+    monto_minimo numeric(10,2),
+    usos_actuales integer not null,
+    usos_maximos integer,
+    valor_descuento numeric(10,2) not null,
+    fecha_actualizacion timestamp(6),
+    fecha_creacion timestamp(6) not null,
+    fecha_fin timestamp(6) not null,
+    fecha_inicio timestamp(6) not null,
+    version bigint default 0 not null,
+    codigo varchar(50) not null unique,
+    descripcion varchar(100) not null,
+    tipo_descuento enum ('FIJO','PORCENTAJE') not null,
+    primary key (id)
+);
+
+CREATE TABLE detalles_pedido (
+    id bigint generated by default as identity,
+    cantidad integer not null,
+    precio_unitario numeric(10,2) not null,
+    subtotal numeric(12,2) not null,
+    pedido_id bigint not null,
+    producto_variante_id bigint not null,
+    talle_nombre varchar(20),
+    color varchar(50),
+    sku_variante varchar(100),
+    nombre_producto varchar(200) not null,
+    primary key (id)
+);
+
+CREATE TABLE items_carrito (
+    id bigint generated by default as identity,
+    cantidad integer not null,
+    precio_unitario numeric(10,2) not null,
+    carrito_id bigint not null,
+    fecha_actualizacion timestamp(6),
+    fecha_agregado timestamp(6) not null,
+    producto_variante_id bigint not null,
+    primary key (id),
+    unique (carrito_id, producto_variante_id)
+);
+
+CREATE TABLE pedidos (
+    id bigint generated by default as identity,
+    costo_envio numeric(10,2),
+    descuento numeric(10,2),
+    subtotal numeric(12,2) not null,
+    total numeric(12,2) not null,
+    fecha_actualizacion timestamp(6),
+    fecha_entrega timestamp(6),
+    fecha_envio timestamp(6),
+    fecha_pedido timestamp(6) not null,
+    usuario_id bigint not null,
+    codigo_postal_envio varchar(10),
+    telefono_contacto varchar(20),
+    numero_pedido varchar(50) not null unique,
+    ciudad_envio varchar(100) not null,
+    referencia_pago varchar(100),
+    notas varchar(500),
+    direccion_envio varchar(255) not null,
+    estado enum ('CANCELADO','CONFIRMADO','DEVUELTO','ENTREGADO','ENVIADO','EN_PREPARACION','PAGADO','PENDIENTE') not null,
+    metodo_pago enum ('EFECTIVO_CONTRA_ENTREGA','MERCADO_PAGO','TARJETA_CREDITO','TARJETA_DEBITO','TRANSFERENCIA'),
+    primary key (id)
+);
+
+CREATE TABLE producto_imagenes (
+    id bigint generated by default as identity,
+    es_principal boolean,
+    orden integer not null,
+    fecha_actualizacion timestamp(6),
+    fecha_creacion timestamp(6) not null,
+    producto_id bigint not null,
+    descripcion varchar(200),
+    url varchar(500) not null,
+    primary key (id)
+);
+
+CREATE TABLE producto_variantes (
+    id bigint generated by default as identity,
+    activo boolean not null,
+    precio_adicional numeric(10,2),
+    stock integer not null,
+    stock_minimo integer,
+    codigo_color varchar(7),
+    fecha_actualizacion timestamp(6),
+    fecha_creacion timestamp(6) not null,
+    producto_id bigint not null,
+    talle_id bigint not null,
+    version bigint default 0 not null,
+    color varchar(50),
+    sku varchar(100) unique,
+    imagen_url varchar(500),
+    primary key (id),
+    unique (producto_id, talle_id, color)
+);
+
+CREATE TABLE productos (
+    id bigint generated by default as identity,
+    activo boolean not null,
+    destacado boolean not null,
+    precio numeric(10,2) not null,
+    precio_oferta numeric(10,2),
+    stock_total integer default 0 not null,
+    tiene_stock boolean default false not null,
+    categoria_id bigint not null,
+    fecha_actualizacion timestamp(6),
+    fecha_creacion timestamp(6) not null,
+    sku varchar(50) unique,
+    marca varchar(100),
+    material varchar(100),
+    nombre varchar(200) not null,
+    imagen_principal_url varchar(500),
+    descripcion varchar(2000),
+    primary key (id)
+);
+
+CREATE TABLE talles (
+    id bigint generated by default as identity,
+    activo boolean not null,
+    orden_visualizacion integer,
+    nombre varchar(20) not null unique,
+    descripcion varchar(100),
+    primary key (id)
+);
+
+CREATE TABLE usuarios (
+    id bigint generated by default as identity,
+    activo boolean not null,
+    fecha_actualizacion timestamp(6),
+    fecha_registro timestamp(6) not null,
+    codigo_postal varchar(10),
+    telefono varchar(20),
+    apellido varchar(100) not null,
+    ciudad varchar(100),
+    nombre varchar(100) not null,
+    email varchar(150) not null unique,
+    direccion varchar(255),
+    password varchar(255) not null,
+    rol enum ('ADMIN','CLIENTE') not null,
+    primary key (id)
+);
+
+CREATE TABLE ventas_diarias (
+    id bigint generated by default as identity,
+    fecha date not null,
+    total numeric(14,2) not null,
+    pedidos bigint not null,
+    estado enum ('CANCELADO','CONFIRMADO','DEVUELTO','ENTREGADO','ENVIADO','EN_PREPARACION','PAGADO','PENDIENTE') not null,
+    metodo_pago enum ('EFECTIVO_CONTRA_ENTREGA','MERCADO_PAGO','TARJETA_CREDITO','TARJETA_DEBITO','TRANSFERENCIA'),
+    primary key (id),
+    unique (fecha, estado, metodo_pago)
+);
+
+CREATE TABLE ventas_diarias_categoria (
+    id bigint generated by default as identity,
+    fecha date not null,
+    monto numeric(14,2) not null,
+    categoria_id bigint,
+    pedidos bigint not null,
+    unidades bigint not null,
+    estado enum ('CANCELADO','CONFIRMADO','DEVUELTO','ENTREGADO','ENVIADO','EN_PREPARACION','PAGADO','PENDIENTE') not null,
+    primary key (id),
+    unique (fecha, estado, categoria_id)
+);
+
+CREATE TABLE ventas_diarias_producto (
+    id bigint generated by default as identity,
+    fecha date not null,
+    monto numeric(14,2) not null,
+    categoria_id bigint,
+    producto_id bigint not null,
+    unidades bigint not null,
+    estado enum ('CANCELADO','CONFIRMADO','DEVUELTO','ENTREGADO','ENVIADO','EN_PREPARACION','PAGADO','PENDIENTE') not null,
+    primary key (id),
+    unique (fecha, estado, categoria_id, producto_id)
+);
+
+-- Claves foráneas
+ALTER TABLE carritos ADD CONSTRAINT fk_carritos_usuario FOREIGN KEY (usuario_id) REFERENCES usuarios (id);
+ALTER TABLE detalles_pedido ADD CONSTRAINT fk_detalles_pedido_pedido FOREIGN KEY (pedido_id) REFERENCES pedidos (id);
+ALTER TABLE detalles_pedido ADD CONSTRAINT fk_detalles_pedido_producto_variante FOREIGN KEY (producto_variante_id) REFERENCES producto_variantes (id);
+ALTER TABLE items_carrito ADD CONSTRAINT fk_items_carrito_carrito FOREIGN KEY (carrito_id) REFERENCES carritos (id);
+ALTER TABLE items_carrito ADD CONSTRAINT fk_items_carrito_producto_variante FOREIGN KEY (producto_variante_id) REFERENCES producto_variantes (id);
+ALTER TABLE pedidos ADD CONSTRAINT fk_pedidos_usuario FOREIGN KEY (usuario_id) REFERENCES usuarios (id);
+ALTER TABLE producto_imagenes ADD CONSTRAINT fk_producto_imagenes_producto FOREIGN KEY (producto_id) REFERENCES productos (id);
+ALTER TABLE producto_variantes ADD CONSTRAINT fk_producto_variantes_producto FOREIGN KEY (producto_id) REFERENCES productos (id);
+ALTER TABLE producto_variantes ADD CONSTRAINT fk_producto_variantes_talle FOREIGN KEY (talle_id) REFERENCES talles (id);
+ALTER TABLE productos ADD CONSTRAINT fk_productos_categoria FOREIGN KEY (categoria_id) REFERENCES categorias (id);
+
+-- Índices declarados en las entidades
+CREATE INDEX idx_productos_activo_stock ON productos (activo, tiene_stock);
+CREATE INDEX idx_ventas_diarias_producto_producto ON ventas_diarias_producto (producto_id);
@@ -0,0 +1,34 @@
+-- =============================================
+-- ÍNDICES PARA LAS CONSULTAS DE LOS REPOSITORIOS
+-- =============================================
+-- Índices compuestos en el orden de las columnas de filtro y de orden de cada consulta.
+-- RepositorioIndicesTest verifica con EXPLAIN que las consultas @Query los usen.
+
+-- Pedidos: listados por cursor (fecha_pedido, id), historial del usuario, filtros por estado y métricas por período
+CREATE INDEX idx_pedidos_fecha ON pedidos (fecha_pedido, id);
+CREATE INDEX idx_pedidos_usuario_fecha ON pedidos (usuario_id, fecha_pedido, id);
+CREATE INDEX idx_pedidos_estado_fecha ON pedidos (estado, fecha_pedido, id);
+
+-- Detalles de pedido: por pedido y ventas por variante
+CREATE INDEX idx_detalles_pedido_pedido ON detalles_pedido (pedido_id);
+CREATE INDEX idx_detalles_pedido_variante ON detalles_pedido (producto_variante_id);
+
+-- Productos: listados por categoría, destacados y marcas del catálogo activo
+CREATE INDEX idx_productos_categoria_activo ON productos (categoria_id, activo, fecha_creacion);
+CREATE INDEX idx_productos_activo_destacado ON productos (activo, destacado);
+CREATE INDEX idx_productos_activo_marca ON productos (activo, marca);
+
+-- Variantes: disponibles por producto y alertas de stock
+CREATE INDEX idx_producto_variantes_producto_activo ON producto_variantes (producto_id, activo, stock);
+CREATE INDEX idx_producto_variantes_activo_stock ON producto_variantes (activo, stock);
+
+-- Imágenes de producto en orden
+CREATE INDEX idx_producto_imagenes_producto ON producto_imagenes (producto_id, orden);
+
+-- Carritos: vencidos y abandonados; ítems por variante
+CREATE INDEX idx_carritos_expiracion ON carritos (fecha_expiracion);
+CREATE INDEX idx_carritos_actualizacion ON carritos (fecha_actualizacion);
+CREATE INDEX idx_items_carrito_variante ON items_carrito (producto_variante_id);
+
+-- Categorías activas en orden de visualización
+CREATE INDEX idx_categorias_activa_orden ON categorias (activa, orden_visualizacion);
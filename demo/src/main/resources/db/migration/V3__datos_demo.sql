@@ -1,8 +1,7 @@
 -- =============================================
 -- DATOS DE DEMO PARA E-COMMERCE DE ROPA MASCULINA
 -- =============================================
--- Nota: Con spring.jpa.hibernate.ddl-auto=create-drop las tablas 
--- se crean vacías al inicio, no necesitamos DELETE.
+-- Se cargan una sola vez, como migración, sobre las tablas recién creadas por V1.
 
 -- =============================================
 -- USUARIO DEMO (Para checkout sin registro real)
@@ -138,6 +137,11 @@ INSERT INTO producto_variantes (id, producto_id, talle_id, color, codigo_color,
 (41, 10, 3, 'Celeste', '#87CEEB', 15, 3, 'CAM-OXF-001-L-CEL', true, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
 (42, 10, 4, 'Celeste', '#87CEEB', 10, 3, 'CAM-OXF-001-XL-CEL', true, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
 
+-- Stock agregado por producto (suma de variantes activas)
+UPDATE productos p SET stock_total = (
+    SELECT COALESCE(SUM(v.stock), 0) FROM producto_variantes v WHERE v.producto_id = p.id AND v.activo = true);
+UPDATE productos SET tiene_stock = (stock_total > 0);
+
 -- =============================================
 -- CUPONES DE DESCUENTO
 -- =============================================
@@ -160,3 +164,15 @@ INSERT INTO cupones (id, codigo, descripcion, tipo_descuento, valor_descuento, m
 -- Cupón 5: $10000 de descuento para compras grandes
 INSERT INTO cupones (id, codigo, descripcion, tipo_descuento, valor_descuento, monto_minimo, descuento_maximo, fecha_inicio, fecha_fin, usos_maximos, usos_actuales, activo, fecha_creacion, fecha_actualizacion) VALUES
 (5, 'VIP10000', 'Descuento de $10000 en compras mayores a $80000', 'FIJO', 10000.00, 80000.00, NULL, CURRENT_TIMESTAMP, TIMESTAMPADD(YEAR, 1, CURRENT_TIMESTAMP), 10, 0, true, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+
+-- =============================================
+-- SECUENCIAS DE IDENTIDAD
+-- =============================================
+-- Los INSERT con ID explícito no avanzan las columnas IDENTITY de H2:
+-- se reinician después de los datos de demo para que las altas nuevas no choquen.
+ALTER TABLE usuarios ALTER COLUMN id RESTART WITH 3;
+ALTER TABLE categorias ALTER COLUMN id RESTART WITH 5;
+ALTER TABLE talles ALTER COLUMN id RESTART WITH 6;
+ALTER TABLE productos ALTER COLUMN id RESTART WITH 11;
+ALTER TABLE producto_variantes ALTER COLUMN id RESTART WITH 43;
+ALTER TABLE cupones ALTER COLUMN id RESTART WITH 6;
@@ -0,0 +1,12 @@
+-- =============================================
+-- MARCAS DE AGUA DE PROCESOS INCREMENTALES
+-- =============================================
+-- Hasta dónde avanzó cada proceso que recorre una tabla por fecha (fecha, id),
+-- para retomar desde ahí y no volver a leerla completa.
+
+CREATE TABLE marcas_proceso (
+    nombre varchar(50) not null,
+    fecha timestamp(6) not null,
+    ultimo_id bigint not null,
+    primary key (nombre)
+);
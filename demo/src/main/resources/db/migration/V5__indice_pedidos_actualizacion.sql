@@ -0,0 +1,7 @@
+-- =============================================
+-- ÍNDICE DE PEDIDOS POR FECHA DE ACTUALIZACIÓN
+-- =============================================
+-- La reconstrucción del rollup de ventas lee los pedidos modificados en los últimos minutos,
+-- para saber qué eventos recibidos durante la reconstrucción ya están en ella.
+
+CREATE INDEX idx_pedidos_actualizacion ON pedidos (fecha_actualizacion);
@@ -0,0 +1,40 @@
+package ecommersDemo.demo;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Registra las sentencias que prepara Hibernate en el hilo de un test, sin modificarlas
+ * (las tareas programadas de la aplicación corren en otros hilos).
+ * Está registrado para todos los tests en config/application.properties, así los que
+ * cuentan o revisan SQL comparten el contexto de Spring con los demás.
+ */
+public class SentenciasSql implements StatementInspector {
+
+	private static final List<String> SENTENCIAS = new CopyOnWriteArrayList<>();
+	private static volatile Thread hilo;
+
+	/**
+	 * Ejecuta la operación en el hilo actual y devuelve las sentencias SQL que emitió.
+	 */
+	public static List<String> capturar(Runnable operacion) {
+		SENTENCIAS.clear();
+		hilo = Thread.currentThread();
+		try {
+			operacion.run();
+		} finally {
+			hilo = null;
+		}
+		return List.copyOf(SENTENCIAS);
+	}
+
+	@Override
+	public String inspect(String sql) {
+		if (Thread.currentThread() == hilo) {
+			SENTENCIAS.add(sql);
+		}
+		return sql;
+	}
+}
@@ -0,0 +1,61 @@
+package ecommersDemo.demo.repository;
+
+import ecommersDemo.demo.SentenciasSql;
+import ecommersDemo.demo.dto.ProductoDTO;
+import ecommersDemo.demo.model.Producto;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que armar los DTOs de una página del catálogo use una cantidad
+ * fija de sentencias SQL, independiente del tamaño de la página.
+ */
+@SpringBootTest
+class ProductoRepositoryFetchTest {
+
+	@Autowired
+	private ProductoRepository productoRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void paginaDeCatalogoNoCreceConElTamanio() {
+		long chica = contarSentencias(2, ProductoDTO::new);
+		long grande = contarSentencias(8, ProductoDTO::new);
+
+		assertThat(grande).isEqualTo(chica);
+	}
+
+	@Test
+	void paginaConVariantesNoCreceConElTamanio() {
+		long chica = contarSentencias(2, p -> new ProductoDTO(p, true));
+		long grande = contarSentencias(8, p -> new ProductoDTO(p, true));
+
+		assertThat(grande).isEqualTo(chica);
+	}
+
+	private long contarSentencias(int tamanio, Function<Producto, ProductoDTO> mapper) {
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		tx.setReadOnly(true);
+
+		List<ProductoDTO> pagina = new ArrayList<>();
+		List<String> sentencias = SentenciasSql.capturar(() -> pagina.addAll(tx.execute(status -> productoRepository
+				.findByActivoTrue(PageRequest.of(0, tamanio))
+				.map(mapper)
+				.getContent())));
+
+		assertThat(pagina).hasSize(tamanio);
+		return sentencias.size();
+	}
+}
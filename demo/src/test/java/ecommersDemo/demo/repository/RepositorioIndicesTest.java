@@ -0,0 +1,172 @@
+package ecommersDemo.demo.repository;
+
+import ecommersDemo.demo.SentenciasSql;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica con EXPLAIN que cada consulta @Query de los repositorios acceda a sus tablas
+ * por un índice (o la clave primaria) y no recorriendo la tabla completa.
+ * Las consultas se ejecutan una vez con argumentos de ejemplo para capturar el SQL que genera Hibernate.
+ */
+@SpringBootTest
+class RepositorioIndicesTest {
+
+	/**
+	 * Consultas que leen la tabla completa a propósito, con el motivo.
+	 */
+	private static final Map<String, String> RECORRIDOS_COMPLETOS = Map.of(
+			"PedidoRepository.agruparParaRollup", "reconstrucción del rollup: agrupa todos los pedidos",
+			"PedidoRepository.findCompradoresPorDia", "carga inicial de los sketches: lee todos los pedidos",
+			"DetallePedidoRepository.agruparParaRollup", "reconstrucción del rollup: agrupa todos los detalles",
+			"DetallePedidoRepository.agruparCategoriasParaRollup", "reconstrucción del rollup: agrupa todos los detalles",
+			"CarritoRepository.findCarritosNoVacios", "lista todos los carritos con ítems",
+			"UsuarioRepository.buscarPorNombreOApellido", "LIKE con comodín inicial: ningún índice B-tree aplica");
+
+	@Autowired
+	private ApplicationContext applicationContext;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void cadaConsultaUsaUnIndice() throws SQLException {
+		Repositories repositorios = new Repositories(applicationContext);
+		List<String> revisadas = new ArrayList<>();
+		List<String> sinIndice = new ArrayList<>();
+
+		for (Class<?> dominio : repositorios) {
+			RepositoryInformation informacion = repositorios.getRequiredRepositoryInformation(dominio);
+			Class<?> interfaz = informacion.getRepositoryInterface();
+			if (!interfaz.getPackageName().equals(getClass().getPackageName())) {
+				continue;
+			}
+			Object repositorio = repositorios.getRepositoryFor(dominio).orElseThrow();
+
+			for (Method metodo : interfaz.getDeclaredMethods()) {
+				if (!metodo.isAnnotationPresent(Query.class)) {
+					continue;
+				}
+				String nombre = interfaz.getSimpleName() + "." + metodo.getName();
+				revisadas.add(nombre);
+				if (RECORRIDOS_COMPLETOS.containsKey(nombre)) {
+					continue;
+				}
+
+				for (String sql : capturarSql(repositorio, metodo)) {
+					String plan = explicar(sql);
+					if (plan.contains(".tableScan")) {
+						sinIndice.add(nombre + " -> " + plan);
+					}
+				}
+			}
+		}
+
+		assertThat(revisadas).containsAll(RECORRIDOS_COMPLETOS.keySet());
+		assertThat(revisadas).hasSizeGreaterThan(RECORRIDOS_COMPLETOS.size());
+		assertThat(sinIndice).isEmpty();
+	}
+
+	// ==================== MÉTODOS AUXILIARES ====================
+
+	/**
+	 * Ejecuta la consulta con argumentos de ejemplo, en una transacción que se descarta,
+	 * y devuelve las sentencias SQL que emitió.
+	 */
+	private List<String> capturarSql(Object repositorio, Method metodo) {
+		Object[] argumentos = new Object[metodo.getParameterCount()];
+		for (int i = 0; i < argumentos.length; i++) {
+			argumentos[i] = ejemplo(metodo.getParameterTypes()[i]);
+		}
+
+		TransactionTemplate tx = new TransactionTemplate(transactionManager);
+		List<String> sentencias = SentenciasSql.capturar(() -> tx.executeWithoutResult(status -> {
+			try {
+				metodo.invoke(repositorio, argumentos);
+			} catch (IllegalAccessException | InvocationTargetException e) {
+				// Alcanza con haber emitido el SQL: el resultado con datos de ejemplo no importa
+			}
+			status.setRollbackOnly();
+		}));
+
+		assertThat(sentencias).as("SQL de %s", metodo.getName()).isNotEmpty();
+		return sentencias;
+	}
+
+	private String explicar(String sql) throws SQLException {
+		try (Connection conexion = dataSource.getConnection();
+			 PreparedStatement explain = conexion.prepareStatement("EXPLAIN " + sql)) {
+			for (int i = 1; i <= explain.getParameterMetaData().getParameterCount(); i++) {
+				explain.setObject(i, null);
+			}
+			try (ResultSet plan = explain.executeQuery()) {
+				plan.next();
+				return plan.getString(1);
+			}
+		}
+	}
+
+	private static Object ejemplo(Class<?> tipo) {
+		if (tipo == Long.class || tipo == long.class) {
+			return 1L;
+		}
+		if (tipo == Integer.class || tipo == int.class) {
+			return 1;
+		}
+		if (tipo == String.class) {
+			return "a";
+		}
+		if (tipo == BigDecimal.class) {
+			return BigDecimal.ONE;
+		}
+		if (tipo == LocalDateTime.class) {
+			return LocalDateTime.now();
+		}
+		if (tipo == LocalDate.class) {
+			return LocalDate.now();
+		}
+		if (tipo.isEnum()) {
+			return tipo.getEnumConstants()[0];
+		}
+		if (Collection.class.isAssignableFrom(tipo)) {
+			return List.of(1L);
+		}
+		if (tipo == Pageable.class) {
+			return PageRequest.of(0, 10);
+		}
+		if (tipo == Limit.class) {
+			return Limit.of(10);
+		}
+		throw new IllegalArgumentException("Sin argumento de ejemplo para " + tipo);
+	}
+}
@@ -0,0 +1,199 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.ProductoDTO;
+import ecommersDemo.demo.dto.ProductoVarianteDTO;
+import ecommersDemo.demo.dto.request.AgregarItemCarritoRequest;
+import ecommersDemo.demo.dto.request.CrearPedidoRequest;
+import ecommersDemo.demo.dto.request.ProductoCreateRequest;
+import ecommersDemo.demo.dto.request.VarianteCreateRequest;
+import ecommersDemo.demo.event.CuponModificadoEvent;
+import ecommersDemo.demo.exception.BadRequestException;
+import ecommersDemo.demo.model.Cupon;
+import ecommersDemo.demo.model.Cupon.TipoDescuento;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.repository.CuponRepository;
+import ecommersDemo.demo.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Muchos checkouts concurrentes con un mismo cupón de usos limitados:
+ * se canjea exactamente usosMaximos veces y el volcado deja usosActuales en ese valor.
+ */
+@SpringBootTest
+class CanjeCuponesConcurrenciaTest {
+
+	private static final int COMPRADORES = 100;
+	private static final int USOS_MAXIMOS = 10;
+
+	@Autowired
+	private PedidoService pedidoService;
+
+	@Autowired
+	private CarritoService carritoService;
+
+	@Autowired
+	private ProductoService productoService;
+
+	@Autowired
+	private CanjeCupones canjeCupones;
+
+	@Autowired
+	private CuponRepository cuponRepository;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Test
+	void checkoutsConcurrentesNoSuperanUsosMaximos() throws Exception {
+		Cupon cupon = crearCupon("CONCURRENCIA10", USOS_MAXIMOS);
+		Long varianteId = crearVariante("REM-CUP-CONC");
+
+		List<Long> compradores = new ArrayList<>();
+		for (int i = 0; i < COMPRADORES; i++) {
+			Usuario usuario = usuarioRepository.save(new Usuario(
+					"Comprador", String.valueOf(i), "comprador" + i + "@cupones.test", "secreto"));
+			carritoService.agregarItemPorUsuario(usuario.getId(), new AgregarItemCarritoRequest(varianteId, 1));
+			compradores.add(usuario.getId());
+		}
+
+		AtomicInteger exitosos = new AtomicInteger();
+		AtomicInteger rechazados = new AtomicInteger();
+		Queue<Throwable> inesperados = new ConcurrentLinkedQueue<>();
+		CountDownLatch largada = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		List<Future<?>> tareas = new ArrayList<>();
+		for (Long usuarioId : compradores) {
+			tareas.add(executor.submit(() -> {
+				try {
+					largada.await();
+					pedidoService.crearPedidoDesdeCarrito(usuarioId, pedido(cupon.getCodigo()));
+					exitosos.incrementAndGet();
+				} catch (BadRequestException e) {
+					rechazados.incrementAndGet();
+				} catch (Throwable e) {
+					inesperados.add(e);
+				}
+			}));
+		}
+		largada.countDown();
+		for (Future<?> tarea : tareas) {
+			tarea.get(2, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+
+		assertThat(inesperados).isEmpty();
+		assertThat(exitosos.get()).isEqualTo(USOS_MAXIMOS);
+		assertThat(rechazados.get()).isEqualTo(COMPRADORES - USOS_MAXIMOS);
+		assertThat(canjeCupones.usosComprometidos(cupon.getCodigo())).isEqualTo(USOS_MAXIMOS);
+
+		canjeCupones.volcarUsos();
+		assertThat(cuponRepository.findByCodigo(cupon.getCodigo()).orElseThrow().getUsosActuales())
+				.isEqualTo(USOS_MAXIMOS);
+	}
+
+	@Test
+	void cambioDelCuponSeAplicaAlContador() {
+		Cupon cupon = crearCupon("CAMBIO2", 2);
+		assertThat(canjeCupones.reservar(cupon.getCodigo())).isTrue();
+		assertThat(canjeCupones.reservar(cupon.getCodigo())).isTrue();
+		assertThat(canjeCupones.agotado(cupon.getCodigo())).isTrue();
+
+		// Subir el límite habilita usos nuevos sin reiniciar
+		modificar(cupon.getCodigo(), actual -> actual.setUsosMaximos(3));
+		assertThat(canjeCupones.reservar(cupon.getCodigo())).isTrue();
+		assertThat(canjeCupones.reservar(cupon.getCodigo())).isFalse();
+
+		// Una corrección manual de los usos se traslada al contador
+		modificar(cupon.getCodigo(), actual -> actual.setUsosActuales(0));
+		assertThat(canjeCupones.usosComprometidos(cupon.getCodigo())).isZero();
+
+		// Desactivado no admite usos aunque le queden
+		modificar(cupon.getCodigo(), actual -> actual.setActivo(false));
+		assertThat(canjeCupones.reservar(cupon.getCodigo())).isFalse();
+	}
+
+	@Test
+	void cambioHechoEnLaBaseSeTomaEnLaRecarga() {
+		Cupon cupon = crearCupon("RECARGA1", 1);
+		assertThat(canjeCupones.reservar(cupon.getCodigo())).isTrue();
+		assertThat(canjeCupones.agotado(cupon.getCodigo())).isTrue();
+
+		// Sin evento: la fila cambia por fuera de la aplicación
+		canjeCupones.volcarUsos();
+		Cupon actual = cuponRepository.findByCodigo(cupon.getCodigo()).orElseThrow();
+		actual.setUsosMaximos(2);
+		cuponRepository.save(actual);
+		assertThat(canjeCupones.agotado(cupon.getCodigo())).isTrue();
+
+		canjeCupones.recargarContadores();
+		assertThat(canjeCupones.reservar(cupon.getCodigo())).isTrue();
+		assertThat(canjeCupones.reservar(cupon.getCodigo())).isFalse();
+	}
+
+	// ==================== MÉTODOS AUXILIARES ====================
+
+	/**
+	 * Vuelca los usos pendientes, modifica la fila del cupón como lo haría un administrador
+	 * y publica el evento (fuera de una transacción se procesa en el acto).
+	 */
+	private void modificar(String codigo, Consumer<Cupon> cambio) {
+		canjeCupones.volcarUsos();
+		Cupon cupon = cuponRepository.findByCodigo(codigo).orElseThrow();
+		cambio.accept(cupon);
+		cuponRepository.save(cupon);
+		eventPublisher.publishEvent(new CuponModificadoEvent(codigo));
+	}
+
+	private Cupon crearCupon(String codigo, int usosMaximos) {
+		Cupon cupon = new Cupon(codigo, "Cupón de prueba", TipoDescuento.FIJO, new BigDecimal("1000.00"));
+		cupon.setFechaInicio(LocalDateTime.now().minusDays(1));
+		cupon.setFechaFin(LocalDateTime.now().plusDays(30));
+		cupon.setUsosMaximos(usosMaximos);
+		return cuponRepository.save(cupon);
+	}
+
+	private Long crearVariante(String sku) {
+		ProductoCreateRequest producto = new ProductoCreateRequest();
+		producto.setNombre("Remera Cupones");
+		producto.setPrecio(new BigDecimal("15000.00"));
+		producto.setCategoriaId(1L);
+		producto.setSku(sku);
+		ProductoDTO creado = productoService.crearProducto(producto);
+
+		VarianteCreateRequest variante = new VarianteCreateRequest();
+		variante.setTalleId(2L);
+		variante.setColor("Blanco");
+		variante.setStock(COMPRADORES);
+		variante.setSku(sku + "-M-BLA");
+		ProductoVarianteDTO varianteCreada = productoService.agregarVariante(creado.getId(), variante);
+		return varianteCreada.getId();
+	}
+
+	private CrearPedidoRequest pedido(String codigoCupon) {
+		CrearPedidoRequest request = new CrearPedidoRequest();
+		request.setDireccionEnvio("Av. Corrientes 1234");
+		request.setCiudadEnvio("Buenos Aires");
+		request.setMetodoPago(MetodoPago.TRANSFERENCIA);
+		request.setCodigoCupon(codigoCupon);
+		return request;
+	}
+}
@@ -0,0 +1,177 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.SentenciasSql;
+import ecommersDemo.demo.dto.CarritoDTO;
+import ecommersDemo.demo.dto.request.ActualizarCantidadRequest;
+import ecommersDemo.demo.dto.request.AgregarItemCarritoRequest;
+import ecommersDemo.demo.model.Carrito;
+import ecommersDemo.demo.model.ItemCarrito;
+import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.repository.CarritoRepository;
+import ecommersDemo.demo.repository.ItemCarritoRepository;
+import ecommersDemo.demo.repository.ProductoVarianteRepository;
+import ecommersDemo.demo.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que cada operación de CarritoService emita una cantidad fija de sentencias SQL,
+ * independiente de cuántos ítems tenga el carrito.
+ */
+@SpringBootTest
+class CarritoServiceSentenciasTest {
+
+	// Variantes de productos y talles distintos: sin fetch join, cada una sumaría sus propias consultas
+	private static final List<Long> VARIANTES = List.of(1L, 9L, 13L, 16L, 20L, 2L, 10L);
+
+	// Stock 5: al fusionar 3 + 4 unidades la cantidad se ajusta al stock
+	private static final Long VARIANTE_POCO_STOCK = 12L;
+
+	private static final AtomicInteger USUARIOS = new AtomicInteger();
+
+	@Autowired
+	private CarritoService carritoService;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Autowired
+	private CarritoRepository carritoRepository;
+
+	@Autowired
+	private ItemCarritoRepository itemCarritoRepository;
+
+	@Autowired
+	private ProductoVarianteRepository varianteRepository;
+
+	@Test
+	void carritoPersistidoUsaSentenciasFijas() {
+		Map<String, Integer> chico = medirCarritoDeUsuario(1);
+		Map<String, Integer> grande = medirCarritoDeUsuario(5);
+
+		assertThat(grande).isEqualTo(chico);
+		assertThat(chico).isEqualTo(Map.of(
+				"obtener", 1,
+				"agregar nuevo", 4,
+				"agregar existente", 4,
+				"actualizar cantidad", 3,
+				"eliminar item", 3,
+				"vaciar", 4));
+	}
+
+	@Test
+	void carritoAnonimoEnMemoriaSoloLeeLaVariante() {
+		String sessionId = "sentencias-" + USUARIOS.incrementAndGet();
+		carritoService.agregarItemPorSession(sessionId, new AgregarItemCarritoRequest(VARIANTES.get(0), 1));
+
+		Map<String, Integer> sentencias = new LinkedHashMap<>();
+		sentencias.put("obtener", contar(() -> carritoService.obtenerCarritoPorSession(sessionId)));
+		CarritoDTO carrito = carritoService.obtenerCarritoPorSession(sessionId);
+		sentencias.put("agregar", contar(() -> carritoService.agregarItemPorSession(
+				sessionId, new AgregarItemCarritoRequest(VARIANTES.get(1), 1))));
+		Long itemId = carrito.getItems().getFirst().getId();
+		sentencias.put("actualizar cantidad", contar(() -> carritoService.actualizarCantidadItem(
+				itemId, new ActualizarCantidadRequest(2))));
+		sentencias.put("eliminar item", contar(() -> carritoService.eliminarItem(itemId)));
+		sentencias.put("vaciar", contar(() -> carritoService.vaciarCarritoPorSession(sessionId)));
+
+		assertThat(sentencias).isEqualTo(Map.of(
+				"obtener", 0,
+				"agregar", 1,
+				"actualizar cantidad", 1,
+				"eliminar item", 0,
+				"vaciar", 0));
+	}
+
+	/**
+	 * El upsert de la fusión va por JDBC en un único lote y no pasa por el contador:
+	 * se cuentan las lecturas de los carritos, los borrados, la actividad del destino y la relectura final.
+	 */
+	@Test
+	void transferenciaUsaSentenciasFijasYAjustaAlStock() {
+		assertThat(medirTransferencia(1, false)).isEqualTo(medirTransferencia(5, false)).isEqualTo(4);
+		assertThat(medirTransferencia(1, true)).isEqualTo(medirTransferencia(5, true)).isEqualTo(5);
+	}
+
+	// ==================== MÉTODOS AUXILIARES ====================
+
+	/**
+	 * Cuenta las sentencias de cada operación sobre el carrito de un usuario nuevo
+	 * que ya tiene {@code items} ítems.
+	 */
+	private Map<String, Integer> medirCarritoDeUsuario(int items) {
+		Long usuarioId = crearUsuario();
+		for (Long varianteId : VARIANTES.subList(0, items)) {
+			carritoService.agregarItemPorUsuario(usuarioId, new AgregarItemCarritoRequest(varianteId, 1));
+		}
+
+		Map<String, Integer> sentencias = new LinkedHashMap<>();
+		sentencias.put("obtener", contar(() -> carritoService.obtenerCarritoPorUsuario(usuarioId)));
+		sentencias.put("agregar nuevo", contar(() -> carritoService.agregarItemPorUsuario(
+				usuarioId, new AgregarItemCarritoRequest(VARIANTES.getLast(), 1))));
+		sentencias.put("agregar existente", contar(() -> carritoService.agregarItemPorUsuario(
+				usuarioId, new AgregarItemCarritoRequest(VARIANTES.getLast(), 1))));
+
+		Long itemId = carritoService.obtenerCarritoPorUsuario(usuarioId).getItems().stream()
+				.filter(item -> item.getProductoVarianteId().equals(VARIANTES.getLast()))
+				.findFirst()
+				.orElseThrow()
+				.getId();
+		sentencias.put("actualizar cantidad", contar(() -> carritoService.actualizarCantidadItem(
+				itemId, new ActualizarCantidadRequest(1))));
+		sentencias.put("eliminar item", contar(() -> carritoService.eliminarItem(itemId)));
+		sentencias.put("vaciar", contar(() -> carritoService.vaciarCarritoPorUsuario(usuarioId)));
+		return sentencias;
+	}
+
+	/**
+	 * Transfiere a un usuario con carrito un carrito anónimo de {@code items} ítems,
+	 * en memoria o persistido, y devuelve las sentencias de la transferencia.
+	 */
+	private int medirTransferencia(int items, boolean persistido) {
+		Long usuarioId = crearUsuario();
+		carritoService.agregarItemPorUsuario(usuarioId, new AgregarItemCarritoRequest(VARIANTE_POCO_STOCK, 3));
+
+		String sessionId = "transferencia-" + USUARIOS.incrementAndGet();
+		Map<Long, Integer> lineas = new LinkedHashMap<>();
+		lineas.put(VARIANTE_POCO_STOCK, 4);
+		VARIANTES.subList(0, items - 1).forEach(varianteId -> lineas.put(varianteId, 1));
+		if (persistido) {
+			Carrito carrito = carritoRepository.save(new Carrito(sessionId));
+			lineas.forEach((varianteId, cantidad) -> itemCarritoRepository.save(new ItemCarrito(
+					carrito, varianteRepository.findConProductoYTalleById(varianteId).orElseThrow(), cantidad)));
+		} else {
+			lineas.forEach((varianteId, cantidad) -> carritoService.agregarItemPorSession(
+					sessionId, new AgregarItemCarritoRequest(varianteId, cantidad)));
+		}
+
+		int sentencias = contar(() -> carritoService.transferirCarritoAUsuario(sessionId, usuarioId));
+
+		CarritoDTO carrito = carritoService.obtenerCarritoPorUsuario(usuarioId);
+		assertThat(carrito.getCantidadProductosDistintos()).isEqualTo(items);
+		assertThat(carrito.getItems())
+				.filteredOn(item -> item.getProductoVarianteId().equals(VARIANTE_POCO_STOCK))
+				.singleElement()
+				.satisfies(item -> assertThat(item.getCantidad()).isEqualTo(5));
+		assertThat(carritoRepository.existsBySessionId(sessionId)).isFalse();
+		return sentencias;
+	}
+
+	private Long crearUsuario() {
+		return usuarioRepository.save(new Usuario(
+				"Carrito", "Sentencias", "carrito" + USUARIOS.incrementAndGet() + "@sentencias.test", "secreto")).getId();
+	}
+
+	private int contar(Supplier<CarritoDTO> operacion) {
+		return SentenciasSql.capturar(operacion::get).size();
+	}
+}
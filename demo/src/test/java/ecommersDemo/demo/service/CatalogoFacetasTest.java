@@ -0,0 +1,123 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.FacetaValorDTO;
+import ecommersDemo.demo.dto.ProductoDTO;
+import ecommersDemo.demo.dto.ProductoVarianteDTO;
+import ecommersDemo.demo.dto.request.FiltroCatalogoRequest;
+import ecommersDemo.demo.service.CatalogoSnapshot.ProductoCatalogo;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Talle, color y stock se evalúan sobre la misma variante:
+ * un producto con S azul y M rojo no coincide con "S y rojo".
+ * El índice que un snapshot deriva del anterior da lo mismo que uno construido de cero.
+ */
+class CatalogoFacetasTest {
+
+	private static final long S = 1L;
+	private static final long M = 2L;
+
+	private final CatalogoSnapshot snapshot = CatalogoSnapshot.completo(1, List.of(
+			producto(1L, "1000", variante(11L, S, "Azul", 3), variante(12L, M, "Rojo", 2)),
+			producto(2L, "2000", variante(21L, S, "Rojo", 0), variante(22L, M, "Rojo", 4)),
+			producto(3L, "3000", variante(31L, S, "Rojo", 1))));
+
+	@Test
+	void talleYColorDebenCoincidirEnLaMismaVariante() {
+		FiltroCatalogoRequest filtro = new FiltroCatalogoRequest();
+		filtro.setTalleId(List.of(S));
+		filtro.setColor(List.of("rojo"));
+
+		CatalogoFacetas.Resultado resultado = snapshot.facetas().filtrar(filtro, null);
+
+		assertThat(ids(resultado)).containsExactlyInAnyOrder(2L, 3L);
+	}
+
+	@Test
+	void conStockMiraElStockDeLaVarianteElegida() {
+		FiltroCatalogoRequest filtro = new FiltroCatalogoRequest();
+		filtro.setTalleId(List.of(S));
+		filtro.setConStock(true);
+
+		CatalogoFacetas.Resultado resultado = snapshot.facetas().filtrar(filtro, null);
+
+		assertThat(ids(resultado)).containsExactlyInAnyOrder(1L, 3L);
+		// Colores con stock en talle S: azul en el 1 y rojo en el 3 (el S rojo del 2 está agotado)
+		assertThat(cantidades(resultado.colores())).containsExactly("azul=1", "rojo=1");
+		// Talles que tienen una variante roja con stock
+		filtro.setColor(List.of("rojo"));
+		assertThat(cantidades(snapshot.facetas().filtrar(filtro, null).talles())).containsExactly("1=1", "2=2");
+	}
+
+	@Test
+	void elIndiceDerivadoDelSnapshotAnteriorCoincideConUnoReconstruido() {
+		FiltroCatalogoRequest rojoM = filtro(List.of(M), List.of("rojo"), null, null);
+		List<Object> antes = resumen(snapshot.facetas().filtrar(rojoM, null));
+		CatalogoSnapshot nuevo = snapshot.aplicar(List.of(
+				producto(1L, "2500", variante(11L, S, "Azul", 0), variante(13L, M, "Verde", 5)),
+				producto(4L, "500", variante(41L, M, "Rojo", 2))), Set.of(2L));
+		CatalogoSnapshot reconstruido = CatalogoSnapshot.completo(nuevo.getVersion(), nuevo.porId());
+
+		for (FiltroCatalogoRequest filtro : List.of(
+				new FiltroCatalogoRequest(),
+				rojoM,
+				filtro(List.of(S), null, true, null),
+				filtro(null, List.of("verde", "azul"), null, new BigDecimal("1000")))) {
+			assertThat(resumen(nuevo.facetas().filtrar(filtro, null)))
+					.isEqualTo(resumen(reconstruido.facetas().filtrar(filtro, null)));
+		}
+	}
+
+	// ==================== DATOS ====================
+
+	private static ProductoCatalogo producto(Long id, String precio, ProductoVarianteDTO... variantes) {
+		ProductoDTO detalle = new ProductoDTO();
+		detalle.setId(id);
+		detalle.setVariantes(new ArrayList<>(List.of(variantes)));
+		ProductoDTO resumen = new ProductoDTO();
+		resumen.setId(id);
+		resumen.setPrecioFinal(new BigDecimal(precio));
+		return new ProductoCatalogo(resumen, detalle);
+	}
+
+	private static ProductoVarianteDTO variante(Long id, long talleId, String color, int stock) {
+		ProductoVarianteDTO variante = new ProductoVarianteDTO();
+		variante.setId(id);
+		variante.setTalleId(talleId);
+		variante.setTalleNombre(talleId == S ? "S" : "M");
+		variante.setColor(color);
+		variante.setStock(stock);
+		variante.setActivo(true);
+		return variante;
+	}
+
+	private static FiltroCatalogoRequest filtro(List<Long> talles, List<String> colores, Boolean conStock,
+												BigDecimal precioMin) {
+		FiltroCatalogoRequest filtro = new FiltroCatalogoRequest();
+		filtro.setTalleId(talles);
+		filtro.setColor(colores);
+		filtro.setConStock(conStock);
+		filtro.setPrecioMin(precioMin);
+		return filtro;
+	}
+
+	private static List<Object> resumen(CatalogoFacetas.Resultado resultado) {
+		return List.of(ids(resultado), cantidades(resultado.talles()), cantidades(resultado.colores()),
+				resultado.conStock(), String.valueOf(resultado.precioMinimo()), String.valueOf(resultado.precioMaximo()));
+	}
+
+	private static List<Long> ids(CatalogoFacetas.Resultado resultado) {
+		return resultado.productos().stream().map(ProductoCatalogo::id).toList();
+	}
+
+	private static List<String> cantidades(List<FacetaValorDTO> valores) {
+		return valores.stream().map(v -> v.getValor() + "=" + v.getCantidad()).toList();
+	}
+}
@@ -0,0 +1,106 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.request.AgregarItemCarritoRequest;
+import ecommersDemo.demo.event.CarritoAbandonadoEvent;
+import ecommersDemo.demo.model.Carrito;
+import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.repository.CarritoRepository;
+import ecommersDemo.demo.repository.UsuarioRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que el detector publique cada carrito abandonado una vez, con sus líneas y su valor,
+ * y que lo vuelva a publicar solo si tuvo actividad y se abandonó de nuevo.
+ */
+@SpringBootTest(properties = {
+		"ecommers.carritos.abandonados.umbral=1h",
+		"ecommers.carritos.abandonados.lote=2"})
+class DetectorCarritosAbandonadosTest {
+
+	@Autowired
+	private DetectorCarritosAbandonados detector;
+
+	@Autowired
+	private SumideroCarritosAbandonadosEnMemoria sumidero;
+
+	@Autowired
+	private CarritoService carritoService;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Autowired
+	private CarritoRepository carritoRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void publicaCadaCarritoAbandonadoUnaVez() {
+		Long usuarioId = usuarioRepository.save(new Usuario(
+				"Carrito", "Abandonado", "abandonado@detector.test", "secreto")).getId();
+		carritoService.agregarItemPorUsuario(usuarioId, new AgregarItemCarritoRequest(1L, 2));
+		carritoService.agregarItemPorUsuario(usuarioId, new AgregarItemCarritoRequest(9L, 1));
+		Carrito carrito = carritoRepository.findAgregadoPorUsuario(usuarioId).orElseThrow();
+		BigDecimal total = carrito.getItems().stream()
+				.map(item -> item.getPrecioUnitario().multiply(BigDecimal.valueOf(item.getCantidad())))
+				.reduce(BigDecimal.ZERO, BigDecimal::add);
+
+		abandonar(carrito.getId(), LocalDateTime.now().minusHours(3));
+		assertThat(detectarPara(carrito.getId()))
+				.singleElement()
+				.satisfies(evento -> {
+					assertThat(evento.usuarioId()).isEqualTo(usuarioId);
+					assertThat(evento.lineas()).containsExactlyInAnyOrder(
+							new CarritoAbandonadoEvent.Linea(1L, 2),
+							new CarritoAbandonadoEvent.Linea(9L, 1));
+					assertThat(evento.total()).isEqualByComparingTo(total);
+				});
+
+		// Ya quedó detrás de la marca: no se vuelve a publicar
+		assertThat(detectarPara(carrito.getId())).isEmpty();
+
+		// Con actividad nueva sale del umbral; si se abandona otra vez se publica de nuevo
+		carritoService.agregarItemPorUsuario(usuarioId, new AgregarItemCarritoRequest(1L, 1));
+		assertThat(detectarPara(carrito.getId())).isEmpty();
+		abandonar(carrito.getId(), LocalDateTime.now().minusHours(2));
+		assertThat(detectarPara(carrito.getId()))
+				.singleElement()
+				.satisfies(evento -> assertThat(evento.lineas()).contains(new CarritoAbandonadoEvent.Linea(1L, 3)));
+	}
+
+	// ==================== MÉTODOS AUXILIARES ====================
+
+	/**
+	 * Lleva la última actividad del carrito al pasado con una actualización directa,
+	 * que no pasa por @PreUpdate.
+	 */
+	private void abandonar(Long carritoId, LocalDateTime fecha) {
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> entityManager
+				.createQuery("UPDATE Carrito c SET c.fechaActualizacion = :fecha WHERE c.id = :id")
+				.setParameter("fecha", fecha)
+				.setParameter("id", carritoId)
+				.executeUpdate());
+	}
+
+	private List<CarritoAbandonadoEvent> detectarPara(Long carritoId) {
+		detector.detectar();
+		return sumidero.consumir().stream()
+				.filter(evento -> evento.carritoId().equals(carritoId))
+				.toList();
+	}
+}
@@ -0,0 +1,79 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.PedidoDTO;
+import ecommersDemo.demo.dto.request.AgregarItemCarritoRequest;
+import ecommersDemo.demo.dto.request.CrearPedidoRequest;
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que un evento que llega después de una consulta que ya incluía su pedido
+ * no se cuente dos veces, y que los pedidos que la consulta no vio sí se sumen.
+ */
+@SpringBootTest
+class EstadisticasPedidosReconciliacionTest {
+
+	@Autowired
+	private EstadisticasPedidos estadisticasPedidos;
+
+	@Autowired
+	private PedidoService pedidoService;
+
+	@Autowired
+	private CarritoService carritoService;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Test
+	void eventoTardioYaContadoNoSeSumaDosVeces() {
+		Long usuarioId = usuarioRepository.save(new Usuario(
+				"Estadisticas", "Pedidos", "estadisticas@pedidos.test", "secreto")).getId();
+		carritoService.agregarItemPorUsuario(usuarioId, new AgregarItemCarritoRequest(16L, 1));
+		PedidoDTO pedido = pedidoService.crearPedidoDesdeCarrito(usuarioId, pedido());
+
+		estadisticasPedidos.reconciliar();
+		long pendientes = estadisticasPedidos.contar(EstadoPedido.PENDIENTE);
+		assertThat(estadisticasPedidos.contarPedidosUsuario(usuarioId)).isEqualTo(1);
+
+		// La creación ya estaba en ambas consultas: su evento tardío se descarta
+		estadisticasPedidos.onPedidoEstadoCambiado(evento(pedido.getId(), usuarioId));
+		assertThat(estadisticasPedidos.contar(EstadoPedido.PENDIENTE)).isEqualTo(pendientes);
+		assertThat(estadisticasPedidos.contarPedidosUsuario(usuarioId)).isEqualTo(1);
+
+		// Un pedido que las consultas no vieron sí se suma
+		estadisticasPedidos.onPedidoEstadoCambiado(evento(Long.MAX_VALUE, usuarioId));
+		assertThat(estadisticasPedidos.contar(EstadoPedido.PENDIENTE)).isEqualTo(pendientes + 1);
+		assertThat(estadisticasPedidos.contarPedidosUsuario(usuarioId)).isEqualTo(2);
+
+		estadisticasPedidos.reconciliar();
+		assertThat(estadisticasPedidos.contar(EstadoPedido.PENDIENTE)).isEqualTo(pendientes);
+	}
+
+	// ==================== MÉTODOS AUXILIARES ====================
+
+	private static PedidoEstadoCambiadoEvent evento(Long pedidoId, Long usuarioId) {
+		return new PedidoEstadoCambiadoEvent(pedidoId, usuarioId, LocalDate.now(), MetodoPago.TRANSFERENCIA,
+				new BigDecimal("1000.00"), null, EstadoPedido.PENDIENTE, List.of());
+	}
+
+	private CrearPedidoRequest pedido() {
+		CrearPedidoRequest request = new CrearPedidoRequest();
+		request.setDireccionEnvio("Av. Corrientes 1234");
+		request.setCiudadEnvio("Buenos Aires");
+		request.setMetodoPago(MetodoPago.TRANSFERENCIA);
+		return request;
+	}
+}
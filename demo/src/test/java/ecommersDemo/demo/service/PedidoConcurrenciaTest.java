@@ -0,0 +1,127 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.ProductoDTO;
+import ecommersDemo.demo.dto.ProductoVarianteDTO;
+import ecommersDemo.demo.dto.request.AgregarItemCarritoRequest;
+import ecommersDemo.demo.dto.request.CrearPedidoRequest;
+import ecommersDemo.demo.dto.request.ProductoCreateRequest;
+import ecommersDemo.demo.dto.request.VarianteCreateRequest;
+import ecommersDemo.demo.exception.StockInsuficienteException;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.repository.ProductoRepository;
+import ecommersDemo.demo.repository.ProductoVarianteRepository;
+import ecommersDemo.demo.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Muchos compradores concurrentes sobre un mismo SKU con poco stock:
+ * se venden exactamente las unidades disponibles y el stock nunca queda negativo.
+ */
+@SpringBootTest
+class PedidoConcurrenciaTest {
+
+	private static final int COMPRADORES = 200;
+	private static final int STOCK = 7;
+
+	@Autowired
+	private PedidoService pedidoService;
+
+	@Autowired
+	private CarritoService carritoService;
+
+	@Autowired
+	private ProductoService productoService;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Autowired
+	private ProductoRepository productoRepository;
+
+	@Autowired
+	private ProductoVarianteRepository varianteRepository;
+
+	@Test
+	void checkoutsConcurrentesNoSobrevenden() throws Exception {
+		ProductoDTO producto = crearProducto();
+		ProductoVarianteDTO variante = crearVariante(producto.getId());
+
+		List<Long> compradores = new ArrayList<>();
+		for (int i = 0; i < COMPRADORES; i++) {
+			Usuario usuario = usuarioRepository.save(new Usuario(
+					"Comprador", String.valueOf(i), "comprador" + i + "@concurrencia.test", "secreto"));
+			carritoService.agregarItemPorUsuario(usuario.getId(), new AgregarItemCarritoRequest(variante.getId(), 1));
+			compradores.add(usuario.getId());
+		}
+
+		AtomicInteger exitosos = new AtomicInteger();
+		AtomicInteger sinStock = new AtomicInteger();
+		Queue<Throwable> inesperados = new ConcurrentLinkedQueue<>();
+		CountDownLatch largada = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(32);
+		List<Future<?>> tareas = new ArrayList<>();
+		for (Long usuarioId : compradores) {
+			tareas.add(executor.submit(() -> {
+				try {
+					largada.await();
+					pedidoService.crearPedidoDesdeCarrito(usuarioId, pedido());
+					exitosos.incrementAndGet();
+				} catch (StockInsuficienteException e) {
+					sinStock.incrementAndGet();
+				} catch (Throwable e) {
+					inesperados.add(e);
+				}
+			}));
+		}
+		largada.countDown();
+		for (Future<?> tarea : tareas) {
+			tarea.get(2, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+
+		assertThat(inesperados).isEmpty();
+		assertThat(exitosos.get()).isEqualTo(STOCK);
+		assertThat(sinStock.get()).isEqualTo(COMPRADORES - STOCK);
+		assertThat(varianteRepository.obtenerStock(variante.getId())).contains(0);
+		assertThat(productoRepository.findById(producto.getId()).orElseThrow().getStockTotal()).isZero();
+	}
+
+	private ProductoDTO crearProducto() {
+		ProductoCreateRequest request = new ProductoCreateRequest();
+		request.setNombre("Remera Edición Limitada");
+		request.setPrecio(new BigDecimal("15000.00"));
+		request.setCategoriaId(1L);
+		request.setSku("REM-LIM-CONC");
+		return productoService.crearProducto(request);
+	}
+
+	private ProductoVarianteDTO crearVariante(Long productoId) {
+		VarianteCreateRequest request = new VarianteCreateRequest();
+		request.setTalleId(2L);
+		request.setColor("Negro");
+		request.setStock(STOCK);
+		request.setSku("REM-LIM-CONC-M-NEG");
+		return productoService.agregarVariante(productoId, request);
+	}
+
+	private CrearPedidoRequest pedido() {
+		CrearPedidoRequest request = new CrearPedidoRequest();
+		request.setDireccionEnvio("Av. Corrientes 1234");
+		request.setCiudadEnvio("Buenos Aires");
+		request.setMetodoPago(MetodoPago.TRANSFERENCIA);
+		return request;
+	}
+}
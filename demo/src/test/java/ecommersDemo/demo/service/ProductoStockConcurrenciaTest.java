@@ -0,0 +1,180 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.ProductoDTO;
+import ecommersDemo.demo.dto.ProductoVarianteDTO;
+import ecommersDemo.demo.dto.request.AgregarItemCarritoRequest;
+import ecommersDemo.demo.dto.request.CrearPedidoRequest;
+import ecommersDemo.demo.dto.request.ProductoCreateRequest;
+import ecommersDemo.demo.dto.request.VarianteCreateRequest;
+import ecommersDemo.demo.dto.request.VarianteUpdateRequest;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import ecommersDemo.demo.model.ProductoVariante;
+import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.repository.ProductoRepository;
+import ecommersDemo.demo.repository.ProductoVarianteRepository;
+import ecommersDemo.demo.repository.UsuarioRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checkouts concurrentes con ediciones de stock del admin sobre el mismo producto:
+ * el stock agregado del producto termina igual a la suma de sus variantes activas.
+ */
+@SpringBootTest
+class ProductoStockConcurrenciaTest {
+
+	private static final int COMPRADORES = 40;
+	private static final int EDICIONES = 25;
+	private static final List<String> COLORES_EDITADOS = List.of("Blanco", "Gris", "Azul", "Rojo");
+
+	@Autowired
+	private PedidoService pedidoService;
+
+	@Autowired
+	private CarritoService carritoService;
+
+	@Autowired
+	private ProductoService productoService;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Autowired
+	private ProductoRepository productoRepository;
+
+	@Autowired
+	private ProductoVarianteRepository varianteRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	void edicionesDelAdminNoPisanLosCheckouts() throws Exception {
+		ProductoDTO producto = crearProducto("BUZ-STOCK-CONC");
+		ProductoVarianteDTO vendida = crearVariante(producto.getId(), "BUZ-STOCK-CONC", "Negro", COMPRADORES);
+		List<ProductoVarianteDTO> editadas = new ArrayList<>();
+		for (String color : COLORES_EDITADOS) {
+			editadas.add(crearVariante(producto.getId(), "BUZ-STOCK-CONC", color, 10));
+		}
+
+		List<Long> compradores = new ArrayList<>();
+		for (int i = 0; i < COMPRADORES; i++) {
+			Usuario usuario = usuarioRepository.save(new Usuario(
+					"Comprador", String.valueOf(i), "comprador" + i + "@stock-total.test", "secreto"));
+			carritoService.agregarItemPorUsuario(usuario.getId(), new AgregarItemCarritoRequest(vendida.getId(), 1));
+			compradores.add(usuario.getId());
+		}
+
+		Queue<Throwable> inesperados = new ConcurrentLinkedQueue<>();
+		CountDownLatch largada = new CountDownLatch(1);
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		List<Future<?>> tareas = new ArrayList<>();
+		for (Long usuarioId : compradores) {
+			tareas.add(executor.submit(() -> {
+				try {
+					largada.await();
+					pedidoService.crearPedidoDesdeCarrito(usuarioId, pedido());
+				} catch (Throwable e) {
+					inesperados.add(e);
+				}
+			}));
+		}
+		// Cada admin edita en serie su propia variante mientras los checkouts commitean
+		for (ProductoVarianteDTO editada : editadas) {
+			tareas.add(executor.submit(() -> {
+				try {
+					largada.await();
+					for (int i = 0; i < EDICIONES; i++) {
+						VarianteUpdateRequest request = new VarianteUpdateRequest();
+						request.setStock(i % 7);
+						request.setActivo(i % 5 != 0);
+						productoService.actualizarVariante(editada.getId(), request);
+					}
+				} catch (Throwable e) {
+					inesperados.add(e);
+				}
+			}));
+		}
+		largada.countDown();
+		for (Future<?> tarea : tareas) {
+			tarea.get(2, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+
+		assertThat(inesperados).isEmpty();
+		assertThat(varianteRepository.obtenerStock(vendida.getId())).contains(0);
+		int esperado = varianteRepository.findByProductoId(producto.getId()).stream()
+				.mapToInt(ProductoVariante::getStockAportado)
+				.sum();
+		assertThat(productoRepository.findById(producto.getId()).orElseThrow().getStockTotal()).isEqualTo(esperado);
+	}
+
+	@Test
+	void checkoutQueCommiteaDuranteUnaEdicionNoSePierde() throws Exception {
+		ProductoDTO producto = crearProducto("BUZ-STOCK-EDIC");
+		ProductoVarianteDTO vendida = crearVariante(producto.getId(), "BUZ-STOCK-EDIC", "Negro", 5);
+		ProductoVarianteDTO editada = crearVariante(producto.getId(), "BUZ-STOCK-EDIC", "Blanco", 10);
+		Usuario usuario = usuarioRepository.save(new Usuario(
+				"Comprador", "Edicion", "comprador@stock-edicion.test", "secreto"));
+		carritoService.agregarItemPorUsuario(usuario.getId(), new AgregarItemCarritoRequest(vendida.getId(), 1));
+
+		// La edición del admin queda abierta mientras el checkout corre y commitea en otro hilo
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<?> checkout = new TransactionTemplate(transactionManager).execute(status -> {
+			VarianteUpdateRequest request = new VarianteUpdateRequest();
+			request.setStock(3);
+			productoService.actualizarVariante(editada.getId(), request);
+			Future<?> tarea = executor.submit(() -> pedidoService.crearPedidoDesdeCarrito(usuario.getId(), pedido()));
+			try {
+				tarea.get(500, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				// Bloqueado por la fila del producto que tiene la edición: sigue al commitear
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException(e);
+			}
+			return tarea;
+		});
+		checkout.get(1, TimeUnit.MINUTES);
+		executor.shutdown();
+
+		assertThat(productoRepository.findById(producto.getId()).orElseThrow().getStockTotal()).isEqualTo(4 + 3);
+	}
+
+	private ProductoDTO crearProducto(String sku) {
+		ProductoCreateRequest request = new ProductoCreateRequest();
+		request.setNombre("Buzo Stock Compartido " + sku);
+		request.setPrecio(new BigDecimal("32000.00"));
+		request.setCategoriaId(1L);
+		request.setSku(sku);
+		return productoService.crearProducto(request);
+	}
+
+	private ProductoVarianteDTO crearVariante(Long productoId, String sku, String color, int stock) {
+		VarianteCreateRequest request = new VarianteCreateRequest();
+		request.setTalleId(2L);
+		request.setColor(color);
+		request.setStock(stock);
+		request.setSku(sku + "-M-" + color.toUpperCase());
+		return productoService.agregarVariante(productoId, request);
+	}
+
+	private CrearPedidoRequest pedido() {
+		CrearPedidoRequest request = new CrearPedidoRequest();
+		request.setDireccionEnvio("Av. Corrientes 1234");
+		request.setCiudadEnvio("Buenos Aires");
+		request.setMetodoPago(MetodoPago.TRANSFERENCIA);
+		return request;
+	}
+}
@@ -0,0 +1,91 @@
+package ecommersDemo.demo.service;
+
+import ecommersDemo.demo.dto.PedidoDTO;
+import ecommersDemo.demo.dto.request.AgregarItemCarritoRequest;
+import ecommersDemo.demo.dto.request.CrearPedidoRequest;
+import ecommersDemo.demo.event.PedidoEstadoCambiadoEvent;
+import ecommersDemo.demo.model.Pedido.EstadoPedido;
+import ecommersDemo.demo.model.Pedido.MetodoPago;
+import ecommersDemo.demo.model.Usuario;
+import ecommersDemo.demo.model.VentaDiaria;
+import ecommersDemo.demo.repository.UsuarioRepository;
+import ecommersDemo.demo.repository.VentaDiariaRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Verifica que la reconstrucción del rollup no cuente dos veces un pedido cuyo evento llega tarde:
+ * se descartan los eventos que su foto de la base ya incluye y se aplican los posteriores.
+ * Los eventos simulados usan una fecha propia, así otros pedidos no tocan las filas que se miran.
+ */
+@SpringBootTest
+class RollupVentasReconstruccionTest {
+
+	private static final LocalDate FECHA_CREACION = LocalDate.of(2001, 1, 1);
+	private static final LocalDate FECHA_CAMBIO = LocalDate.of(2001, 1, 2);
+
+	@Autowired
+	private RollupVentas rollupVentas;
+
+	@Autowired
+	private PedidoService pedidoService;
+
+	@Autowired
+	private CarritoService carritoService;
+
+	@Autowired
+	private UsuarioRepository usuarioRepository;
+
+	@Autowired
+	private VentaDiariaRepository ventaDiariaRepository;
+
+	@Test
+	void eventoTardioIncluidoEnLaReconstruccionNoSeCuentaDosVeces() {
+		Long usuarioId = usuarioRepository.save(new Usuario(
+				"Rollup", "Reconstruccion", "rollup@reconstruccion.test", "secreto")).getId();
+		carritoService.agregarItemPorUsuario(usuarioId, new AgregarItemCarritoRequest(16L, 1));
+		PedidoDTO pedido = pedidoService.crearPedidoDesdeCarrito(usuarioId, pedido());
+
+		rollupVentas.reconstruir();
+
+		// La creación ya está en la foto: su evento tardío se descarta
+		rollupVentas.onPedidoEstadoCambiado(evento(pedido.getId(), FECHA_CREACION, null, EstadoPedido.PENDIENTE));
+		// La confirmación no la vio la foto: se aplica
+		rollupVentas.onPedidoEstadoCambiado(evento(
+				pedido.getId(), FECHA_CAMBIO, EstadoPedido.PENDIENTE, EstadoPedido.CONFIRMADO));
+		rollupVentas.volcar();
+
+		assertThat(pedidos(FECHA_CREACION, EstadoPedido.PENDIENTE)).isZero();
+		assertThat(pedidos(FECHA_CAMBIO, EstadoPedido.PENDIENTE)).isEqualTo(-1);
+		assertThat(pedidos(FECHA_CAMBIO, EstadoPedido.CONFIRMADO)).isEqualTo(1);
+	}
+
+	// ==================== MÉTODOS AUXILIARES ====================
+
+	private long pedidos(LocalDate fecha, EstadoPedido estado) {
+		return ventaDiariaRepository.findByFechaAndEstadoAndMetodoPago(fecha, estado, MetodoPago.TRANSFERENCIA)
+				.map(VentaDiaria::getPedidos)
+				.orElse(0L);
+	}
+
+	private static PedidoEstadoCambiadoEvent evento(Long pedidoId, LocalDate fecha,
+												   EstadoPedido anterior, EstadoPedido nuevo) {
+		return new PedidoEstadoCambiadoEvent(pedidoId, null, fecha, MetodoPago.TRANSFERENCIA,
+				new BigDecimal("1000.00"), anterior, nuevo, List.of());
+	}
+
+	private CrearPedidoRequest pedido() {
+		CrearPedidoRequest request = new CrearPedidoRequest();
+		request.setDireccionEnvio("Av. Corrientes 1234");
+		request.setCiudadEnvio("Buenos Aires");
+		request.setMetodoPago(MetodoPago.TRANSFERENCIA);
+		return request;
+	}
+}